@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.IAccount;
+
+/*
+ * Last known values of the account, updated from the onAccount callbacks
+ * so that sizing reads a field instead of asking the platform each time.
+ * The free margin is the part of the equity not used as margin.
+ */
+public class AccountState {
+
+    private double equity;
+    private double balance;
+    private double usedMargin;
+    private double leverage;
+
+    /*
+     * Takes over the values of the account. Returns true if the equity
+     * changed since the last update.
+     */
+    public boolean update(IAccount account) {
+        double newEquity = account.getEquity();
+        boolean changed = (newEquity != equity);
+        equity = newEquity;
+        balance = account.getBalance();
+        usedMargin = account.getUsedMargin();
+        leverage = account.getLeverage();
+        return changed;
+    }
+
+    public double getEquity() {
+        return equity;
+    }
+
+    public double getBalance() {
+        return balance;
+    }
+
+    public double getUsedMargin() {
+        return usedMargin;
+    }
+
+    public double getFreeMargin() {
+        return equity - usedMargin;
+    }
+
+    public double getLeverage() {
+        return leverage;
+    }
+
+    /*
+     * Account currency amount of the given percentage of the equity.
+     */
+    public double getRisk(double percent) {
+        return equity * percent / 100;
+    }
+
+}
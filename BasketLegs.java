@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.IEngine.OrderCommand;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.JFException;
+
+/*
+ * Legs of a portfolio entry, each an instrument, a side, a stop loss and
+ * an optional take profit, sharing one total currency risk.
+ * The legs are parsed from a list like "EURUSD BUY 20 40; USDJPY SELL 25",
+ * the tool then sets the prices of each leg from its own stop and target
+ * units and all legs are sized in one pass, so they see the same quotes
+ * and the risk is split equally across them (see BasketOrders).
+ */
+public class BasketLegs {
+
+    private final int size;
+    private final Instrument[] instruments;
+    private final OrderCommand[] orderCmds;
+    private final boolean[] isLong;
+    private final double[] stops;
+    private final double[] targets;
+    private final double[] entryPrices;
+    private final double[] stopLossPrices;
+    private final double[] takeProfitPrices;
+    private final double[] currencyRisks;
+    private final double[] lots;
+
+    private BasketLegs(int size) {
+        this.size = size;
+        this.instruments = new Instrument[size];
+        this.orderCmds = new OrderCommand[size];
+        this.isLong = new boolean[size];
+        this.stops = new double[size];
+        this.targets = new double[size];
+        this.entryPrices = new double[size];
+        this.stopLossPrices = new double[size];
+        this.takeProfitPrices = new double[size];
+        this.currencyRisks = new double[size];
+        this.lots = new double[size];
+    }
+
+    /*
+     * Parses the legs separated by ';', each as "instrument side stop [target]".
+     * Instruments are written as EUR/USD or EURUSD, sides as BUY or SELL and
+     * a missing target is 0. Throws IllegalArgumentException on invalid legs.
+     */
+    public static BasketLegs parse(String legs) {
+        String[] entries = legs.trim().split(";");
+        BasketLegs basket = new BasketLegs(entries.length);
+        for (int leg = 0; leg < entries.length; leg++) {
+            String[] fields = entries[leg].trim().split("\\s+");
+            if (fields.length < 3 || fields.length > 4) {
+                throw new IllegalArgumentException("Invalid leg, expected 'instrument side stop [target]': "
+                        + entries[leg]);
+            }
+            Instrument pair = parseInstrument(fields[0]);
+            OrderCommand cmd;
+            double stop;
+            double target;
+            try {
+                cmd = OrderCommand.valueOf(fields[1].toUpperCase());
+                stop = Double.parseDouble(fields[2]);
+                target = (fields.length == 4) ? Double.parseDouble(fields[3]) : 0;
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid leg: " + entries[leg]);
+            }
+            if (pair == null || stop <= 0 || target < 0 || (cmd != OrderCommand.BUY && cmd != OrderCommand.SELL)) {
+                throw new IllegalArgumentException("Invalid leg: " + entries[leg]);
+            }
+            basket.instruments[leg] = pair;
+            basket.orderCmds[leg] = cmd;
+            basket.isLong[leg] = cmd.isLong();
+            basket.stops[leg] = stop;
+            basket.targets[leg] = target;
+        }
+        return basket;
+    }
+
+    /*
+     * Returns the instrument written as EUR/USD or EURUSD, null if unknown.
+     */
+    public static Instrument parseInstrument(String name) {
+        name = name.toUpperCase();
+        if (name.length() == 6) {
+            name = name.substring(0, 3) + "/" + name.substring(3);
+        }
+        return Instrument.fromString(name);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Instrument getInstrument(int leg) {
+        return instruments[leg];
+    }
+
+    public OrderCommand getOrderCommand(int leg) {
+        return orderCmds[leg];
+    }
+
+    /*
+     * Stop and target as written in the leg, in the units of the tool.
+     */
+    public double getStop(int leg) {
+        return stops[leg];
+    }
+
+    public double getTarget(int leg) {
+        return targets[leg];
+    }
+
+    /*
+     * Sets the prices of the leg. Throws IllegalArgumentException if the
+     * stop loss is not on the loss side of the entry for the side of the
+     * leg, or a take profit (if not 0) not on the profit side, so the tool
+     * can reject the portfolio before submitting any leg.
+     */
+    public void setPrices(int leg, double entryPrice, double stopLossPrice, double takeProfitPrice) {
+        double direction = isLong[leg] ? 1 : -1;
+        if (direction * (entryPrice - stopLossPrice) <= 0) {
+            throw new IllegalArgumentException("Invalid leg " + (leg + 1) + ", stop loss " + stopLossPrice
+                    + " is not on the loss side of the " + orderCmds[leg] + " entry " + entryPrice);
+        }
+        if (takeProfitPrice != 0 && direction * (takeProfitPrice - entryPrice) <= 0) {
+            throw new IllegalArgumentException("Invalid leg " + (leg + 1) + ", take profit " + takeProfitPrice
+                    + " is not on the profit side of the " + orderCmds[leg] + " entry " + entryPrice);
+        }
+        entryPrices[leg] = entryPrice;
+        stopLossPrices[leg] = stopLossPrice;
+        takeProfitPrices[leg] = takeProfitPrice;
+    }
+
+    public double getEntryPrice(int leg) {
+        return entryPrices[leg];
+    }
+
+    public double getStopLossPrice(int leg) {
+        return stopLossPrices[leg];
+    }
+
+    public double getTakeProfitPrice(int leg) {
+        return takeProfitPrices[leg];
+    }
+
+    /*
+     * Sizes all legs in one pass from their prices, each risking an equal
+     * share of the total currency risk.
+     */
+    public void calcPositionSizes(PositionSizer positionSizer, double totalCurrencyRisk) throws JFException {
+        for (int leg = 0; leg < size; leg++) {
+            currencyRisks[leg] = totalCurrencyRisk / size;
+        }
+        positionSizer.getPositionSizes(size, instruments, isLong, entryPrices, stopLossPrices, currencyRisks, lots);
+    }
+
+    public double getCurrencyRisk(int leg) {
+        return currencyRisks[leg];
+    }
+
+    public double getPositionSize(int leg) {
+        return lots[leg];
+    }
+
+    /*
+     * Take profit distance over stop loss distance of the leg.
+     */
+    public double getRewardRiskRatio(int leg) {
+        double risk = Math.abs(entryPrices[leg] - stopLossPrices[leg]);
+        return (risk > 0) ? Math.abs(takeProfitPrices[leg] - entryPrices[leg]) / risk : 0;
+    }
+
+}
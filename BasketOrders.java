@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.IConsole;
+import com.dukascopy.api.IEngine;
+import com.dukascopy.api.IEngine.OrderCommand;
+import com.dukascopy.api.IOrder;
+import com.dukascopy.api.ITick;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.JFException;
+import com.dukascopy.api.OfferSide;
+import com.dukascopy.api.Period;
+
+/*
+ * Orders of the portfolio legs of a tool (see BasketLegs), the slot of each
+ * leg's order is the leg.
+ * The tool sets the prices of the legs from its own stop and target units,
+ * then all legs are sized in one pass and submitted together. The orders
+ * follow the order messages forwarded by the tool and the stop loss of
+ * each filled leg is moved to break even once it reaches 90% of its target
+ * profit, checked on one minute bars or custom check period bars and, if
+ * enabled, on the first tick crossing the 90% level.
+ */
+public class BasketOrders {
+
+    private final BasketLegs basket;
+    private final IEngine engine;
+    private final IConsole console;
+    private final ToolRuntime runtime;
+    private final RingLogger logger;
+    private final LatencyMonitor latency;
+    //latency probe of the break even checks
+    private final int checkProbe;
+    private final boolean moveSLBreakEven90;
+    private final boolean breakEvenOnTick;
+    private final ManagedOrders orders;
+    private final double[] breakEvenProfits;
+    //90% levels per instrument, the ids are the legs
+    private final PriceTriggerIndex[] triggers;
+    //legs crossed by the current tick
+    private final int[] crossedLegs;
+    //custom check period bars per leg, null for one minute bars
+    private final TickBarAggregator checkBars;
+
+    public BasketOrders(BasketLegs basket, IEngine engine, IConsole console, ToolRuntime runtime, int checkProbe,
+            boolean moveSLBreakEven90, boolean breakEvenOnTick, int checkPeriodSeconds) {
+        this.basket = basket;
+        this.engine = engine;
+        this.console = console;
+        this.runtime = runtime;
+        this.logger = runtime.getLogger();
+        this.latency = runtime.getLatency();
+        this.checkProbe = checkProbe;
+        this.moveSLBreakEven90 = moveSLBreakEven90;
+        this.breakEvenOnTick = breakEvenOnTick;
+        this.orders = new ManagedOrders(basket.size());
+        this.breakEvenProfits = new double[basket.size()];
+        this.triggers = new PriceTriggerIndex[Instrument.values().length];
+        this.crossedLegs = new int[basket.size()];
+        this.checkBars = (checkPeriodSeconds > 0)
+                ? new TickBarAggregator(basket.size(), checkPeriodSeconds * 1000L) : null;
+    }
+
+    /*
+     * Sizes all legs in one pass at the same quotes and submits them. If any
+     * leg is above the maximum position size no leg is submitted, so the
+     * portfolio is never left with part of its legs.
+     */
+    public void submit(double totalCurrencyRisk, double maxPositionSize) throws JFException {
+        basket.calcPositionSizes(runtime.getPositionSizer(), totalCurrencyRisk);
+
+        //check position size safety of all legs before submitting any
+        boolean exceeded = false;
+        for (int leg = 0; leg < basket.size(); leg++) {
+            double positionSize = basket.getPositionSize(leg);
+            if (positionSize > maxPositionSize) {
+                if (logger.begin(RingLogger.ERROR, ToolRuntime.LOG_ERRORS, "Position size exceeds safety check,"
+                        + " maxPositionSize constant is {} lots. But leg {} position size is {} lots.")) {
+                    logger.arg(maxPositionSize).arg(leg + 1).arg(positionSize).end();
+                }
+                exceeded = true;
+            }
+        }
+        if (exceeded) {
+            console.getErr().println("Portfolio not submitted, position size of a leg exceeds safety check");
+            return;
+        }
+
+        OrderIds orderIds = runtime.getOrderIds();
+        for (int leg = 0; leg < basket.size(); leg++) {
+            OrderCommand cmd = basket.getOrderCommand(leg);
+            double positionSize = basket.getPositionSize(leg);
+            breakEvenProfits[leg] = basket.getCurrencyRisk(leg) * 0.90 * basket.getRewardRiskRatio(leg);
+
+            long legOrderId = orderIds.next();
+            long submitStart = System.nanoTime();
+            IOrder order = engine.submitOrder(orderIds.getLabel(cmd, legOrderId), basket.getInstrument(leg), cmd,
+                    positionSize, 0, 5, basket.getStopLossPrice(leg), basket.getTakeProfitPrice(leg));
+            runtime.getOrderLatency().onSubmit(legOrderId, submitStart);
+            orders.add(legOrderId, order);
+            console.getInfo().println("Order " + order.getLabel()
+                    + " submitted. Leg: " + (leg + 1)
+                    + " Instrument: " + order.getInstrument()
+                    + " Direction: " + (cmd.isLong() ? "long" : "short")
+                    + " Stop loss: " + order.getStopLossPrice()
+                    + " Take profit: " + order.getTakeProfitPrice()
+                    + " Amount: " + order.getAmount());
+        }
+    }
+
+    /*
+     * Takes over the state of a leg order from one of its messages. Returns
+     * the leg, ManagedOrders.NONE if the order is no leg.
+     */
+    public int update(long orderId, IOrder order) {
+        return orders.update(orderId, order);
+    }
+
+    public int onOrderClose(long orderId, IOrder order) {
+        int leg = orders.update(orderId, order);
+        if (leg != ManagedOrders.NONE) {
+            getTriggers(order.getInstrument()).remove(leg);
+        }
+        return leg;
+    }
+
+    public int onOrderFill(long orderId, IOrder order) throws JFException {
+        //precompute the 90% level for the tick checks
+        int leg = orders.update(orderId, order);
+        if (leg != ManagedOrders.NONE) {
+            armBreakEvenTrigger(leg, order);
+        }
+        return leg;
+    }
+
+    /*
+     * Tick checks of the legs on the instrument. The legs crossing their
+     * level are collected first, so a leg not yet at 90% at the current
+     * conversion rates and armed again is checked once per tick.
+     */
+    public void onTick(Instrument instrument, ITick tick) throws JFException {
+        PriceTriggerIndex instrumentTriggers = triggers[instrument.ordinal()];
+        if (instrumentTriggers != null) {
+            int count = 0;
+            int leg;
+            while ((leg = instrumentTriggers.poll(tick)) != PriceTriggerIndex.NONE) {
+                crossedLegs[count++] = leg;
+            }
+            for (int n = 0; n < count; n++) {
+                checkSLMoveBE(crossedLegs[n]);
+            }
+        }
+        if (checkBars != null && orders.getOpenCount() > 0) {
+            for (int leg = 0; leg < basket.size(); leg++) {
+                if (basket.getInstrument(leg).equals(instrument) && checkBars.onTick(leg, tick)) {
+                    checkSLMoveBE(leg);
+                }
+            }
+        }
+    }
+
+    /*
+     * One minute bar checks of the legs on the instrument, unless custom
+     * check period bars are used.
+     */
+    public void onBar(Instrument instrument, Period period) throws JFException {
+        if (checkBars == null && period.equals(Period.ONE_MIN) && orders.getOpenCount() > 0) {
+            for (int leg = 0; leg < basket.size(); leg++) {
+                if (basket.getInstrument(leg).equals(instrument)) {
+                    checkSLMoveBE(leg);
+                }
+            }
+        }
+    }
+
+    private void checkSLMoveBE(int leg) throws JFException {
+        long start = System.nanoTime();
+        if (moveSLBreakEven90) { //is it user enabled
+            IOrder o = orders.get(leg);
+            if (o.getState() == IOrder.State.FILLED) {
+                if (o.getProfitLossInAccountCurrency() >= breakEvenProfits[leg]) {
+                    getTriggers(o.getInstrument()).remove(leg);
+                    double openPrice = o.getOpenPrice();
+                    if (o.getStopLossPrice() != openPrice) {
+                        runtime.getOrderModifier().setStopLossPrice(o, openPrice); // move SL to B.E.
+                        if (logger.begin(RingLogger.INFO, ToolRuntime.LOG_ORDERS, "Order {}: SL moved to B.E.")) {
+                            logger.arg(o.getLabel()).end();
+                        }
+                    }
+                } else {
+                    //not reached at the current conversion rates, check the updated level on ticks
+                    armBreakEvenTrigger(leg, o);
+                }
+            }
+        }
+
+        latency.record(checkProbe, start);
+    }
+
+    private void armBreakEvenTrigger(int leg, IOrder o) throws JFException {
+        if (moveSLBreakEven90 && breakEvenOnTick) {
+            double level = runtime.getPositionSizer().getProfitPrice(o.getInstrument(), o.isLong(),
+                    o.getOpenPrice(), o.getAmount(), breakEvenProfits[leg]);
+            //profit of long orders is realized at bid, of short orders at ask
+            ITick lastTick = runtime.getQuoteCache().getLastTick(o.getInstrument());
+            if (o.isLong() ? level > lastTick.getBid() : level < lastTick.getAsk()) {
+                getTriggers(o.getInstrument()).put(leg, level, o.isLong(), o.isLong() ? OfferSide.BID : OfferSide.ASK);
+            } else {
+                //quote already past the level but profit still short, a trigger would fire on every tick:
+                //leave it to the check on the next bar
+                getTriggers(o.getInstrument()).remove(leg);
+            }
+        }
+    }
+
+    private PriceTriggerIndex getTriggers(Instrument pair) {
+        PriceTriggerIndex instrumentTriggers = triggers[pair.ordinal()];
+        if (instrumentTriggers == null) {
+            instrumentTriggers = new PriceTriggerIndex(2);
+            triggers[pair.ordinal()] = instrumentTriggers;
+        }
+        return instrumentTriggers;
+    }
+
+}
@@ -41,6 +41,7 @@ import com.dukascopy.api.IStrategy;
 import com.dukascopy.api.ITick;
 import com.dukascopy.api.Instrument;
 import com.dukascopy.api.JFException;
+import com.dukascopy.api.OfferSide;
 import com.dukascopy.api.Period;
 import java.util.HashSet;
 import java.util.Set;
@@ -73,6 +74,9 @@ public class ConstRiskLimitScaleOut implements IStrategy {
     @Configurable(value = "Constant risk amount",
             description = "Constant account currency risk for each trade")
     public int constantCurrencyRisk = 10;
+    @Configurable(value = "Risk % of equity",
+            description = "Risk this percentage of the account equity instead of the constant amount, 0 to disable")
+    public double riskPercent = 0;
     @Configurable(value = "Limit entry price",
             description = "Entry price of the limit order")
     public double entryLimitPrice = 0;
@@ -88,36 +92,92 @@ public class ConstRiskLimitScaleOut implements IStrategy {
     @Configurable(value = "Break even trigger price",
             description = "Move stop loss to break even once this price is hit, 0 means not active")
     public double breakEvenTriggerPrice = 0;
+    @Configurable(value = "B.E. on tick",
+            description = "Check the break even trigger price on every tick, not only on one minute bars")
+    public boolean breakEvenOnTick = true;
+    @Configurable(value = "Check period seconds",
+            description = "Run the one minute checks on bars of this many seconds built from ticks, 0 to disable")
+    public int checkPeriodSeconds = 0;
+    @Configurable(value = "Latency file",
+            description = "Append the callback latency percentiles to this file every minute, empty to disable")
+    public String latencyFile = "";
+    @Configurable(value = "Resize on tick",
+            description = "Resize pending orders from quote updates, only when their size changes by a lot step")
+    public boolean resizeOnTick = false;
+    @Configurable(value = "Resize tolerance %",
+            description = "Risk deviation in percent tolerated before resizing on tick, at least one lot step")
+    public double resizeTolerance = 0;
 
     //this is a safety feature to avoid too big position sizes due to typos
     private static final double maxPositionSize = 0.05;
+    //id of the break even level in the price trigger index
+    private static final int BREAK_EVEN_TRIGGER = 0;
+    //log categories, see ToolRuntime
+    private static final int LOG_ORDERS = ToolRuntime.LOG_ORDERS;
+    private static final int LOG_ERRORS = ToolRuntime.LOG_ERRORS;
+    //latency probes
+    private static final int LAT_ON_TICK = 0;
+    private static final int LAT_ON_BAR = 1;
+    private static final int LAT_ON_MESSAGE = 2;
+    private static final int LAT_CHECK_BE = 3;
+    private static final int LAT_RESIZE = 4;
 
     private IEngine engine;
     private IHistory history;
     private IContext context;
     private IConsole console;
-    private boolean order1IsOpen;
-    private boolean order2IsOpen;
+    private QuoteCache quoteCache;
+    private PositionSizer positionSizer;
+    private PriceTriggerIndex priceTriggers;
+    private ResizeTrigger resizeTrigger;
     private double totalProfit;
     private double totalCommission;
-    private String order1Label;
-    private String order2Label;
-    private boolean scaleOutActive;
+    private OrderIds orderIds;
+    private ManagedOrders managedOrders;
+    private MessageDispatcher messageDispatcher;
+    private ToolRuntime runtime;
+    private AccountState accountState;
+    private RingLogger logger;
+    private LatencyMonitor latency;
+    private OrderLatencyTracker orderLatency;
+    private OrderModifier orderModifier;
+    private TickBarAggregator checkBars;
+    private double[] targetPrices;
     private boolean moveSLToBreakEvenActive;
     private IEngine.OrderCommand orderCmd;
+    private Instrument[] batchPairs;
+    private boolean[] batchIsLong;
+    private double[] batchEntryPrices;
+    private double[] batchStopLossPrices;
+    private double[] batchCurrencyRisks;
+    private double[] batchLots;
+    private IOrder[] pendingOrders;
 
     @Override
     public void onStart(IContext context) throws JFException {
         this.engine = context.getEngine();
         this.history = context.getHistory();
         this.context = context;
-        this.order1IsOpen = false;
-        this.order2IsOpen = false;
         this.console = context.getConsole();
+        this.runtime = new ToolRuntime(context, getClass().getSimpleName(), latencyFile,
+                "onTick", "onBar", "onMessage", "checkSLMoveBE", "updatePositionSize");
+        this.quoteCache = runtime.getQuoteCache();
+        this.positionSizer = runtime.getPositionSizer();
+        this.orderIds = runtime.getOrderIds();
+        this.messageDispatcher = runtime.getMessageDispatcher();
+        this.accountState = runtime.getAccountState();
+        this.logger = runtime.getLogger();
+        this.latency = runtime.getLatency();
+        this.orderLatency = runtime.getOrderLatency();
+        this.orderModifier = runtime.getOrderModifier();
+        this.priceTriggers = new PriceTriggerIndex(2);
+        this.resizeTrigger = new ResizeTrigger();
         this.totalProfit = 0;
         this.totalCommission = 0;
-        this.order1Label = "";
-        this.order2Label = "";
+        this.managedOrders = new ManagedOrders(2);
+        //custom check period bars, null for the platform one minute bars
+        this.checkBars = (checkPeriodSeconds > 0) ? new TickBarAggregator(1, checkPeriodSeconds * 1000L) : null;
+        registerMessageHandlers();
 
         //subscribe instruments
         console.getOut().println("Strategy starting. Subscribing instruments...");
@@ -151,209 +211,232 @@ public class ConstRiskLimitScaleOut implements IStrategy {
             return;
         }
         
-        //check if scale out is active (if T2 is 0, no scale out, exit full position on T1)
-        this.scaleOutActive = (target2Price > 0.0);
-        
-        //if scale out active halve currency risk, because of position plitting on 2 orders
-        if (scaleOutActive) {
-            constantCurrencyRisk /= 2;
+        //one order per target (if T2 is 0, no scale out, exit full position on T1)
+        if (target2Price > 0.0) {
+            this.targetPrices = new double[] {target1Price, target2Price};
+        } else {
+            this.targetPrices = new double[] {target1Price};
         }
+        int orderCount = targetPrices.length;
+        this.batchPairs = new Instrument[orderCount];
+        this.batchIsLong = new boolean[orderCount];
+        this.batchEntryPrices = new double[orderCount];
+        this.batchStopLossPrices = new double[orderCount];
+        this.batchCurrencyRisks = new double[orderCount];
+        this.batchLots = new double[orderCount];
+        this.pendingOrders = new IOrder[orderCount];
+
+        //split currency risk on the orders of the scale out
+        constantCurrencyRisk /= orderCount;
         
         //check if break even prive trigger is active (if 0, don't move SL to BE)
         this.moveSLToBreakEvenActive = (breakEvenTriggerPrice > 0.0);
+        //check the trigger price on each tick too, one minute bars remain the fallback
+        if (moveSLToBreakEvenActive && breakEvenOnTick) {
+            priceTriggers.put(BREAK_EVEN_TRIGGER, breakEvenTriggerPrice, isBuyOrder,
+                    isBuyOrder ? OfferSide.ASK : OfferSide.BID);
+        }
+
+        //calc position sizes of all orders in one pass
+        calcPositionSizes(orderCount);
 
-        //submit order
+        //submit one order per target
         String direction = orderCmd.isLong() ? "long" : "short";
-        IOrder order1 = submitOrder(this.constantCurrencyRisk, orderCmd, stopLossPrice, target1Price);
-        console.getInfo().println("Order 1" + order1.getLabel()
-                + " submitted. Direction: " + direction
-                + " Limit entry: " + order1.getOpenPrice()
-                + " Stop loss: " + order1.getStopLossPrice()
-                + " Take profit: " + order1.getTakeProfitPrice()
-                + " Amount: " + order1.getAmount());
-        order1Label = order1.getLabel();
-        this.order1IsOpen = true;
-        
-        if (scaleOutActive) { //open 2nd order
-            IOrder order2 = submitOrder(this.constantCurrencyRisk, orderCmd, stopLossPrice, target2Price);
-            console.getInfo().println("Order 2" + order2.getLabel()
+        for (int n = 0; n < orderCount; n++) {
+            long orderId = orderIds.next();
+            IOrder order = submitOrder(orderId, batchLots[n], orderCmd, stopLossPrice, targetPrices[n]);
+            console.getInfo().println("Order " + (n + 1) + " " + order.getLabel()
                     + " submitted. Direction: " + direction
-                    + " Limit entry: " + order2.getOpenPrice()
-                    + " Stop loss: " + order2.getStopLossPrice()
-                    + " Take profit: " + order2.getTakeProfitPrice()
-                    + " Amount: " + order2.getAmount());
-            order2Label = order2.getLabel();
-            this.order2IsOpen = true;
+                    + " Limit entry: " + order.getOpenPrice()
+                    + " Stop loss: " + order.getStopLossPrice()
+                    + " Take profit: " + order.getTakeProfitPrice()
+                    + " Amount: " + order.getAmount());
+            managedOrders.add(orderId, order);
         }
     }
 
     @Override
     public void onTick(Instrument instrument, ITick tick) throws JFException {
-    }
+        long start = System.nanoTime();
+        logger.setTime(tick.getTime());
+        quoteCache.onTick(instrument, tick);
 
-    @Override
-    public void onBar(Instrument instrument, Period period, IBar askBar, IBar bidBar) throws JFException {
-        if (instrument.equals(this.instrument) && period.equals(Period.ONE_MIN) && (order1IsOpen || order2IsOpen)) {
-            //check if any order meets the B.E. SL move requirements
+        //move SL to B.E. on the first tick reaching the trigger price
+        if (instrument.equals(this.instrument) && priceTriggers.poll(tick) == BREAK_EVEN_TRIGGER) {
             checkSLMoveBE();
-            
-            //update amount to ensure constant risk for pending orders
-            updatePositionSize();
         }
-    }
 
-        @Override
-    public void onMessage(IMessage message) throws JFException {
-        if (message.getType() == Type.ORDER_CLOSE_OK) {
-            //update order variables on order close
-            IOrder order = message.getOrder();
-
-            if (order.getLabel() == order1Label) { //check order 1
-                this.order1IsOpen = false;
-                console.getInfo().println("Order 1 " + order.getLabel()
-                        + " closed. Profit: " + order.getProfitLossInAccountCurrency());
-                //update profit/loss and commission
-                this.totalProfit += order.getProfitLossInAccountCurrency();
-                this.totalCommission += order.getCommission();
-            } else if (order.getLabel() == order2Label) { //check order 2
-                this.order2IsOpen = false;
-                console.getInfo().println("Order 2 " + order.getLabel()
-                        + " closed. Profit: " + order.getProfitLossInAccountCurrency());
-                //update profit/loss and commission
-                this.totalProfit += order.getProfitLossInAccountCurrency();
-                this.totalCommission += order.getCommission();
-            } else  {
-                //nothing
-            }
-            
-        } else if (message.getType() == Type.ORDER_SUBMIT_REJECTED) {
-            //update order variables on order rejection
-            IOrder order = message.getOrder();
-            
-            if (order.getLabel() == order1Label) { //check order 1
-                this.order1IsOpen = false;
-                console.getErr().println("Order 1 " + order.getLabel() + " rejected.");
-            } else if (order.getLabel() == order2Label) { //check order 2
-                this.order2IsOpen = false;
-                console.getErr().println("Order 2 " + order.getLabel() + " rejected.");
-            } else  {
-                //nothing
+        //check on the custom period bars built from the ticks instead of one minute bars
+        if (checkBars != null && instrument.equals(this.instrument) && checkBars.onTick(0, tick)) {
+            onCheckBar();
+        }
+
+        //resize pending orders only once quotes moved the size enough
+        if (resizeOnTick && managedOrders.getOpenedCount() > 0
+                && positionSizer.isSizingInstrument(this.instrument, instrument)) {
+            if (resizeTrigger.isTriggered(getSizeFactor())) {
+                updatePositionSize();
             }
+        }
 
-        } else if (message.getType() == Type.ORDER_CHANGED_REJECTED) {
-            IOrder order = message.getOrder();
-            console.getErr().println("Order " + order.getLabel() + " change rejected.");
+        //send the order changes of this event
+        orderModifier.flush();
 
-        } else if ((message.getType() == Type.INSTRUMENT_STATUS)
-                || (message.getType() == Type.CALENDAR)) {
-            //filter out
-            return;
+        latency.record(LAT_ON_TICK, start);
+    }
+
+    @Override
+    public void onBar(Instrument instrument, Period period, IBar askBar, IBar bidBar) throws JFException {
+        long start = System.nanoTime();
+        logger.setTime(askBar.getTime());
+        if (checkBars == null && instrument.equals(this.instrument) && period.equals(Period.ONE_MIN)) {
+            onCheckBar();
         }
-        context.getConsole().getOut().println("Message: " + message.toString());
+
+        //send the order changes of this event
+        orderModifier.flush();
+
+        latency.record(LAT_ON_BAR, start);
+    }
+
+    @Override
+    public void onMessage(IMessage message) throws JFException {
+        long start = System.nanoTime();
+        logger.setTime(message.getCreationTime());
+        //handle only messages relative to the orders managed by this instance
+        messageDispatcher.dispatch(message);
+        latency.record(LAT_ON_MESSAGE, start);
     }
 
     @Override
     public void onAccount(IAccount account) throws JFException {
+        //keep equity up to date for sizing, resize pending orders once it moved the size enough
+        if (accountState.update(account) && riskPercent > 0 && resizeOnTick && managedOrders.getOpenedCount() > 0) {
+            if (resizeTrigger.isTriggered(getSizeFactor())) {
+                updatePositionSize();
+            }
+            //send the order changes of this event
+            orderModifier.flush();
+        }
     }
 
     @Override
     public void onStop() throws JFException {
-        console.getNotif().println("Strategy stopped. Profit: " + totalProfit +
-                " Commission: " + totalCommission +
-                " Net Profit: " + (totalProfit - totalCommission));
+        runtime.stop(totalProfit, totalCommission);
     }
 
-    private IOrder submitOrder(int currencyRisk, OrderCommand orderCmd, double stopLossPrice, double takeProfitPrice)
-            throws JFException {
-        double positionSize;
-        
-        //calc position size
-        positionSize = getPositionSize(instrument, stopLossPrice, currencyRisk, orderCmd);
-        
-        //submit limit order
-        return engine.submitOrder(getLabel(orderCmd), instrument, orderCmd, positionSize,
-                                  entryLimitPrice, 5, stopLossPrice, takeProfitPrice);
-    }
-    
-    private String getLabel(OrderCommand cmd) {
-        String orderNum = (order1IsOpen) ? "ORDER2" : "ORDER1";
-        return cmd.toString() + orderNum + System.currentTimeMillis();
+    private void registerMessageHandlers() {
+        //keep the state of the managed orders up to date
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                managedOrders.update(orderId, message.getOrder());
+            }
+        }, Type.ORDER_SUBMIT_OK, Type.ORDER_FILL_OK, Type.ORDER_FILL_REJECTED, Type.ORDERS_MERGE_OK);
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                IOrder order = message.getOrder();
+                onOrderClose(managedOrders.update(orderId, order), order);
+            }
+        }, Type.ORDER_CLOSE_OK);
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                IOrder order = message.getOrder();
+                onOrderRejected(managedOrders.update(orderId, order), order);
+            }
+        }, Type.ORDER_SUBMIT_REJECTED);
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                if (logger.begin(RingLogger.ERROR, LOG_ORDERS, "Order {} change rejected.")) {
+                    logger.arg(message.getOrder().getLabel()).end();
+                }
+            }
+        }, Type.ORDER_CHANGED_REJECTED);
+        //messages without order are printed as before, except instrument status and calendar
+        messageDispatcher.registerOrderless(MessageDispatcher.print(console.getOut()),
+                ToolRuntime.PRINTED_ORDERLESS_TYPES);
     }
 
-    private double getPositionSize(Instrument pair, double stopLossPrice, int constantCurrencyRisk, OrderCommand orderCmd)
-            throws JFException {
-        //init symbols
-        String accountCurrency = context.getAccount().getCurrency().getCurrencyCode();
-        String primaryCurrency = pair.getPrimaryCurrency().getCurrencyCode();
-        String secondaryCurrency = pair.getSecondaryCurrency().getCurrencyCode();
-        
-        //get exchange rate of traded pair in relation to account currency
-        double accountCurrencyExchangeRate;
-        String apCurrency = accountCurrency + "/" + primaryCurrency;
-        Instrument i;
-        
-        if (primaryCurrency.equals(accountCurrency)) {
-            i = pair;
-        } else {
-            i = Instrument.fromString(apCurrency);
+    private void onOrderClose(int slot, IOrder order) {
+        if (slot != ManagedOrders.NONE) {
+            if (logger.begin(RingLogger.INFO, LOG_ORDERS, "Order {} {} closed. Profit: {}")) {
+                logger.arg(slot + 1).arg(order.getLabel()).arg(order.getProfitLossInAccountCurrency()).end();
+            }
+            //update profit/loss and commission
+            this.totalProfit += order.getProfitLossInAccountCurrency();
+            this.totalCommission += order.getCommission();
         }
-        
-        if (i == null) { //currency not found, try inverted pair
-            i = Instrument.fromInvertedString(apCurrency);
-            if (orderCmd == OrderCommand.BUYLIMIT)
-                accountCurrencyExchangeRate = 1 / history.getLastTick(i).getAsk();
-            else
-                accountCurrencyExchangeRate = 1 / history.getLastTick(i).getBid();
-        } else {
-            if (orderCmd == OrderCommand.BUYLIMIT)
-                accountCurrencyExchangeRate = history.getLastTick(i).getAsk();
-            else
-                accountCurrencyExchangeRate = history.getLastTick(i).getBid();
+    }
+
+    private void onOrderRejected(int slot, IOrder order) {
+        if (slot != ManagedOrders.NONE) {
+            if (logger.begin(RingLogger.ERROR, LOG_ORDERS, "Order {} {} rejected.")) {
+                logger.arg(slot + 1).arg(order.getLabel()).end();
+            }
         }
-        
-        //calc currency/pip value
-        double pairExchangeRate;
-        if (orderCmd == OrderCommand.BUYLIMIT)
-            pairExchangeRate = history.getLastTick(pair).getAsk();
-        else
-            pairExchangeRate = history.getLastTick(pair).getBid();
-        double accountCurrencyPerPip = pair.getPipValue() / pairExchangeRate *
-                                       100000;
-        if (!primaryCurrency.equals(accountCurrency)) 
-            accountCurrencyPerPip /= accountCurrencyExchangeRate; //convert to account pip value
-        
-        //calc stop loss pips
-        double stopLossPips;
-        if (orderCmd == OrderCommand.BUYLIMIT) {
-            stopLossPips = Math.abs(stopLossPrice - entryLimitPrice) *
-                    Math.pow(10, this.instrument.getPipScale());
-        } else {
-            stopLossPips = Math.abs(stopLossPrice - entryLimitPrice) *
-                    Math.pow(10, this.instrument.getPipScale());
+    }
+
+    private IOrder submitOrder(long orderId, double positionSize, OrderCommand orderCmd, double stopLossPrice,
+            double takeProfitPrice) throws JFException {
+        //submit limit order
+        long submitStart = System.nanoTime();
+        IOrder order = engine.submitOrder(orderIds.getLabel(orderCmd, orderId), instrument, orderCmd, positionSize,
+                                          entryLimitPrice, 5, stopLossPrice, takeProfitPrice);
+        orderLatency.onSubmit(orderId, submitStart);
+        return order;
+    }
+    
+    private void calcPositionSizes(int count) throws JFException {
+        //all orders share instrument, side, entry and stop loss
+        for (int n = 0; n < count; n++) {
+            batchPairs[n] = instrument;
+            batchIsLong[n] = orderCmd.isLong();
+            batchEntryPrices[n] = entryLimitPrice;
+            batchStopLossPrices[n] = stopLossPrice;
+            batchCurrencyRisks[n] = getCurrencyRisk();
         }
-        
-        //calc position size
-        double units = constantCurrencyRisk / stopLossPips * 100000 / accountCurrencyPerPip;
-        
-        //convert to standard lots
-        double lots = units / 1000000;
+
+        //calc position sizes
+        positionSizer.getPositionSizes(count, batchPairs, batchIsLong, batchEntryPrices,
+                batchStopLossPrices, batchCurrencyRisks, batchLots);
 
         //check position size safety
         double positionSizeLimit;
-        positionSizeLimit = (!scaleOutActive) ? maxPositionSize : (maxPositionSize / 2);
-        if (lots > positionSizeLimit) {
-            console.getErr().println("Position size exceeds safety check, maxPositionSize constant"
-                    + " is " + positionSizeLimit + " lots. But current position size is " + lots + " lots.");
-            lots = 0;
+        positionSizeLimit = maxPositionSize / targetPrices.length;
+        for (int n = 0; n < count; n++) {
+            if (batchLots[n] > positionSizeLimit) {
+                if (logger.begin(RingLogger.ERROR, LOG_ERRORS, "Position size exceeds safety check,"
+                        + " maxPositionSize constant is {} lots. But current position size is {} lots.")) {
+                    logger.arg(positionSizeLimit).arg(batchLots[n]).end();
+                }
+                batchLots[n] = 0;
+            }
         }
+    }
 
-        return lots;
+    /*
+     * Checks done on each one minute bar, or on each custom period bar.
+     */
+    private void onCheckBar() throws JFException {
+        if (managedOrders.getOpenCount() > 0) {
+            //check if any order meets the B.E. SL move requirements
+            checkSLMoveBE();
+            
+            //update amount to ensure constant risk for pending orders
+            if (!resizeOnTick) {
+                updatePositionSize();
+            }
+        }
     }
 
     private void checkSLMoveBE() throws JFException {
-        if (moveSLToBreakEvenActive) { //is it user enabled
+        long start = System.nanoTime();
+        if (moveSLToBreakEvenActive && managedOrders.getFilledCount() > 0) { //is it user enabled, any order filled
             //get last tick price
-            ITick lastTick = history.getLastTick(instrument);
+            ITick lastTick = quoteCache.getLastTick(instrument);
             double currentTickPrice = (isBuyOrder) ? lastTick.getAsk() : lastTick.getBid();
             boolean breakEvenTriggerReached = false;
             
@@ -364,110 +447,85 @@ public class ConstRiskLimitScaleOut implements IStrategy {
                 breakEvenTriggerReached = true;
             }
 
-            //check order 1
-            if (order1IsOpen) {
-                IOrder o1 = engine.getOrder(order1Label);
-                if (o1 != null) {
-                    if (o1.getState() == IOrder.State.FILLED) {
-                        double openPrice = o1.getOpenPrice();
-                        if (o1.getStopLossPrice() != openPrice) {
-                            if (breakEvenTriggerReached) {
-                                o1.setStopLossPrice(openPrice); // move SL to B.E.
-                                console.getOut().println("Order 1 " + o1.getLabel() + ": SL moved to B.E.");
+            //check filled orders
+            for (int n = 0; n < managedOrders.size(); n++) {
+                if (managedOrders.getState(n) == IOrder.State.FILLED) {
+                    IOrder o = managedOrders.get(n);
+                    double openPrice = o.getOpenPrice();
+                    if (o.getStopLossPrice() != openPrice) {
+                        if (breakEvenTriggerReached) {
+                            orderModifier.setStopLossPrice(o, openPrice); // move SL to B.E.
+                            if (logger.begin(RingLogger.INFO, LOG_ORDERS, "Order {} {}: SL moved to B.E.")) {
+                                logger.arg(n + 1).arg(o.getLabel()).end();
                             }
                         }
                     }
-                } else {
-                    console.getErr().println("Order 1 " + order1Label + " not found");
-                }
-            }
-
-            //check order 2
-            if (scaleOutActive && order2IsOpen) {
-                IOrder o2 = engine.getOrder(order2Label);
-                if (o2 != null) {
-                    if (o2.getState() == IOrder.State.FILLED) {
-                        double openPrice = o2.getOpenPrice();
-                        if (o2.getStopLossPrice() != openPrice) {
-                            if (breakEvenTriggerReached) {
-                                o2.setStopLossPrice(openPrice); // move SL to B.E.
-                                console.getOut().println("Order 2 " + o2.getLabel() + ": SL moved to B.E.");
-                            }
-                        }
-                    }
-                } else {
-                    console.getErr().println("Order 2 " + order2Label + " not found");
                 }
             }
         }
+
+        latency.record(LAT_CHECK_BE, start);
     }
 
     private void updatePositionSize() throws JFException {
-        //check order 1
-        if (order1IsOpen) {
-            IOrder o1 = engine.getOrder(order1Label);
-            if (o1 == null) {
-                console.getErr().println("Order 1 " + order1Label + " not found");
-                return;
+        long start = System.nanoTime();
+        if (managedOrders.getOpenedCount() == 0) {
+            if (managedOrders.getCreatedCount() == 0) {
+                //no order pending anymore, stop quote driven resizing
+                resizeTrigger.disarm();
             }
-            if (o1.getState() == IOrder.State.OPENED) {
-                double newPositionSize = getPositionSize(o1.getInstrument(),
-                        stopLossPrice, constantCurrencyRisk, o1.getOrderCommand());
-
-                //update amount
-                if (o1.getAmount() != newPositionSize) {
-                    o1.setRequestedAmount(newPositionSize);
-                }
+            return;
+        }
 
-                console.getOut().println("Order 1 " + o1.getLabel()
-                        + " updated position size: " + newPositionSize);
+        //collect pending orders
+        int count = 0;
+        for (int n = 0; n < managedOrders.size(); n++) {
+            if (managedOrders.getState(n) == IOrder.State.OPENED) {
+                pendingOrders[count++] = managedOrders.get(n);
             }
         }
-        //check order 2
-        if (scaleOutActive && order2IsOpen) {
-            IOrder o2 = engine.getOrder(order2Label);
-            if (o2 == null) {
-                console.getErr().println("Order 2 " + order2Label + " not found");
-                return;
-            }
-            if (o2.getState() == IOrder.State.OPENED) {
-                double newPositionSize = getPositionSize(o2.getInstrument(),
-                        stopLossPrice, constantCurrencyRisk, o2.getOrderCommand());
 
-                //update amount
-                if (o2.getAmount() != newPositionSize) {
-                    o2.setRequestedAmount(newPositionSize);
-                }
+        //calc new position sizes in one pass
+        calcPositionSizes(count);
 
-                console.getOut().println("Order 2 " + o2.getLabel()
-                        + " updated position size: " + newPositionSize);
-            }
+        for (int n = 0; n < count; n++) {
+            IOrder o = pendingOrders[n];
+            double newPositionSize = batchLots[n];
+
+            //update amount, the modifier drops and does not log unchanged sizes
+            orderModifier.setRequestedAmount(o, newPositionSize);
         }
+
+        //arm trigger for quote driven resizing, all orders share the same size
+        resizeTrigger.arm(batchLots[0], getSizeFactor(),
+                PositionSizer.LOT_STEP, resizeTolerance / 100);
+
+        latency.record(LAT_RESIZE, start);
     }
     
-    private void subscribeInstruments() {
+    /*
+     * Account currency risk of each order of the scale out, a percentage of
+     * the last known equity or the constant amount, both split on the orders.
+     */
+    private double getCurrencyRisk() {
+        return (riskPercent > 0) ? accountState.getRisk(riskPercent) / targetPrices.length : constantCurrencyRisk;
+    }
+
+    /*
+     * For a fixed stop loss distance the position size is proportional to
+     * this factor, i.e. to the rates and to the currency risk.
+     */
+    private double getSizeFactor() throws JFException {
+        return positionSizer.getRateFactor(instrument, orderCmd.isLong()) * getCurrencyRisk();
+    }
+
+    private void subscribeInstruments() throws JFException {
         //init list
         Set<Instrument> instruments = new HashSet<Instrument>();
         instruments.add(instrument);
 
-        //init symbols
-        String accountCurrency = context.getAccount().getCurrency().getCurrencyCode();
-        String primaryCurrency = instrument.getPrimaryCurrency().getCurrencyCode();
-        String apCurrency = accountCurrency + "/" + primaryCurrency;
-
-        //find complementary instrument
-        Instrument i;
-        if (primaryCurrency.equals(accountCurrency)) {
-            i = instrument;
-        } else {
-            i = Instrument.fromString(apCurrency);
-        }
-        if (i == null) { //currency not found, try inverted pair
-            i = Instrument.fromInvertedString(apCurrency);
-        }
-        if (i != instrument) {
-            instruments.add(i);
-        }
+        //add complementary instruments for account currency conversion
+        positionSizer.addConversionInstruments(instrument, instruments);
 
         //subscribe
         context.setSubscribedInstruments(instruments, true);
@@ -41,6 +41,7 @@ import com.dukascopy.api.IStrategy;
 import com.dukascopy.api.ITick;
 import com.dukascopy.api.Instrument;
 import com.dukascopy.api.JFException;
+import com.dukascopy.api.OfferSide;
 import com.dukascopy.api.Period;
 import java.math.BigDecimal;
 import java.util.HashSet;
@@ -70,6 +71,9 @@ public class ConstantRiskMarketPriceTool implements IStrategy {
     @Configurable(value = "Constant risk amount",
             description = "Constant account currency risk for each trade")
     public int constantCurrencyRisk = 10;
+    @Configurable(value = "Risk % of equity",
+            description = "Risk this percentage of the account equity instead of the constant amount, 0 to disable")
+    public double riskPercent = 0;
     @Configurable(value = "Stop loss price",
             description = "Price of stop loss placement")
     public double stopLossPrice = 0;
@@ -79,19 +83,64 @@ public class ConstantRiskMarketPriceTool implements IStrategy {
     @Configurable(value = "B.E. on 90%",
             description = "Move SL to break even once 90% of TP is reached")
     public boolean moveSLBreakEven90 = false;
+    @Configurable(value = "B.E. on tick",
+            description = "Check the B.E. move on every tick, not only on one minute bars")
+    public boolean breakEvenOnTick = true;
+    @Configurable(value = "Check period seconds",
+            description = "Run the one minute checks on bars of this many seconds built from ticks, 0 to disable")
+    public int checkPeriodSeconds = 0;
+    @Configurable(value = "Latency file",
+            description = "Append the callback latency percentiles to this file every minute, empty to disable")
+    public String latencyFile = "";
+    @Configurable(value = "Portfolio legs",
+            description = "Orders to place instead of the single instrument, separated by ';', each as"
+                    + " 'instrument side stop loss price [take profit price]',"
+                    + " e.g. 'EURUSD BUY 1.365 1.38; USDJPY SELL 103.5'")
+    public String portfolioLegs = "";
+    @Configurable(value = "Portfolio risk amount",
+            description = "Total account currency risk of the portfolio legs, split equally across them")
+    public int portfolioCurrencyRisk = 100;
 
     //this is a safety feature to avoid too big position sizes due to typos
     private static final double maxPositionSize = 0.05;
+    //id of the break even level in the price trigger index
+    private static final int BREAK_EVEN_TRIGGER = 0;
+    //log categories, see ToolRuntime
+    private static final int LOG_ORDERS = ToolRuntime.LOG_ORDERS;
+    private static final int LOG_ERRORS = ToolRuntime.LOG_ERRORS;
+    //latency probes
+    private static final int LAT_ON_TICK = 0;
+    private static final int LAT_ON_BAR = 1;
+    private static final int LAT_ON_MESSAGE = 2;
+    private static final int LAT_CHECK_BE = 3;
 
     private IEngine engine;
     private IHistory history;
     private IContext context;
     private IConsole console;
+    private QuoteCache quoteCache;
+    private PositionSizer positionSizer;
+    private PriceTriggerIndex priceTriggers;
     private boolean orderIsOpen;
     private double totalProfit;
     private double totalCommission;
+    private OrderIds orderIds;
+    private long orderId;
+    private MessageDispatcher messageDispatcher;
+    private ToolRuntime runtime;
+    private AccountState accountState;
+    //account currency risk the order was sized with
+    private double currencyRisk;
+    private RingLogger logger;
+    private LatencyMonitor latency;
+    private OrderLatencyTracker orderLatency;
+    private OrderModifier orderModifier;
+    private TickBarAggregator checkBars;
     private String orderLabel;
     private IEngine.OrderCommand orderCmd;
+    //portfolio mode
+    private BasketLegs basket;
+    private BasketOrders basketOrders;
 
     @Override
     public void onStart(IContext context) throws JFException {
@@ -100,13 +149,45 @@ public class ConstantRiskMarketPriceTool implements IStrategy {
         this.context = context;
         this.orderIsOpen = false;
         this.console = context.getConsole();
+        this.runtime = new ToolRuntime(context, getClass().getSimpleName(), latencyFile,
+                "onTick", "onBar", "onMessage", "checkSLMoveBE");
+        this.quoteCache = runtime.getQuoteCache();
+        this.positionSizer = runtime.getPositionSizer();
+        this.orderIds = runtime.getOrderIds();
+        this.messageDispatcher = runtime.getMessageDispatcher();
+        this.accountState = runtime.getAccountState();
+        this.logger = runtime.getLogger();
+        this.latency = runtime.getLatency();
+        this.orderLatency = runtime.getOrderLatency();
+        this.orderModifier = runtime.getOrderModifier();
+        this.priceTriggers = new PriceTriggerIndex(2);
         this.totalProfit = 0;
         this.totalCommission = 0;
+        this.orderId = OrderIds.NONE;
         this.orderLabel = "invalid";
+        //custom check period bars, null for the platform one minute bars
+        this.checkBars = (checkPeriodSeconds > 0) ? new TickBarAggregator(1, checkPeriodSeconds * 1000L) : null;
+        registerMessageHandlers();
+
+        //check portfolio legs
+        if (!portfolioLegs.trim().isEmpty()) {
+            try {
+                this.basket = BasketLegs.parse(portfolioLegs);
+            } catch (IllegalArgumentException e) {
+                console.getErr().println(e.getMessage());
+                return;
+            }
+        }
 
         //subscribe instruments
         console.getOut().println("Strategy starting. Subscribing instruments...");
         subscribeInstruments();
+
+        //portfolio mode replaces the single order
+        if (basket != null) {
+            submitPortfolio();
+            return;
+        }
         
         //check and setup order command
         if (isBuyOrder ^ isSellOrder) {
@@ -126,28 +207,16 @@ public class ConstantRiskMarketPriceTool implements IStrategy {
         }
 
         //calc stop loss pips
-        double stopLossPips;
-        if (isBuyOrder) {
-            stopLossPips = Math.abs(stopLossPrice - history.getLastTick(instrument).getAsk()) *
-                    Math.pow(10, this.instrument.getPipScale());
-        } else {
-            stopLossPips = Math.abs(stopLossPrice - history.getLastTick(instrument).getBid()) *
-                    Math.pow(10, this.instrument.getPipScale());
-        }
+        ITick lastTick = quoteCache.getLastTick(instrument);
+        double entryPrice = isBuyOrder ? lastTick.getAsk() : lastTick.getBid();
+        double stopLossPips = positionSizer.getPips(instrument, stopLossPrice, entryPrice);
         
         //calc profit pips
-        double takeProfitPips = stopLossPips; //risk:reward 1:1
-        if (rewardRiskRatio != 1) { //adjust reward if needed (custom risk:reward)
-            takeProfitPips *= rewardRiskRatio; //reward:risk
-            if ((takeProfitPips % 0.1) != 0) {
-            //round to 0.1 pip minimum requirement format, since not multiple of 0.1
-            takeProfitPips = (new BigDecimal(takeProfitPips)).setScale(1, BigDecimal.ROUND_HALF_UP).doubleValue();
-            }
-        }
+        double takeProfitPips = getTakeProfitPips(stopLossPips);
 
         //submit order
         String direction = orderCmd.isLong() ? "long" : "short";
-        IOrder order = submitOrder(this.constantCurrencyRisk, orderCmd, stopLossPips, takeProfitPips);
+        IOrder order = submitOrder(getCurrencyRisk(), orderCmd, stopLossPips, takeProfitPips);
         console.getInfo().println("Order " + order.getLabel()
                 + " submitted. Direction: " + direction
                 + " Stop loss: " + order.getStopLossPrice()
@@ -158,61 +227,201 @@ public class ConstantRiskMarketPriceTool implements IStrategy {
 
     @Override
     public void onTick(Instrument instrument, ITick tick) throws JFException {
+        long start = System.nanoTime();
+        logger.setTime(tick.getTime());
+        quoteCache.onTick(instrument, tick);
+
+        //move SL to B.E. on the first tick reaching the 90% level
+        if (instrument.equals(this.instrument) && priceTriggers.poll(tick) == BREAK_EVEN_TRIGGER) {
+            checkSLMoveBE();
+        }
+
+        //check on the custom period bars built from the ticks instead of one minute bars
+        if (checkBars != null && basket == null && instrument.equals(this.instrument) && checkBars.onTick(0, tick)
+                && (orderIsOpen)) {
+            checkSLMoveBE();
+        }
+
+        //same checks for the portfolio legs
+        if (basketOrders != null) {
+            basketOrders.onTick(instrument, tick);
+        }
+
+        //send the order changes of this event
+        orderModifier.flush();
+
+        latency.record(LAT_ON_TICK, start);
     }
 
     @Override
     public void onBar(Instrument instrument, Period period, IBar askBar, IBar bidBar) throws JFException {
+        long start = System.nanoTime();
+        logger.setTime(askBar.getTime());
         //check if any order meets the 90% B.E. SL move requirements
-        if (instrument.equals(this.instrument) && period.equals(Period.ONE_MIN) && (orderIsOpen)) {
+        if (checkBars == null && instrument.equals(this.instrument) && period.equals(Period.ONE_MIN)
+                && (orderIsOpen)) {
             checkSLMoveBE();
         }
+        //same for the portfolio legs on this instrument
+        if (basketOrders != null) {
+            basketOrders.onBar(instrument, period);
+        }
+
+        //send the order changes of this event
+        orderModifier.flush();
+
+        latency.record(LAT_ON_BAR, start);
     }
 
     @Override
     public void onMessage(IMessage message) throws JFException {
-        IOrder order = message.getOrder();
-        if (order != null) {
-            //handle only messages relative to the order managed by this instance
-            if (order.getLabel().equals(orderLabel)) {
-                if (message.getType() == Type.ORDER_CLOSE_OK) {
-                    //update order variable on order close
-                    this.orderIsOpen = false;
-                    console.getInfo().println("Order " + order.getLabel()
-                            + " closed. Profit: " + order.getProfitLossInAccountCurrency());
-                    //update profit/loss and commission
-                    this.totalProfit += order.getProfitLossInAccountCurrency();
-                    this.totalCommission += order.getCommission();
-                } else if (message.getType() == Type.ORDER_SUBMIT_REJECTED) {
-                    //update order variable on order rejection
-                    this.orderIsOpen = false;
-                    console.getErr().println("Order " + order.getLabel() + " rejected.");
-                } else if (message.getType() == Type.ORDER_CHANGED_REJECTED) {
-                    console.getErr().println("Order " + order.getLabel() + " change rejected.");
-                }
-            }
-        } else if ((message.getType() == Type.INSTRUMENT_STATUS)
-                || (message.getType() == Type.CALENDAR)) {
-            //filter out
-        } else {
-            context.getConsole().getOut().println("Message: " + message.toString());
-        }
+        long start = System.nanoTime();
+        logger.setTime(message.getCreationTime());
+        //handle only messages relative to the order managed by this instance
+        messageDispatcher.dispatch(message);
+        latency.record(LAT_ON_MESSAGE, start);
     }
 
     @Override
     public void onAccount(IAccount account) throws JFException {
+        //keep equity up to date for sizing
+        accountState.update(account);
     }
 
     @Override
     public void onStop() throws JFException {
-        console.getNotif().println("Strategy stopped. Profit: " + totalProfit +
-                " Commission: " + totalCommission +
-                " Net Profit: " + (totalProfit - totalCommission));
+        runtime.stop(totalProfit, totalCommission);
+    }
+
+    private void registerMessageHandlers() {
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                onOrderClose(orderId, message.getOrder());
+            }
+        }, Type.ORDER_CLOSE_OK);
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                onOrderFill(orderId, message.getOrder());
+            }
+        }, Type.ORDER_FILL_OK);
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                onOrderRejected(orderId, message.getOrder());
+            }
+        }, Type.ORDER_SUBMIT_REJECTED);
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                //keep the state of the portfolio legs up to date
+                if (basketOrders != null) {
+                    basketOrders.update(orderId, message.getOrder());
+                }
+            }
+        }, Type.ORDER_SUBMIT_OK, Type.ORDER_FILL_REJECTED);
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                onOrderChangeRejected(message.getOrder());
+            }
+        }, Type.ORDER_CHANGED_REJECTED);
+        //messages without order are printed as before, except instrument status and calendar
+        messageDispatcher.registerOrderless(MessageDispatcher.print(console.getOut()),
+                ToolRuntime.PRINTED_ORDERLESS_TYPES);
     }
 
-    private IOrder submitOrder(int currencyRisk, OrderCommand orderCmd, double stopLossPips, double takeProfitPips)
+    private void onOrderClose(long orderId, IOrder order) throws JFException {
+        //update order variable on order close
+        if (basketOrders != null) {
+            basketOrders.onOrderClose(orderId, order);
+        } else {
+            this.orderIsOpen = false;
+        }
+        if (logger.begin(RingLogger.INFO, LOG_ORDERS, "Order {} closed. Profit: {}")) {
+            logger.arg(order.getLabel()).arg(order.getProfitLossInAccountCurrency()).end();
+        }
+        //update profit/loss and commission
+        this.totalProfit += order.getProfitLossInAccountCurrency();
+        this.totalCommission += order.getCommission();
+        priceTriggers.remove(BREAK_EVEN_TRIGGER);
+    }
+
+    private void onOrderFill(long orderId, IOrder order) throws JFException {
+        //precompute the 90% level for the tick checks
+        if (basketOrders != null) {
+            basketOrders.onOrderFill(orderId, order);
+        } else {
+            armBreakEvenTrigger(order);
+        }
+    }
+
+    private void onOrderRejected(long orderId, IOrder order) throws JFException {
+        //update order variable on order rejection
+        if (basketOrders != null) {
+            basketOrders.update(orderId, order);
+        } else {
+            this.orderIsOpen = false;
+        }
+        if (logger.begin(RingLogger.ERROR, LOG_ORDERS, "Order {} rejected.")) {
+            logger.arg(order.getLabel()).end();
+        }
+    }
+
+    private void onOrderChangeRejected(IOrder order) throws JFException {
+        if (logger.begin(RingLogger.ERROR, LOG_ORDERS, "Order {} change rejected.")) {
+            logger.arg(order.getLabel()).end();
+        }
+    }
+
+    private double getTakeProfitPips(double stopLossPips) {
+        double takeProfitPips = stopLossPips; //risk:reward 1:1
+        if (rewardRiskRatio != 1) { //adjust reward if needed (custom risk:reward)
+            takeProfitPips *= rewardRiskRatio; //reward:risk
+            if ((takeProfitPips % 0.1) != 0) {
+            //round to 0.1 pip minimum requirement format, since not multiple of 0.1
+            takeProfitPips = (new BigDecimal(takeProfitPips)).setScale(1, BigDecimal.ROUND_HALF_UP).doubleValue();
+            }
+        }
+        return takeProfitPips;
+    }
+
+    /*
+     * Sizes all portfolio legs in one pass at the same quotes and submits
+     * them together. Stop loss and take profit of the legs are prices,
+     * legs without take profit use the reward risk ratio.
+     */
+    private void submitPortfolio() throws JFException {
+        //set the prices of all legs before submitting any
+        try {
+            for (int leg = 0; leg < basket.size(); leg++) {
+                Instrument pair = basket.getInstrument(leg);
+                ITick lastTick = quoteCache.getLastTick(pair);
+                double direction = basket.getOrderCommand(leg).isLong() ? 1 : -1;
+                double entryPrice = basket.getOrderCommand(leg).isLong() ? lastTick.getAsk() : lastTick.getBid();
+                double stopLossPrice = basket.getStop(leg);
+                double takeProfitPrice = basket.getTarget(leg);
+                if (takeProfitPrice <= 0) {
+                    double stopLossPips = positionSizer.getPips(pair, stopLossPrice, entryPrice);
+                    takeProfitPrice = entryPrice + direction * getTakeProfitPips(stopLossPips) * pair.getPipValue();
+                }
+                basket.setPrices(leg, entryPrice, stopLossPrice, takeProfitPrice);
+            }
+        } catch (IllegalArgumentException e) {
+            console.getErr().println(e.getMessage());
+            return;
+        }
+
+        this.basketOrders = new BasketOrders(basket, engine, console, runtime, LAT_CHECK_BE,
+                moveSLBreakEven90, breakEvenOnTick, checkPeriodSeconds);
+        basketOrders.submit(portfolioCurrencyRisk, maxPositionSize);
+    }
+
+    private IOrder submitOrder(double currencyRisk, OrderCommand orderCmd, double stopLossPips, double takeProfitPips)
             throws JFException {
         double takeProfitPrice;
-        ITick lastTick = history.getLastTick(instrument);
+        ITick lastTick = quoteCache.getLastTick(instrument);
         double positionSize;
         
         //calc take profit price
@@ -224,70 +433,31 @@ public class ConstantRiskMarketPriceTool implements IStrategy {
         
         //calc position size
         positionSize = getPositionSize(instrument, stopLossPips, currencyRisk, orderCmd);
+        this.currencyRisk = currencyRisk;
         
         //create order label
-        this.orderLabel = getLabel(orderCmd);
+        this.orderId = orderIds.next();
+        this.orderLabel = orderIds.getLabel(orderCmd, orderId);
         
         //submit order at market
-        return engine.submitOrder(orderLabel, instrument, orderCmd, positionSize, 0, 5, stopLossPrice, takeProfitPrice);
+        long submitStart = System.nanoTime();
+        IOrder order = engine.submitOrder(orderLabel, instrument, orderCmd, positionSize, 0, 5,
+                stopLossPrice, takeProfitPrice);
+        orderLatency.onSubmit(orderId, submitStart);
+        return order;
     }
     
-    private String getLabel(OrderCommand cmd) {
-        return cmd.toString() + System.currentTimeMillis();
-    }
-
-    private double getPositionSize(Instrument pair, double stopLossPips, int constantCurrencyRisk, OrderCommand orderCmd)
+    private double getPositionSize(Instrument pair, double stopLossPips, double currencyRisk, OrderCommand orderCmd)
             throws JFException {
-        //init symbols
-        String accountCurrency = context.getAccount().getCurrency().getCurrencyCode();
-        String primaryCurrency = pair.getPrimaryCurrency().getCurrencyCode();
-        String secondaryCurrency = pair.getSecondaryCurrency().getCurrencyCode();
-        
-        //get exchange rate of traded pair in relation to account currency
-        double accountCurrencyExchangeRate;
-        String apCurrency = accountCurrency + "/" + primaryCurrency;
-        Instrument i;
-        
-        if (primaryCurrency.equals(accountCurrency)) {
-            i = pair;
-        } else {
-            i = Instrument.fromString(apCurrency);
-        }
-        
-        if (i == null) { //currency not found, try inverted pair
-            i = Instrument.fromInvertedString(apCurrency);
-            if (orderCmd == OrderCommand.BUY)
-                accountCurrencyExchangeRate = 1 / history.getLastTick(i).getAsk();
-            else
-                accountCurrencyExchangeRate = 1 / history.getLastTick(i).getBid();
-        } else {
-            if (orderCmd == OrderCommand.BUY)
-                accountCurrencyExchangeRate = history.getLastTick(i).getAsk();
-            else
-                accountCurrencyExchangeRate = history.getLastTick(i).getBid();
-        }
-        
-        //calc currency/pip value
-        double pairExchangeRate;
-        if (orderCmd == OrderCommand.BUY)
-            pairExchangeRate = history.getLastTick(pair).getAsk();
-        else
-            pairExchangeRate = history.getLastTick(pair).getBid();
-        double accountCurrencyPerPip = pair.getPipValue() / pairExchangeRate *
-                                       100000;
-        if (!primaryCurrency.equals(accountCurrency)) 
-            accountCurrencyPerPip /= accountCurrencyExchangeRate; //convert to account pip value
-        
         //calc position size
-        double units = constantCurrencyRisk / stopLossPips * 100000 / accountCurrencyPerPip;
-        
-        //convert to standard lots
-        double lots = units / 1000000;
+        double lots = positionSizer.getPositionSize(pair, orderCmd.isLong(), stopLossPips, currencyRisk);
 
         //check position size safety
         if (lots > maxPositionSize) {
-            console.getErr().println("Position size exceeds safety check, maxPositionSize constant"
-                    + " is " + maxPositionSize + " lots. But current position size is " + lots + " lots.");
+            if (logger.begin(RingLogger.ERROR, LOG_ERRORS, "Position size exceeds safety check,"
+                    + " maxPositionSize constant is {} lots. But current position size is {} lots.")) {
+                logger.arg(maxPositionSize).arg(lots).end();
+            }
             lots = 0;
         }
 
@@ -295,45 +465,72 @@ public class ConstantRiskMarketPriceTool implements IStrategy {
     }
 
     private void checkSLMoveBE() throws JFException {
+        long start = System.nanoTime();
         if (moveSLBreakEven90) { //is it user enabled
-            double percent90Profit = this.constantCurrencyRisk * 0.90 * rewardRiskRatio;
+            double percent90Profit = this.currencyRisk * 0.90 * rewardRiskRatio;
             IOrder o = engine.getOrder(orderLabel);
             if (o != null) {
                 if (o.getProfitLossInAccountCurrency() >= percent90Profit) {
+                    priceTriggers.remove(BREAK_EVEN_TRIGGER);
                     double openPrice = o.getOpenPrice();
                     if (o.getStopLossPrice() != openPrice) {
-                        o.setStopLossPrice(openPrice); // move SL to B.E.
-                        console.getOut().println("Order " + o.getLabel() + ": SL moved to B.E.");
+                        orderModifier.setStopLossPrice(o, openPrice); // move SL to B.E.
+                        if (logger.begin(RingLogger.INFO, LOG_ORDERS, "Order {}: SL moved to B.E.")) {
+                            logger.arg(o.getLabel()).end();
+                        }
                     }
+                } else if (o.getState() == IOrder.State.FILLED) {
+                    //not reached at the current conversion rates, check the updated level on ticks
+                    armBreakEvenTrigger(o);
                 }
             } else {
-                console.getErr().println("Order " + orderLabel + " not found");
+                if (logger.begin(RingLogger.ERROR, LOG_ERRORS, "Order {} not found")) {
+                    logger.arg(orderLabel).end();
+                }
             }
         }
+
+        latency.record(LAT_CHECK_BE, start);
     }
     
-    private void subscribeInstruments() {
-        //init list
-        Set<Instrument> instruments = new HashSet<Instrument>();
-        instruments.add(instrument);
+    private void armBreakEvenTrigger(IOrder o) throws JFException {
+        if (moveSLBreakEven90 && breakEvenOnTick) {
+            double percent90Profit = this.currencyRisk * 0.90 * rewardRiskRatio;
+            double level = positionSizer.getProfitPrice(o.getInstrument(), o.isLong(),
+                    o.getOpenPrice(), o.getAmount(), percent90Profit);
+            //profit of long orders is realized at bid, of short orders at ask
+            ITick lastTick = quoteCache.getLastTick(o.getInstrument());
+            if (o.isLong() ? level > lastTick.getBid() : level < lastTick.getAsk()) {
+                priceTriggers.put(BREAK_EVEN_TRIGGER, level, o.isLong(), o.isLong() ? OfferSide.BID : OfferSide.ASK);
+            } else {
+                //quote already past the level but profit still short, a trigger would fire on every tick:
+                //leave it to the check on the next bar
+                priceTriggers.remove(BREAK_EVEN_TRIGGER);
+            }
+        }
+    }
 
-        //init symbols
-        String accountCurrency = context.getAccount().getCurrency().getCurrencyCode();
-        String primaryCurrency = instrument.getPrimaryCurrency().getCurrencyCode();
-        String apCurrency = accountCurrency + "/" + primaryCurrency;
+    /*
+     * Account currency risk of new sizes, a percentage of the last known
+     * equity or the constant amount.
+     */
+    private double getCurrencyRisk() {
+        return (riskPercent > 0) ? accountState.getRisk(riskPercent) : constantCurrencyRisk;
+    }
 
-        //find complementary instrument
-        Instrument i;
-        if (primaryCurrency.equals(accountCurrency)) {
-            i = instrument;
+    private void subscribeInstruments() throws JFException {
+        //init list
+        Set<Instrument> instruments = new HashSet<Instrument>();
+        if (basket != null) {
+            for (int leg = 0; leg < basket.size(); leg++) {
+                instruments.add(basket.getInstrument(leg));
+                positionSizer.addConversionInstruments(basket.getInstrument(leg), instruments);
+            }
         } else {
-            i = Instrument.fromString(apCurrency);
-        }
-        if (i == null) { //currency not found, try inverted pair
-            i = Instrument.fromInvertedString(apCurrency);
-        }
-        if (i != instrument) {
-            instruments.add(i);
+            instruments.add(instrument);
+
+            //add complementary instruments for account currency conversion
+            positionSizer.addConversionInstruments(instrument, instruments);
         }
 
         //subscribe
@@ -40,6 +40,7 @@ import com.dukascopy.api.IStrategy;
 import com.dukascopy.api.ITick;
 import com.dukascopy.api.Instrument;
 import com.dukascopy.api.JFException;
+import com.dukascopy.api.OfferSide;
 import com.dukascopy.api.Period;
 import java.math.BigDecimal;
 import java.util.HashSet;
@@ -72,6 +73,9 @@ public class ConstantRiskStopTool implements IStrategy {
     @Configurable(value = "Constant risk amount",
             description = "Constant account currency risk for each trade")
     public int constantCurrencyRisk = 100;
+    @Configurable(value = "Risk % of equity",
+            description = "Risk this percentage of the account equity instead of the constant amount, 0 to disable")
+    public double riskPercent = 0;
     @Configurable(value = "Stop entry price",
             description = "Entry price of the stop order")
     public double entryStopPrice = 0;
@@ -84,17 +88,59 @@ public class ConstantRiskStopTool implements IStrategy {
     @Configurable(value = "B.E. on 90%",
             description = "Move SL to break even once 90% of TP is reached")
     public boolean moveSLBreakEven90 = false;
+    @Configurable(value = "B.E. on tick",
+            description = "Check the B.E. move on every tick, not only on one minute bars")
+    public boolean breakEvenOnTick = true;
+    @Configurable(value = "Check period seconds",
+            description = "Run the one minute checks on bars of this many seconds built from ticks, 0 to disable")
+    public int checkPeriodSeconds = 0;
+    @Configurable(value = "Latency file",
+            description = "Append the callback latency percentiles to this file every minute, empty to disable")
+    public String latencyFile = "";
+    @Configurable(value = "Resize on tick",
+            description = "Resize the pending order from quote updates, only when its size changes by a lot step")
+    public boolean resizeOnTick = false;
+    @Configurable(value = "Resize tolerance %",
+            description = "Risk deviation in percent tolerated before resizing on tick, at least one lot step")
+    public double resizeTolerance = 0;
 
     //this is a safety feature to avoid too big position sizes due to typos
     private static final double maxPositionSize = 0.05;
+    //id of the break even level in the price trigger index
+    private static final int BREAK_EVEN_TRIGGER = 0;
+    //log categories, see ToolRuntime
+    private static final int LOG_ORDERS = ToolRuntime.LOG_ORDERS;
+    private static final int LOG_ERRORS = ToolRuntime.LOG_ERRORS;
+    //latency probes
+    private static final int LAT_ON_TICK = 0;
+    private static final int LAT_ON_BAR = 1;
+    private static final int LAT_ON_MESSAGE = 2;
+    private static final int LAT_CHECK_BE = 3;
+    private static final int LAT_RESIZE = 4;
 
     private IEngine engine;
     private IHistory history;
     private IContext context;
     private IConsole console;
+    private QuoteCache quoteCache;
+    private PositionSizer positionSizer;
+    private PriceTriggerIndex priceTriggers;
+    private ResizeTrigger resizeTrigger;
     private boolean orderIsOpen;
     private double totalProfit;
     private double totalCommission;
+    private OrderIds orderIds;
+    private long orderId;
+    private MessageDispatcher messageDispatcher;
+    private ToolRuntime runtime;
+    private AccountState accountState;
+    //account currency risk the order was sized with
+    private double currencyRisk;
+    private RingLogger logger;
+    private LatencyMonitor latency;
+    private OrderLatencyTracker orderLatency;
+    private OrderModifier orderModifier;
+    private TickBarAggregator checkBars;
     private String orderLabel;
     private IEngine.OrderCommand orderCmd;
 
@@ -105,9 +151,26 @@ public class ConstantRiskStopTool implements IStrategy {
         this.context = context;
         this.orderIsOpen = false;
         this.console = context.getConsole();
+        this.runtime = new ToolRuntime(context, getClass().getSimpleName(), latencyFile,
+                "onTick", "onBar", "onMessage", "checkSLMoveBE", "updatePositionSize");
+        this.quoteCache = runtime.getQuoteCache();
+        this.positionSizer = runtime.getPositionSizer();
+        this.orderIds = runtime.getOrderIds();
+        this.messageDispatcher = runtime.getMessageDispatcher();
+        this.accountState = runtime.getAccountState();
+        this.logger = runtime.getLogger();
+        this.latency = runtime.getLatency();
+        this.orderLatency = runtime.getOrderLatency();
+        this.orderModifier = runtime.getOrderModifier();
+        this.priceTriggers = new PriceTriggerIndex(2);
+        this.resizeTrigger = new ResizeTrigger();
         this.totalProfit = 0;
         this.totalCommission = 0;
+        this.orderId = OrderIds.NONE;
         this.orderLabel = "invalid";
+        //custom check period bars, null for the platform one minute bars
+        this.checkBars = (checkPeriodSeconds > 0) ? new TickBarAggregator(1, checkPeriodSeconds * 1000L) : null;
+        registerMessageHandlers();
 
         //subscribe instruments
         console.getOut().println("Strategy starting. Subscribing instruments...");
@@ -142,7 +205,7 @@ public class ConstantRiskStopTool implements IStrategy {
 
         //submit order
         String direction = orderCmd.isLong() ? "long" : "short";
-        IOrder order = submitOrder(this.constantCurrencyRisk, orderCmd, stopLossPips, takeProfitPips);
+        IOrder order = submitOrder(getCurrencyRisk(), orderCmd, stopLossPips, takeProfitPips);
         console.getInfo().println("Order " + order.getLabel()
                 + " submitted. Direction: " + direction
                 + " Stop entry: " + entryStopPrice
@@ -154,60 +217,135 @@ public class ConstantRiskStopTool implements IStrategy {
 
     @Override
     public void onTick(Instrument instrument, ITick tick) throws JFException {
+        long start = System.nanoTime();
+        logger.setTime(tick.getTime());
+        quoteCache.onTick(instrument, tick);
+
+        //move SL to B.E. on the first tick reaching the 90% level
+        if (instrument.equals(this.instrument) && priceTriggers.poll(tick) == BREAK_EVEN_TRIGGER) {
+            checkSLMoveBE();
+        }
+
+        //check on the custom period bars built from the ticks instead of one minute bars
+        if (checkBars != null && instrument.equals(this.instrument) && checkBars.onTick(0, tick)) {
+            onCheckBar();
+        }
+
+        //resize pending order only once quotes moved the size enough
+        if (resizeOnTick && orderIsOpen && positionSizer.isSizingInstrument(this.instrument, instrument)) {
+            if (resizeTrigger.isTriggered(getSizeFactor())) {
+                updatePositionSize();
+            }
+        }
+
+        //send the order changes of this event
+        orderModifier.flush();
+
+        latency.record(LAT_ON_TICK, start);
     }
 
     @Override
     public void onBar(Instrument instrument, Period period, IBar askBar, IBar bidBar) throws JFException {
-        if (instrument.equals(this.instrument) && period.equals(Period.ONE_MIN) && (orderIsOpen)) {
-            //check if any order meets the 90% B.E. SL move requirements
-            checkSLMoveBE();
-            //update amount to ensure constant risk for pending orders
-            updatePositionSize();
+        long start = System.nanoTime();
+        logger.setTime(askBar.getTime());
+        if (checkBars == null && instrument.equals(this.instrument) && period.equals(Period.ONE_MIN)) {
+            onCheckBar();
         }
+
+        //send the order changes of this event
+        orderModifier.flush();
+
+        latency.record(LAT_ON_BAR, start);
     }
 
     @Override
     public void onMessage(IMessage message) throws JFException {
-        IOrder order = message.getOrder();
-        if (order != null) {
-            //handle only messages relative to the order managed by this instance
-            if (order.getLabel().equals(orderLabel)) {
-                if (message.getType() == Type.ORDER_CLOSE_OK) {
-                    //update order variable on order close
-                    this.orderIsOpen = false;
-                    console.getInfo().println("Order " + order.getLabel()
-                            + " closed. Profit: " + order.getProfitLossInAccountCurrency());
-                    //update profit/loss and commission
-                    this.totalProfit += order.getProfitLossInAccountCurrency();
-                    this.totalCommission += order.getCommission();
-                } else if (message.getType() == Type.ORDER_SUBMIT_REJECTED) {
-                    //update order variable on order rejection
-                    this.orderIsOpen = false;
-                    console.getErr().println("Order " + order.getLabel() + " rejected.");
-                } else if (message.getType() == Type.ORDER_CHANGED_REJECTED) {
-                    console.getErr().println("Order " + order.getLabel() + " change rejected.");
-                }
-            }
-        } else if ((message.getType() == Type.INSTRUMENT_STATUS)
-                || (message.getType() == Type.CALENDAR)) {
-            //filter out
-        } else {
-            context.getConsole().getOut().println("Message: " + message.toString());
-        }
+        long start = System.nanoTime();
+        logger.setTime(message.getCreationTime());
+        //handle only messages relative to the order managed by this instance
+        messageDispatcher.dispatch(message);
+        latency.record(LAT_ON_MESSAGE, start);
     }
 
     @Override
     public void onAccount(IAccount account) throws JFException {
+        //keep equity up to date for sizing, resize pending orders once it moved the size enough
+        if (accountState.update(account) && riskPercent > 0 && resizeOnTick && orderIsOpen) {
+            if (resizeTrigger.isTriggered(getSizeFactor())) {
+                updatePositionSize();
+            }
+            //send the order changes of this event
+            orderModifier.flush();
+        }
     }
 
     @Override
     public void onStop() throws JFException {
-        console.getNotif().println("Strategy stopped. Profit: " + totalProfit +
-                " Commission: " + totalCommission +
-                " Net Profit: " + (totalProfit - totalCommission));
+        runtime.stop(totalProfit, totalCommission);
+    }
+
+    private void registerMessageHandlers() {
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                onOrderClose(message.getOrder());
+            }
+        }, Type.ORDER_CLOSE_OK);
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                onOrderFill(message.getOrder());
+            }
+        }, Type.ORDER_FILL_OK);
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                onOrderRejected(message.getOrder());
+            }
+        }, Type.ORDER_SUBMIT_REJECTED);
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                onOrderChangeRejected(message.getOrder());
+            }
+        }, Type.ORDER_CHANGED_REJECTED);
+        //messages without order are printed as before, except instrument status and calendar
+        messageDispatcher.registerOrderless(MessageDispatcher.print(console.getOut()),
+                ToolRuntime.PRINTED_ORDERLESS_TYPES);
+    }
+
+    private void onOrderClose(IOrder order) throws JFException {
+        //update order variable on order close
+        this.orderIsOpen = false;
+        if (logger.begin(RingLogger.INFO, LOG_ORDERS, "Order {} closed. Profit: {}")) {
+            logger.arg(order.getLabel()).arg(order.getProfitLossInAccountCurrency()).end();
+        }
+        //update profit/loss and commission
+        this.totalProfit += order.getProfitLossInAccountCurrency();
+        this.totalCommission += order.getCommission();
+        priceTriggers.remove(BREAK_EVEN_TRIGGER);
+    }
+
+    private void onOrderFill(IOrder order) throws JFException {
+        //precompute the 90% level for the tick checks
+        armBreakEvenTrigger(order);
+    }
+
+    private void onOrderRejected(IOrder order) throws JFException {
+        //update order variable on order rejection
+        this.orderIsOpen = false;
+        if (logger.begin(RingLogger.ERROR, LOG_ORDERS, "Order {} rejected.")) {
+            logger.arg(order.getLabel()).end();
+        }
+    }
+
+    private void onOrderChangeRejected(IOrder order) throws JFException {
+        if (logger.begin(RingLogger.ERROR, LOG_ORDERS, "Order {} change rejected.")) {
+            logger.arg(order.getLabel()).end();
+        }
     }
 
-    private IOrder submitOrder(int currencyRisk, IEngine.OrderCommand orderCmd, double stopLossPips, double takeProfitPips)
+    private IOrder submitOrder(double currencyRisk, IEngine.OrderCommand orderCmd, double stopLossPips, double takeProfitPips)
             throws JFException {
         double stopLossPrice, takeProfitPrice;
         double positionSize;
@@ -223,138 +361,149 @@ public class ConstantRiskStopTool implements IStrategy {
         
         //calc position size
         positionSize = getPositionSize(instrument, stopLossPips, currencyRisk, orderCmd);
+        this.currencyRisk = currencyRisk;
         
         //create order label
-        this.orderLabel = getLabel(orderCmd);
+        this.orderId = orderIds.next();
+        this.orderLabel = orderIds.getLabel(orderCmd, orderId);
         
         //submit order
-        return engine.submitOrder(orderLabel, instrument, orderCmd, positionSize,
-                                  entryStopPrice, 5, stopLossPrice, takeProfitPrice);
+        long submitStart = System.nanoTime();
+        IOrder order = engine.submitOrder(orderLabel, instrument, orderCmd, positionSize,
+                                          entryStopPrice, 5, stopLossPrice, takeProfitPrice);
+        orderLatency.onSubmit(orderId, submitStart);
+        return order;
     }
     
-    private String getLabel(IEngine.OrderCommand cmd) {
-        return cmd.toString() + System.currentTimeMillis();
-    }
-
-    private double getPositionSize(Instrument pair, double stopLossPips, int constantCurrencyRisk, IEngine.OrderCommand orderCmd)
+    private double getPositionSize(Instrument pair, double stopLossPips, double currencyRisk, IEngine.OrderCommand orderCmd)
             throws JFException {
-        //init symbols
-        String accountCurrency = context.getAccount().getCurrency().getCurrencyCode();
-        String primaryCurrency = pair.getPrimaryCurrency().getCurrencyCode();
-        String secondaryCurrency = pair.getSecondaryCurrency().getCurrencyCode();
-        
-        //get exchange rate of traded pair in relation to account currency
-        double accountCurrencyExchangeRate;
-        String apCurrency = accountCurrency + "/" + primaryCurrency;
-        Instrument i;
-        
-        if (primaryCurrency.equals(accountCurrency)) {
-            i = pair;
-        } else {
-            i = Instrument.fromString(apCurrency);
-        }
-        
-        if (i == null) { //currency not found, try inverted pair
-            i = Instrument.fromInvertedString(apCurrency);
-            if (orderCmd == IEngine.OrderCommand.BUYSTOP)
-                accountCurrencyExchangeRate = 1 / history.getLastTick(i).getAsk();
-            else
-                accountCurrencyExchangeRate = 1 / history.getLastTick(i).getBid();
-        } else {
-            if (orderCmd == IEngine.OrderCommand.BUYSTOP)
-                accountCurrencyExchangeRate = history.getLastTick(i).getAsk();
-            else
-                accountCurrencyExchangeRate = history.getLastTick(i).getBid();
-        }
-        
-        //calc currency/pip value
-        double pairExchangeRate;
-        if (orderCmd == IEngine.OrderCommand.BUYSTOP)
-            pairExchangeRate = history.getLastTick(pair).getAsk();
-        else
-            pairExchangeRate = history.getLastTick(pair).getBid();
-        double accountCurrencyPerPip = pair.getPipValue() / pairExchangeRate *
-                                       100000;
-        if (!primaryCurrency.equals(accountCurrency)) 
-            accountCurrencyPerPip /= accountCurrencyExchangeRate; //convert to account pip value
-        
         //calc position size
-        double units = constantCurrencyRisk / stopLossPips * 100000 / accountCurrencyPerPip;
-
-        //convert to standard lots
-        double lots = units / 1000000;
+        double lots = positionSizer.getPositionSize(pair, orderCmd.isLong(), stopLossPips, currencyRisk);
 
         //check position size safety
         if (lots > maxPositionSize) {
-            console.getErr().println("Position size exceeds safety check, maxPositionSize constant"
-                    + " is " + maxPositionSize + " lots. But current position size is " + lots + " lots.");
+            if (logger.begin(RingLogger.ERROR, LOG_ERRORS, "Position size exceeds safety check,"
+                    + " maxPositionSize constant is {} lots. But current position size is {} lots.")) {
+                logger.arg(maxPositionSize).arg(lots).end();
+            }
             lots = 0;
         }
 
         return lots;
     }
 
+    /*
+     * Checks done on each one minute bar, or on each custom period bar.
+     */
+    private void onCheckBar() throws JFException {
+        if (orderIsOpen) {
+            //check if any order meets the 90% B.E. SL move requirements
+            checkSLMoveBE();
+            //update amount to ensure constant risk for pending orders
+            if (!resizeOnTick) {
+                updatePositionSize();
+            }
+        }
+    }
+
     private void checkSLMoveBE() throws JFException {
+        long start = System.nanoTime();
         if (moveSLBreakEven90) { //is it user enabled
-            double percent90Profit = this.constantCurrencyRisk * 0.90 * rewardRiskRatio;
+            double percent90Profit = this.currencyRisk * 0.90 * rewardRiskRatio;
             IOrder o = engine.getOrder(orderLabel);
             if (o != null) {
                 if (o.getProfitLossInAccountCurrency() >= percent90Profit) {
+                    priceTriggers.remove(BREAK_EVEN_TRIGGER);
                     double openPrice = o.getOpenPrice();
                     if (o.getStopLossPrice() != openPrice) {
-                        o.setStopLossPrice(openPrice); // move SL to B.E.
-                        console.getOut().println("Order " + o.getLabel() + ": SL moved to B.E.");
+                        orderModifier.setStopLossPrice(o, openPrice); // move SL to B.E.
+                        if (logger.begin(RingLogger.INFO, LOG_ORDERS, "Order {}: SL moved to B.E.")) {
+                            logger.arg(o.getLabel()).end();
+                        }
                     }
+                } else if (o.getState() == IOrder.State.FILLED) {
+                    //not reached at the current conversion rates, check the updated level on ticks
+                    armBreakEvenTrigger(o);
                 }
             } else {
-                console.getErr().println("Order " + orderLabel + " not found");
+                if (logger.begin(RingLogger.ERROR, LOG_ERRORS, "Order {} not found")) {
+                    logger.arg(orderLabel).end();
+                }
             }
         }
+
+        latency.record(LAT_CHECK_BE, start);
     }
 
     private void updatePositionSize() throws JFException {
+        long start = System.nanoTime();
         IOrder o = engine.getOrder(orderLabel);
         if (o == null) {
-            console.getErr().println("Order " + orderLabel + " not found");
+            if (logger.begin(RingLogger.ERROR, LOG_ERRORS, "Order {} not found")) {
+                logger.arg(orderLabel).end();
+            }
             return;
         }
         
         if (o.getState() == IOrder.State.OPENED) {
+            this.currencyRisk = getCurrencyRisk();
             double newPositionSize = getPositionSize(o.getInstrument(),
-                    stopLossPips, constantCurrencyRisk, o.getOrderCommand());
+                    stopLossPips, currencyRisk, o.getOrderCommand());
             
-            //update amount
-            if (o.getAmount() != newPositionSize) {
-                o.setRequestedAmount(newPositionSize);
-            }
+            //update amount, the modifier drops and does not log unchanged sizes
+            orderModifier.setRequestedAmount(o, newPositionSize);
             
-            console.getOut().println("Order " + o.getLabel()
-                    + " updated position size: " + newPositionSize);
+            //arm trigger for quote driven resizing
+            resizeTrigger.arm(newPositionSize, getSizeFactor(),
+                    PositionSizer.LOT_STEP, resizeTolerance / 100);
+        } else if (o.getState() != IOrder.State.CREATED) {
+            //not pending anymore, stop quote driven resizing
+            resizeTrigger.disarm();
+        }
+
+        latency.record(LAT_RESIZE, start);
+    }
+
+    private void armBreakEvenTrigger(IOrder o) throws JFException {
+        if (moveSLBreakEven90 && breakEvenOnTick) {
+            double percent90Profit = this.currencyRisk * 0.90 * rewardRiskRatio;
+            double level = positionSizer.getProfitPrice(o.getInstrument(), o.isLong(),
+                    o.getOpenPrice(), o.getAmount(), percent90Profit);
+            //profit of long orders is realized at bid, of short orders at ask
+            ITick lastTick = quoteCache.getLastTick(o.getInstrument());
+            if (o.isLong() ? level > lastTick.getBid() : level < lastTick.getAsk()) {
+                priceTriggers.put(BREAK_EVEN_TRIGGER, level, o.isLong(), o.isLong() ? OfferSide.BID : OfferSide.ASK);
+            } else {
+                //quote already past the level but profit still short, a trigger would fire on every tick:
+                //leave it to the check on the next bar
+                priceTriggers.remove(BREAK_EVEN_TRIGGER);
+            }
         }
     }
 
-    private void subscribeInstruments() {
+    /*
+     * Account currency risk of new sizes, a percentage of the last known
+     * equity or the constant amount.
+     */
+    private double getCurrencyRisk() {
+        return (riskPercent > 0) ? accountState.getRisk(riskPercent) : constantCurrencyRisk;
+    }
+
+    /*
+     * For a fixed stop loss distance the position size is proportional to
+     * this factor, i.e. to the rates and to the currency risk.
+     */
+    private double getSizeFactor() throws JFException {
+        return positionSizer.getRateFactor(instrument, orderCmd.isLong()) * getCurrencyRisk();
+    }
+
+    private void subscribeInstruments() throws JFException {
         //init list
         Set<Instrument> instruments = new HashSet<Instrument>();
         instruments.add(instrument);
 
-        //init symbols
-        String accountCurrency = context.getAccount().getCurrency().getCurrencyCode();
-        String primaryCurrency = instrument.getPrimaryCurrency().getCurrencyCode();
-        String apCurrency = accountCurrency + "/" + primaryCurrency;
-        
-        //find complementary instrument
-        Instrument i;
-        if (primaryCurrency.equals(accountCurrency)) {
-            i = instrument;
-        } else {
-            i = Instrument.fromString(apCurrency);
-        }
-        if (i == null) { //currency not found, try inverted pair
-            i = Instrument.fromInvertedString(apCurrency);
-        }
-        if (i != instrument)
-            instruments.add(i);
+        //add complementary instruments for account currency conversion
+        positionSizer.addConversionInstruments(instrument, instruments);
 
         //subscribe
         context.setSubscribedInstruments(instruments, true);
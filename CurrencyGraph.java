@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.Instrument;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Currency conversion graph built once from all available instruments.
+ * Every currency is a node and every instrument an edge usable in both
+ * directions (direct or inverted). A route converts one unit of a currency
+ * into another one with at most two legs, each leg encoded as an int
+ * (instrument ordinal shifted left by one, lowest bit set if inverted).
+ * The rate of a route is the product of its legs, where a direct leg
+ * contributes the instrument price and an inverted leg its reciprocal.
+ */
+public class CurrencyGraph {
+
+    public static final int NO_ROUTE = -1;
+    public static final int MAX_LEGS = 2;
+
+    private static final Instrument[] INSTRUMENTS = Instrument.values();
+    private static CurrencyGraph instance;
+
+    private final Map<String, Integer> currencyIndex;
+    //leg code of the cheapest edge between two currencies, -1 if none
+    private final int[][] edges;
+
+    private CurrencyGraph() {
+        currencyIndex = new HashMap<String, Integer>();
+        for (Instrument i : INSTRUMENTS) {
+            String primary = getCurrencyCode(i.getPrimaryCurrency());
+            String secondary = getCurrencyCode(i.getSecondaryCurrency());
+            if (primary != null && secondary != null) {
+                indexOf(primary);
+                indexOf(secondary);
+            }
+        }
+
+        int n = currencyIndex.size();
+        edges = new int[n][n];
+        for (int a = 0; a < n; a++) {
+            for (int b = 0; b < n; b++) {
+                edges[a][b] = NO_ROUTE;
+            }
+        }
+
+        //direct edges first, inverted only where no direct instrument exists
+        for (Instrument i : INSTRUMENTS) {
+            String primary = getCurrencyCode(i.getPrimaryCurrency());
+            String secondary = getCurrencyCode(i.getSecondaryCurrency());
+            if (primary != null && secondary != null) {
+                int p = indexOf(primary);
+                int s = indexOf(secondary);
+                if (edges[p][s] == NO_ROUTE || isInverted(edges[p][s])) {
+                    edges[p][s] = i.ordinal() << 1;
+                }
+                if (edges[s][p] == NO_ROUTE) {
+                    edges[s][p] = (i.ordinal() << 1) | 1;
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns the graph shared by all tools, building it on first use.
+     */
+    public static synchronized CurrencyGraph getInstance() {
+        if (instance == null) {
+            instance = new CurrencyGraph();
+        }
+        return instance;
+    }
+
+    /*
+     * Finds the cheapest route which prices one unit of currency "from" in
+     * currency "to": fewest legs first, then fewest inverted legs.
+     * The leg codes are written to legs, the number of legs is returned
+     * (0 for identical currencies) or NO_ROUTE if none exists.
+     */
+    public int findRoute(String from, String to, int[] legs) {
+        if (from.equals(to)) {
+            return 0;
+        }
+        Integer fromIndex = currencyIndex.get(from);
+        Integer toIndex = currencyIndex.get(to);
+        if (fromIndex == null || toIndex == null) {
+            return NO_ROUTE;
+        }
+        int f = fromIndex;
+        int t = toIndex;
+
+        //direct or inverted single leg
+        if (edges[f][t] != NO_ROUTE) {
+            legs[0] = edges[f][t];
+            return 1;
+        }
+
+        //two legs via an intermediate currency
+        int bestInversions = Integer.MAX_VALUE;
+        for (int m = 0; m < edges.length; m++) {
+            int first = edges[f][m];
+            int second = edges[m][t];
+            if (first != NO_ROUTE && second != NO_ROUTE) {
+                int inversions = (first & 1) + (second & 1);
+                if (inversions < bestInversions) {
+                    bestInversions = inversions;
+                    legs[0] = first;
+                    legs[1] = second;
+                }
+            }
+        }
+        return (bestInversions == Integer.MAX_VALUE) ? NO_ROUTE : 2;
+    }
+
+    public static Instrument getInstrument(int leg) {
+        return INSTRUMENTS[leg >>> 1];
+    }
+
+    public static boolean isInverted(int leg) {
+        return (leg & 1) != 0;
+    }
+
+    private int indexOf(String currencyCode) {
+        Integer index = currencyIndex.get(currencyCode);
+        if (index == null) {
+            index = currencyIndex.size();
+            currencyIndex.put(currencyCode, index);
+        }
+        return index;
+    }
+
+    private static String getCurrencyCode(Currency currency) {
+        return (currency != null) ? currency.getCurrencyCode() : null;
+    }
+
+}
@@ -34,7 +34,6 @@ import com.dukascopy.api.IContext;
 import com.dukascopy.api.IEngine;
 import com.dukascopy.api.IEngine.OrderCommand;
 import com.dukascopy.api.IHistory;
-import com.dukascopy.api.IIndicators;
 import com.dukascopy.api.IMessage;
 import com.dukascopy.api.IMessage.Type;
 import com.dukascopy.api.IOrder;
@@ -44,12 +43,15 @@ import com.dukascopy.api.Instrument;
 import com.dukascopy.api.JFException;
 import com.dukascopy.api.OfferSide;
 import com.dukascopy.api.Period;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
 /*
  * This tool places a market order with constant currency risk to ride a Heikin Ashi wave.
  * The position is closed at the first counter color Heikin Ashi candle.
+ * With a list of markets, one instance rides a wave on each of them (instrument, period,
+ * side and stop loss per market), otherwise the single instrument and period below are used.
  * Use at your own risk.
  */
 public class HAWave implements IStrategy {
@@ -68,303 +70,555 @@ public class HAWave implements IStrategy {
     @Configurable(value = "Constant risk amount",
             description = "Constant account currency risk for each trade")
     public int constantCurrencyRisk = 10;
+    @Configurable(value = "Risk % of equity",
+            description = "Risk this percentage of the account equity instead of the constant amount, 0 to disable")
+    public double riskPercent = 0;
     @Configurable(value = "Stop loss price",
             description = "Price of stop loss placement")
     public double stopLossPrice = 0;
     @Configurable(value = "B.E. on 1:1 R:R",
             description = "Move SL to break even on 1:1 risk:reward ratio")
     public boolean moveSLBreakEven = true;
+    @Configurable(value = "B.E. on tick",
+            description = "Check the B.E. move on every tick, not only on one minute bars")
+    public boolean breakEvenOnTick = true;
+    @Configurable(value = "Check period seconds",
+            description = "Run the one minute checks on bars of this many seconds built from ticks, 0 to disable")
+    public int checkPeriodSeconds = 0;
+    @Configurable(value = "Latency file",
+            description = "Append the callback latency percentiles to this file every minute, empty to disable")
+    public String latencyFile = "";
+    @Configurable(value = "Markets",
+            description = "Waves to ride instead of the single instrument, separated by ';', each as"
+                    + " 'instrument period side stop loss',"
+                    + " e.g. 'EURUSD ONE_HOUR BUY 1.3650; GBPJPY FOUR_HOURS SELL 172.5'")
+    public String markets = "";
 
     //this is a safety feature to avoid too big position sizes due to typos
     private static final double maxPositionSize = 0.05;
+    //bars used to seed the Heikin Ashi candles at start
+    private static final int HEIKIN_ASHI_LOOKBACK = 100;
+    //log categories, see ToolRuntime
+    private static final int LOG_ORDERS = ToolRuntime.LOG_ORDERS;
+    private static final int LOG_ERRORS = ToolRuntime.LOG_ERRORS;
+    //latency probes
+    private static final int LAT_ON_TICK = 0;
+    private static final int LAT_ON_BAR = 1;
+    private static final int LAT_ON_MESSAGE = 2;
+    private static final int LAT_CHECK_BE = 3;
+    private static final int LAT_HA_DECISION = 4;
+    //end of the market lists below
+    private static final int NO_MARKET = -1;
+    private static final int PERIODS = Period.values().length;
 
     private IEngine engine;
     private IHistory history;
     private IContext context;
     private IConsole console;
-    private IIndicators indicators;
-    private boolean orderIsOpen;
-    private boolean SLMovedToBE;
-    private double breakEvenTriggerPrice;
+    private QuoteCache quoteCache;
+    private PositionSizer positionSizer;
+    private HeikinAshiState heikinAshi;
     private double totalProfit;
     private double totalCommission;
-    private String orderLabel;
-    private IEngine.OrderCommand orderCmd;
+    private OrderIds orderIds;
+    private MessageDispatcher messageDispatcher;
+    private ToolRuntime runtime;
+    private AccountState accountState;
+    private RingLogger logger;
+    private LatencyMonitor latency;
+    private OrderLatencyTracker orderLatency;
+    private OrderModifier orderModifier;
+    private TickBarAggregator checkBars;
+
+    //one slot per market
+    private int marketCount;
+    private Instrument[] marketInstruments;
+    private Period[] marketPeriods;
+    private OrderCommand[] orderCmds;
+    private double[] stopLossPrices;
+    private double[] breakEvenTriggerPrices;
+    private boolean[] orderIsOpen;
+    private boolean[] SLMovedToBE;
+    private String[] orderLabels;
+    private int openOrderCount;
+    //market by instrument and period ordinal (instrument * PERIODS + period), by order id
+    private int[] marketByBar;
+    private LongIntMap marketByOrderId;
+    //markets per instrument ordinal as linked lists, for the ticks
+    private int[] firstMarket;
+    private int[] nextMarket;
+    //break even levels per instrument ordinal, the trigger id is the market
+    private PriceTriggerIndex[] priceTriggers;
 
     @Override
     public void onStart(IContext context) throws JFException {
         this.engine = context.getEngine();
         this.history = context.getHistory();
         this.context = context;
-        this.orderIsOpen = false;
-        this.SLMovedToBE = false;
-        this.breakEvenTriggerPrice = 0;
         this.console = context.getConsole();
-        this.indicators = context.getIndicators();
+        this.runtime = new ToolRuntime(context, getClass().getSimpleName(), latencyFile,
+                "onTick", "onBar", "onMessage", "checkSLMoveBE", "haDecision");
+        this.quoteCache = runtime.getQuoteCache();
+        this.positionSizer = runtime.getPositionSizer();
+        this.orderIds = runtime.getOrderIds();
+        this.messageDispatcher = runtime.getMessageDispatcher();
+        this.accountState = runtime.getAccountState();
+        this.logger = runtime.getLogger();
+        this.latency = runtime.getLatency();
+        this.orderLatency = runtime.getOrderLatency();
+        this.orderModifier = runtime.getOrderModifier();
         this.totalProfit = 0;
         this.totalCommission = 0;
-        this.orderLabel = "invalid";
+        registerMessageHandlers();
+
+        //check and setup markets
+        if (!setupMarkets()) {
+            return;
+        }
 
         //subscribe instruments
         console.getOut().println("Strategy starting. Subscribing instruments...");
         subscribeInstruments();
-        
-        //check and setup order command
-        if (isBuyOrder ^ isSellOrder) {
-            if (isBuyOrder)
-                orderCmd = IEngine.OrderCommand.BUY;
-            else
-                orderCmd = IEngine.OrderCommand.SELL;
-        } else {
-            console.getErr().println("Invalid order side, please check only BUY or SELL");
-            return;
+
+        //seed Heikin Ashi candles and open one wave per market
+        this.heikinAshi = new HeikinAshiState(marketCount);
+        //custom check period bars per instrument in the slot of its first market, null for one minute bars
+        this.checkBars = (checkPeriodSeconds > 0)
+                ? new TickBarAggregator(marketCount, checkPeriodSeconds * 1000L) : null;
+        for (int m = 0; m < marketCount; m++) {
+            heikinAshi.seed(m, history, marketInstruments[m], marketPeriods[m], HEIKIN_ASHI_LOOKBACK);
+            openWave(m);
         }
-        
-        //check stop loss price
-        if (stopLossPrice <= 0.0) {
-            console.getErr().println("Invalid stop loss price: " + stopLossPrice);
+    }
+
+    @Override
+    public void onTick(Instrument instrument, ITick tick) throws JFException {
+        long start = System.nanoTime();
+        logger.setTime(tick.getTime());
+        quoteCache.onTick(instrument, tick);
+        if (heikinAshi == null) {
             return;
         }
 
-        //calc stop loss pips
-        double stopLossPips;
-        if (isBuyOrder) {
-            stopLossPips = Math.abs(stopLossPrice - history.getLastTick(instrument).getAsk()) *
-                    Math.pow(10, this.instrument.getPipScale());
-        } else {
-            stopLossPips = Math.abs(stopLossPrice - history.getLastTick(instrument).getBid()) *
-                    Math.pow(10, this.instrument.getPipScale());
+        //keep the Heikin Ashi candles in progress up to date
+        for (int m = firstMarket[instrument.ordinal()]; m != NO_MARKET; m = nextMarket[m]) {
+            heikinAshi.onTick(m, tick);
         }
-        
-        //calc break even price if required
-        if (moveSLBreakEven) {
-            double lastAsk = history.getLastTick(instrument).getAsk();
-            double lastBid = history.getLastTick(instrument).getBid();
-            if (isBuyOrder) {
-                double delta = lastAsk - stopLossPrice;
-                breakEvenTriggerPrice = lastAsk + delta;
-            } else {
-                double delta = stopLossPrice - lastBid;
-                breakEvenTriggerPrice = lastBid - delta;
+
+        //check on the custom period bars built from the ticks instead of one minute bars
+        int first = firstMarket[instrument.ordinal()];
+        if (checkBars != null && first != NO_MARKET && checkBars.onTick(first, tick)) {
+            onCheckBar(instrument, checkBars.getHigh(first, OfferSide.ASK), checkBars.getLow(first, OfferSide.BID));
+        }
+
+        //move SL to B.E. on the first tick reaching the trigger price
+        PriceTriggerIndex triggers = priceTriggers[instrument.ordinal()];
+        if (triggers != null) {
+            int m;
+            while ((m = triggers.poll(tick)) != PriceTriggerIndex.NONE) {
+                checkSLMoveBE(m, tick.getAsk(), tick.getBid());
             }
         }
 
-        //submit order
-        String direction = orderCmd.isLong() ? "long" : "short";
-        IOrder order = submitOrder(this.constantCurrencyRisk, orderCmd, stopLossPips);
-        console.getInfo().println("Order " + order.getLabel()
-                + " submitted. Direction: " + direction
-                + " Stop loss: " + order.getStopLossPrice()
-                + " Take profit: " + order.getTakeProfitPrice()
-                + " Break even trigger: " + breakEvenTriggerPrice
-                + " Amount: " + order.getAmount());
-        this.orderIsOpen = true;
-    }
+        //send the order changes of this event
+        orderModifier.flush();
 
-    @Override
-    public void onTick(Instrument instrument, ITick tick) throws JFException {
+        latency.record(LAT_ON_TICK, start);
     }
 
     @Override
     public void onBar(Instrument instrument, Period period, IBar askBar, IBar bidBar) throws JFException {
-        if (instrument.equals(this.instrument) && period.equals(Period.ONE_MIN) && (orderIsOpen)) {
-            //check if order meets the B.E. SL move requirements
-            checkSLMoveBE(askBar, bidBar);
+        long start = System.nanoTime();
+        logger.setTime(askBar.getTime());
+        if (heikinAshi == null) {
+            return;
         }
-        
-        //close order if Heikin Ashi candle has opposite color
-        if (instrument.equals(this.instrument) && period.equals(this.period) && (orderIsOpen)) {
-            double[] haCandle = indicators.heikinAshi(instrument, period, OfferSide.BID, 1);
-            double haOpen = haCandle[0];
-            double haClose = haCandle[1];
-            
-            boolean closeOrder = false;
-            if (isBuyOrder) {
-                if (haClose < haOpen) {
-                    closeOrder = true;
-                }
-            } else {
-                if (haClose > haOpen) {
-                    closeOrder = true;
-                }
-            }
-            if (closeOrder) {
-                IOrder o = engine.getOrder(orderLabel);
-                if (o != null) {
-                    o.close();
-                    this.orderIsOpen = false;
+
+        if (checkBars == null && period.equals(Period.ONE_MIN)) {
+            onCheckBar(instrument, askBar.getHigh(), bidBar.getLow());
+        }
+
+        int m = marketByBar[instrument.ordinal() * PERIODS + period.ordinal()];
+        if (m != NO_MARKET) {
+            long decisionStart = System.nanoTime();
+            //keep the Heikin Ashi candles up to date, with or without open order
+            heikinAshi.onBar(m, askBar, bidBar);
+
+            //close order if Heikin Ashi candle has opposite color
+            if (orderIsOpen[m]) {
+                boolean closeOrder = false;
+                if (orderCmds[m].isLong()) {
+                    if (heikinAshi.isBearish(m, OfferSide.BID)) {
+                        closeOrder = true;
+                    }
                 } else {
-                    console.getErr().println("Order " + orderLabel + " not found");
+                    if (heikinAshi.isBullish(m, OfferSide.BID)) {
+                        closeOrder = true;
+                    }
+                }
+                if (closeOrder) {
+                    IOrder o = engine.getOrder(orderLabels[m]);
+                    if (o != null) {
+                        long closeStart = System.nanoTime();
+                        o.close();
+                        orderLatency.onClose(OrderIds.parse(orderLabels[m]), closeStart);
+                        setOrderClosed(m);
+                    } else {
+                        if (logger.begin(RingLogger.ERROR, LOG_ERRORS, "Order {} not found")) {
+                            logger.arg(orderLabels[m]).end();
+                        }
+                    }
                 }
-
             }
+            latency.record(LAT_HA_DECISION, decisionStart);
         }
+
+        //send the order changes of this event
+        orderModifier.flush();
+
+        latency.record(LAT_ON_BAR, start);
     }
 
     @Override
     public void onMessage(IMessage message) throws JFException {
-        IOrder order = message.getOrder();
-        if (order != null) {
-            //handle only messages relative to the order managed by this instance
-            if (order.getLabel().equals(orderLabel)) {
-                if (message.getType() == Type.ORDER_CLOSE_OK) {
-                    //update order variable on order close
-                    this.orderIsOpen = false;
-                    console.getInfo().println("Order " + order.getLabel()
-                            + " closed. Profit: " + order.getProfitLossInAccountCurrency());
-                    //update profit/loss and commission
-                    this.totalProfit += order.getProfitLossInAccountCurrency();
-                    this.totalCommission += order.getCommission();
-                } else if (message.getType() == Type.ORDER_SUBMIT_REJECTED) {
-                    //update order variable on order rejection
-                    this.orderIsOpen = false;
-                    console.getErr().println("Order " + order.getLabel() + " rejected.");
-                } else if (message.getType() == Type.ORDER_CHANGED_REJECTED) {
-                    console.getErr().println("Order " + order.getLabel() + " change rejected.");
-                }
-            }
-        } else if ((message.getType() == Type.INSTRUMENT_STATUS)
-                || (message.getType() == Type.CALENDAR)) {
-            //filter out
-        } else {
-            context.getConsole().getOut().println("Message: " + message.toString());
-        }
+        long start = System.nanoTime();
+        logger.setTime(message.getCreationTime());
+        //handle only messages relative to the orders managed by this instance
+        messageDispatcher.dispatch(message);
+        latency.record(LAT_ON_MESSAGE, start);
     }
 
     @Override
     public void onAccount(IAccount account) throws JFException {
+        //keep equity up to date for sizing
+        accountState.update(account);
     }
 
     @Override
     public void onStop() throws JFException {
-        console.getNotif().println("Strategy stopped. Profit: " + totalProfit +
-                " Commission: " + totalCommission +
-                " Net Profit: " + (totalProfit - totalCommission));
+        runtime.stop(totalProfit, totalCommission);
     }
 
-    private IOrder submitOrder(int currencyRisk, OrderCommand orderCmd, double stopLossPips)
+    private void registerMessageHandlers() {
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                onOrderClose(marketByOrderId.get(orderId), message.getOrder());
+            }
+        }, Type.ORDER_CLOSE_OK);
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                onOrderFill(marketByOrderId.get(orderId), message.getOrder());
+            }
+        }, Type.ORDER_FILL_OK);
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                onOrderRejected(marketByOrderId.get(orderId), message.getOrder());
+            }
+        }, Type.ORDER_SUBMIT_REJECTED);
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                onOrderChangeRejected(message.getOrder());
+            }
+        }, Type.ORDER_CHANGED_REJECTED);
+        //messages without order are printed as before, except instrument status and calendar
+        messageDispatcher.registerOrderless(MessageDispatcher.print(console.getOut()),
+                ToolRuntime.PRINTED_ORDERLESS_TYPES);
+    }
+
+    private void onOrderClose(int m, IOrder order) throws JFException {
+        if (m == LongIntMap.NONE) {
+            return;
+        }
+        //update order variable on order close
+        setOrderClosed(m);
+        if (logger.begin(RingLogger.INFO, LOG_ORDERS, "Order {} closed. Profit: {}")) {
+            logger.arg(order.getLabel()).arg(order.getProfitLossInAccountCurrency()).end();
+        }
+        //update profit/loss and commission
+        this.totalProfit += order.getProfitLossInAccountCurrency();
+        this.totalCommission += order.getCommission();
+    }
+
+    private void onOrderFill(int m, IOrder order) throws JFException {
+        if (m == LongIntMap.NONE) {
+            return;
+        }
+        //check the trigger price on each tick from now on
+        if (moveSLBreakEven && breakEvenOnTick && !SLMovedToBE[m]) {
+            getPriceTriggers(marketInstruments[m]).put(m, breakEvenTriggerPrices[m], order.isLong(),
+                    order.isLong() ? OfferSide.ASK : OfferSide.BID);
+        }
+    }
+
+    private void onOrderRejected(int m, IOrder order) throws JFException {
+        if (m == LongIntMap.NONE) {
+            return;
+        }
+        //update order variable on order rejection
+        setOrderClosed(m);
+        if (logger.begin(RingLogger.ERROR, LOG_ORDERS, "Order {} rejected.")) {
+            logger.arg(order.getLabel()).end();
+        }
+    }
+
+    private void onOrderChangeRejected(IOrder order) throws JFException {
+        if (logger.begin(RingLogger.ERROR, LOG_ORDERS, "Order {} change rejected.")) {
+            logger.arg(order.getLabel()).end();
+        }
+    }
+
+    private void setOrderClosed(int m) {
+        if (orderIsOpen[m]) {
+            orderIsOpen[m] = false;
+            openOrderCount--;
+        }
+        if (priceTriggers[marketInstruments[m].ordinal()] != null) {
+            priceTriggers[marketInstruments[m].ordinal()].remove(m);
+        }
+    }
+
+    /*
+     * Builds the market slots from the markets list, or from the single
+     * instrument parameters if it is empty. Returns false on invalid input.
+     */
+    private boolean setupMarkets() {
+        String[] entries = markets.trim().isEmpty() ? new String[0] : markets.split(";");
+        int capacity = Math.max(1, entries.length);
+        this.marketInstruments = new Instrument[capacity];
+        this.marketPeriods = new Period[capacity];
+        this.orderCmds = new OrderCommand[capacity];
+        this.stopLossPrices = new double[capacity];
+        this.breakEvenTriggerPrices = new double[capacity];
+        this.orderIsOpen = new boolean[capacity];
+        this.SLMovedToBE = new boolean[capacity];
+        this.orderLabels = new String[capacity];
+        this.nextMarket = new int[capacity];
+        this.marketByOrderId = new LongIntMap(capacity);
+        this.marketByBar = new int[Instrument.values().length * PERIODS];
+        this.firstMarket = new int[Instrument.values().length];
+        this.priceTriggers = new PriceTriggerIndex[Instrument.values().length];
+        Arrays.fill(marketByBar, NO_MARKET);
+        Arrays.fill(firstMarket, NO_MARKET);
+        this.marketCount = 0;
+        this.openOrderCount = 0;
+
+        if (entries.length == 0) {
+            //check and setup order command
+            if (!(isBuyOrder ^ isSellOrder)) {
+                console.getErr().println("Invalid order side, please check only BUY or SELL");
+                return false;
+            }
+            //check stop loss price
+            if (stopLossPrice <= 0.0) {
+                console.getErr().println("Invalid stop loss price: " + stopLossPrice);
+                return false;
+            }
+            return addMarket(instrument, period, isBuyOrder ? OrderCommand.BUY : OrderCommand.SELL, stopLossPrice);
+        }
+
+        for (String entry : entries) {
+            String[] fields = entry.trim().split("\\s+");
+            if (fields.length != 4) {
+                console.getErr().println("Invalid market, expected 'instrument period side stop loss': " + entry);
+                return false;
+            }
+            Instrument pair = BasketLegs.parseInstrument(fields[0]);
+            Period barPeriod;
+            OrderCommand cmd;
+            double stopLoss;
+            try {
+                barPeriod = Period.valueOf(fields[1].toUpperCase());
+                cmd = OrderCommand.valueOf(fields[2].toUpperCase());
+                stopLoss = Double.parseDouble(fields[3]);
+            } catch (IllegalArgumentException e) {
+                barPeriod = null;
+                cmd = null;
+                stopLoss = 0;
+            }
+            if (pair == null || barPeriod == null || stopLoss <= 0.0
+                    || (cmd != OrderCommand.BUY && cmd != OrderCommand.SELL)) {
+                console.getErr().println("Invalid market: " + entry);
+                return false;
+            }
+            if (!addMarket(pair, barPeriod, cmd, stopLoss)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean addMarket(Instrument pair, Period barPeriod, OrderCommand cmd, double stopLoss) {
+        int key = pair.ordinal() * PERIODS + barPeriod.ordinal();
+        if (marketByBar[key] != NO_MARKET) {
+            console.getErr().println("Duplicate market: " + pair + " " + barPeriod);
+            return false;
+        }
+        int m = marketCount++;
+        marketInstruments[m] = pair;
+        marketPeriods[m] = barPeriod;
+        orderCmds[m] = cmd;
+        stopLossPrices[m] = stopLoss;
+        marketByBar[key] = m;
+        //append to the markets of the instrument
+        nextMarket[m] = firstMarket[pair.ordinal()];
+        firstMarket[pair.ordinal()] = m;
+        return true;
+    }
+
+    private PriceTriggerIndex getPriceTriggers(Instrument pair) {
+        PriceTriggerIndex triggers = priceTriggers[pair.ordinal()];
+        if (triggers == null) {
+            triggers = new PriceTriggerIndex(2);
+            priceTriggers[pair.ordinal()] = triggers;
+        }
+        return triggers;
+    }
+
+    /*
+     * Submits the market order of a wave.
+     */
+    private void openWave(int m) throws JFException {
+        Instrument pair = marketInstruments[m];
+        boolean isLong = orderCmds[m].isLong();
+
+        //calc stop loss pips
+        ITick lastTick = quoteCache.getLastTick(pair);
+        double entryPrice = isLong ? lastTick.getAsk() : lastTick.getBid();
+        double stopLossPips = positionSizer.getPips(pair, stopLossPrices[m], entryPrice);
+
+        //calc break even price if required
+        if (moveSLBreakEven) {
+            double lastAsk = lastTick.getAsk();
+            double lastBid = lastTick.getBid();
+            if (isLong) {
+                double delta = lastAsk - stopLossPrices[m];
+                breakEvenTriggerPrices[m] = lastAsk + delta;
+            } else {
+                double delta = stopLossPrices[m] - lastBid;
+                breakEvenTriggerPrices[m] = lastBid - delta;
+            }
+        }
+
+        //submit order
+        String direction = isLong ? "long" : "short";
+        IOrder order = submitOrder(m, getCurrencyRisk(), orderCmds[m], stopLossPips);
+        console.getInfo().println("Order " + order.getLabel()
+                + " submitted. Direction: " + direction
+                + " Stop loss: " + order.getStopLossPrice()
+                + " Take profit: " + order.getTakeProfitPrice()
+                + " Break even trigger: " + breakEvenTriggerPrices[m]
+                + " Amount: " + order.getAmount());
+        this.orderIsOpen[m] = true;
+        this.openOrderCount++;
+    }
+
+    private IOrder submitOrder(int m, double currencyRisk, OrderCommand orderCmd, double stopLossPips)
             throws JFException {
         double positionSize;
         
         //calc position size
-        positionSize = getPositionSize(instrument, stopLossPips, currencyRisk, orderCmd);
+        positionSize = getPositionSize(marketInstruments[m], stopLossPips, currencyRisk, orderCmd);
         
         //create order label
-        this.orderLabel = getLabel(orderCmd);
+        long orderId = orderIds.next();
+        orderLabels[m] = orderIds.getLabel(orderCmd, orderId);
+        marketByOrderId.put(orderId, m);
         
         //submit order at market
-        return engine.submitOrder(orderLabel, instrument, orderCmd, positionSize, 0, 5, stopLossPrice, 0);
+        long submitStart = System.nanoTime();
+        IOrder order = engine.submitOrder(orderLabels[m], marketInstruments[m], orderCmd, positionSize, 0, 5,
+                stopLossPrices[m], 0);
+        orderLatency.onSubmit(orderId, submitStart);
+        return order;
     }
     
-    private String getLabel(OrderCommand cmd) {
-        return cmd.toString() + System.currentTimeMillis();
-    }
-
-    private double getPositionSize(Instrument pair, double stopLossPips, int constantCurrencyRisk, OrderCommand orderCmd)
+    private double getPositionSize(Instrument pair, double stopLossPips, double currencyRisk, OrderCommand orderCmd)
             throws JFException {
-        //init symbols
-        String accountCurrency = context.getAccount().getCurrency().getCurrencyCode();
-        String primaryCurrency = pair.getPrimaryCurrency().getCurrencyCode();
-        String secondaryCurrency = pair.getSecondaryCurrency().getCurrencyCode();
-        
-        //get exchange rate of traded pair in relation to account currency
-        double accountCurrencyExchangeRate;
-        String apCurrency = accountCurrency + "/" + primaryCurrency;
-        Instrument i;
-        
-        if (primaryCurrency.equals(accountCurrency)) {
-            i = pair;
-        } else {
-            i = Instrument.fromString(apCurrency);
-        }
-        
-        if (i == null) { //currency not found, try inverted pair
-            i = Instrument.fromInvertedString(apCurrency);
-            if (orderCmd == OrderCommand.BUY)
-                accountCurrencyExchangeRate = 1 / history.getLastTick(i).getAsk();
-            else
-                accountCurrencyExchangeRate = 1 / history.getLastTick(i).getBid();
-        } else {
-            if (orderCmd == OrderCommand.BUY)
-                accountCurrencyExchangeRate = history.getLastTick(i).getAsk();
-            else
-                accountCurrencyExchangeRate = history.getLastTick(i).getBid();
-        }
-        
-        //calc currency/pip value
-        double pairExchangeRate;
-        if (orderCmd == OrderCommand.BUY)
-            pairExchangeRate = history.getLastTick(pair).getAsk();
-        else
-            pairExchangeRate = history.getLastTick(pair).getBid();
-        double accountCurrencyPerPip = pair.getPipValue() / pairExchangeRate *
-                                       100000;
-        if (!primaryCurrency.equals(accountCurrency)) 
-            accountCurrencyPerPip /= accountCurrencyExchangeRate; //convert to account pip value
-        
         //calc position size
-        double units = constantCurrencyRisk / stopLossPips * 100000 / accountCurrencyPerPip;
-        
-        //convert to standard lots
-        double lots = units / 1000000;
+        double lots = positionSizer.getPositionSize(pair, orderCmd.isLong(), stopLossPips, currencyRisk);
 
         //check position size safety
         if (lots > maxPositionSize) {
-            console.getErr().println("Position size exceeds safety check, maxPositionSize constant"
-                    + " is " + maxPositionSize + " lots. But current position size is " + lots + " lots.");
+            if (logger.begin(RingLogger.ERROR, LOG_ERRORS, "Position size exceeds safety check,"
+                    + " maxPositionSize constant is {} lots. But current position size is {} lots.")) {
+                logger.arg(maxPositionSize).arg(lots).end();
+            }
             lots = 0;
         }
 
         return lots;
     }
 
-    private void checkSLMoveBE(IBar askBar, IBar bidBar) throws JFException {
+    /*
+     * Checks done on each one minute bar, or on each custom period bar,
+     * of an instrument with the extreme prices of the bar.
+     */
+    private void onCheckBar(Instrument instrument, double askHigh, double bidLow) throws JFException {
+        if (openOrderCount > 0) {
+            //check if orders on this instrument meet the B.E. SL move requirements
+            for (int m = firstMarket[instrument.ordinal()]; m != NO_MARKET; m = nextMarket[m]) {
+                if (orderIsOpen[m]) {
+                    checkSLMoveBE(m, askHigh, bidLow);
+                }
+            }
+        }
+    }
+
+    /*
+     * askHigh and bidLow are the extreme prices since the last check, i.e.
+     * of the last one minute (or check period) bar or the prices of the current tick.
+     */
+    private void checkSLMoveBE(int m, double askHigh, double bidLow) throws JFException {
+        long start = System.nanoTime();
         if (moveSLBreakEven) { //is it user enabled
-            if (!SLMovedToBE) {
-                IOrder o = engine.getOrder(orderLabel);
+            if (!SLMovedToBE[m]) {
+                IOrder o = engine.getOrder(orderLabels[m]);
                 if (o != null) {
+                    boolean breakEvenTriggerReached;
                     if (o.isLong()) {
-                        if (askBar.getHigh() >= breakEvenTriggerPrice) {
-                            o.setStopLossPrice(o.getOpenPrice());
-                            SLMovedToBE = true;
-                            console.getOut().println("Order " + o.getLabel() + ": SL moved to B.E.");
-                        }
+                        breakEvenTriggerReached = askHigh >= breakEvenTriggerPrices[m];
                     } else {
-                        if (bidBar.getLow() <= breakEvenTriggerPrice) {
-                            o.setStopLossPrice(o.getOpenPrice());
-                            SLMovedToBE = true;
-                            console.getOut().println("Order " + o.getLabel() + ": SL moved to B.E.");
+                        breakEvenTriggerReached = bidLow <= breakEvenTriggerPrices[m];
+                    }
+                    if (breakEvenTriggerReached) {
+                        orderModifier.setStopLossPrice(o, o.getOpenPrice());
+                        SLMovedToBE[m] = true;
+                        getPriceTriggers(marketInstruments[m]).remove(m);
+                        if (logger.begin(RingLogger.INFO, LOG_ORDERS, "Order {}: SL moved to B.E.")) {
+                            logger.arg(o.getLabel()).end();
                         }
                     }
                 } else {
-                    console.getErr().println("Order " + orderLabel + " not found");
+                    if (logger.begin(RingLogger.ERROR, LOG_ERRORS, "Order {} not found")) {
+                        logger.arg(orderLabels[m]).end();
+                    }
                 }
             }
         }
+
+        latency.record(LAT_CHECK_BE, start);
+    }
+
+    /*
+     * Account currency risk of new sizes, a percentage of the last known
+     * equity or the constant amount.
+     */
+    private double getCurrencyRisk() {
+        return (riskPercent > 0) ? accountState.getRisk(riskPercent) : constantCurrencyRisk;
     }
 
-    private void subscribeInstruments() {
+    private void subscribeInstruments() throws JFException {
         //init list
         Set<Instrument> instruments = new HashSet<Instrument>();
-        instruments.add(instrument);
-
-        //init symbols
-        String accountCurrency = context.getAccount().getCurrency().getCurrencyCode();
-        String primaryCurrency = instrument.getPrimaryCurrency().getCurrencyCode();
-        String apCurrency = accountCurrency + "/" + primaryCurrency;
-
-        //find complementary instrument
-        Instrument i;
-        if (primaryCurrency.equals(accountCurrency)) {
-            i = instrument;
-        } else {
-            i = Instrument.fromString(apCurrency);
-        }
-        if (i == null) { //currency not found, try inverted pair
-            i = Instrument.fromInvertedString(apCurrency);
-        }
-        if (i != instrument) {
-            instruments.add(i);
+        for (int m = 0; m < marketCount; m++) {
+            instruments.add(marketInstruments[m]);
+
+            //add complementary instruments for account currency conversion
+            positionSizer.addConversionInstruments(marketInstruments[m], instruments);
         }
 
         //subscribe
@@ -372,4 +626,3 @@ public class HAWave implements IStrategy {
     }
 
 }
-
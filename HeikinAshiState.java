@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.IBar;
+import com.dukascopy.api.IHistory;
+import com.dukascopy.api.ITick;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.JFException;
+import com.dukascopy.api.OfferSide;
+import com.dukascopy.api.Period;
+
+/*
+ * Heikin Ashi candles of a set of markets (instrument and period), for both
+ * offer sides, updated incrementally instead of asking the indicators for
+ * each bar. A candle only depends on its bar and the previous candle:
+ * open = (previous open + previous close) / 2,
+ * close = (open + high + low + close of the bar) / 4,
+ * high/low = extremes of the bar, the open and the close.
+ * The candles of all markets are kept in flat arrays indexed by market and
+ * side. Each market is seeded once from the history, then each completed
+ * bar costs a few double operations. The candle of the bar in progress is
+ * kept up to date from the ticks.
+ */
+public class HeikinAshiState {
+
+    private static final int SIDES = 2;
+    private static final int ASK = OfferSide.ASK.ordinal();
+    private static final int BID = OfferSide.BID.ordinal();
+
+    private final int size;
+
+    //last completed candle per market and side
+    private final double[] open;
+    private final double[] close;
+    private final double[] high;
+    private final double[] low;
+    private final boolean[] seeded;
+
+    //bar in progress per market and side, from the ticks since the last completed bar
+    private final double[] barOpen;
+    private final double[] barHigh;
+    private final double[] barLow;
+    private final double[] barClose;
+    private final boolean[] barStarted;
+
+    public HeikinAshiState(int size) {
+        this.size = size;
+        this.open = new double[size * SIDES];
+        this.close = new double[size * SIDES];
+        this.high = new double[size * SIDES];
+        this.low = new double[size * SIDES];
+        this.seeded = new boolean[size];
+        this.barOpen = new double[size * SIDES];
+        this.barHigh = new double[size * SIDES];
+        this.barLow = new double[size * SIDES];
+        this.barClose = new double[size * SIDES];
+        this.barStarted = new boolean[size];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /*
+     * Computes the candles of the last completed bars of a market, starting
+     * lookback bars back or at the oldest bar available. Older bars change
+     * the result less than 2^-lookback of the price.
+     */
+    public void seed(int market, IHistory history, Instrument instrument, Period period, int lookback) {
+        seeded[market] = false;
+        barStarted[market] = false;
+        for (int shift = lookback; shift >= 1; shift--) {
+            IBar askBar = getBar(history, instrument, period, OfferSide.ASK, shift);
+            IBar bidBar = getBar(history, instrument, period, OfferSide.BID, shift);
+            if (askBar != null && bidBar != null) {
+                onBar(market, askBar, bidBar);
+            }
+        }
+    }
+
+    /*
+     * Adds a completed bar of the market.
+     */
+    public void onBar(int market, IBar askBar, IBar bidBar) {
+        update(market, market * SIDES + ASK, askBar);
+        update(market, market * SIDES + BID, bidBar);
+        seeded[market] = true;
+        barStarted[market] = false;
+    }
+
+    /*
+     * Updates the bar in progress of the market with a tick of its instrument.
+     */
+    public void onTick(int market, ITick tick) {
+        int ask = market * SIDES + ASK;
+        int bid = market * SIDES + BID;
+        if (!barStarted[market]) {
+            barOpen[ask] = tick.getAsk();
+            barHigh[ask] = tick.getAsk();
+            barLow[ask] = tick.getAsk();
+            barOpen[bid] = tick.getBid();
+            barHigh[bid] = tick.getBid();
+            barLow[bid] = tick.getBid();
+            barStarted[market] = true;
+        } else {
+            barHigh[ask] = Math.max(barHigh[ask], tick.getAsk());
+            barLow[ask] = Math.min(barLow[ask], tick.getAsk());
+            barHigh[bid] = Math.max(barHigh[bid], tick.getBid());
+            barLow[bid] = Math.min(barLow[bid], tick.getBid());
+        }
+        barClose[ask] = tick.getAsk();
+        barClose[bid] = tick.getBid();
+    }
+
+    /*
+     * True once a completed candle of the market is available.
+     */
+    public boolean isReady(int market) {
+        return seeded[market];
+    }
+
+    public double getOpen(int market, OfferSide side) {
+        return open[market * SIDES + side.ordinal()];
+    }
+
+    public double getClose(int market, OfferSide side) {
+        return close[market * SIDES + side.ordinal()];
+    }
+
+    public double getHigh(int market, OfferSide side) {
+        return high[market * SIDES + side.ordinal()];
+    }
+
+    public double getLow(int market, OfferSide side) {
+        return low[market * SIDES + side.ordinal()];
+    }
+
+    public boolean isBullish(int market, OfferSide side) {
+        int s = market * SIDES + side.ordinal();
+        return close[s] > open[s];
+    }
+
+    public boolean isBearish(int market, OfferSide side) {
+        int s = market * SIDES + side.ordinal();
+        return close[s] < open[s];
+    }
+
+    /*
+     * True if the bar in progress of the market has ticks, so that the
+     * partial candle below is defined.
+     */
+    public boolean hasPartial(int market) {
+        return seeded[market] && barStarted[market];
+    }
+
+    public double getPartialOpen(int market, OfferSide side) {
+        int s = market * SIDES + side.ordinal();
+        return (open[s] + close[s]) / 2;
+    }
+
+    public double getPartialClose(int market, OfferSide side) {
+        int s = market * SIDES + side.ordinal();
+        return (barOpen[s] + barHigh[s] + barLow[s] + barClose[s]) / 4;
+    }
+
+    public double getPartialHigh(int market, OfferSide side) {
+        int s = market * SIDES + side.ordinal();
+        return Math.max(barHigh[s], Math.max(getPartialOpen(market, side), getPartialClose(market, side)));
+    }
+
+    public double getPartialLow(int market, OfferSide side) {
+        int s = market * SIDES + side.ordinal();
+        return Math.min(barLow[s], Math.min(getPartialOpen(market, side), getPartialClose(market, side)));
+    }
+
+    private void update(int market, int s, IBar bar) {
+        double haClose = (bar.getOpen() + bar.getHigh() + bar.getLow() + bar.getClose()) / 4;
+        if (seeded[market]) {
+            double haOpen = (open[s] + close[s]) / 2;
+            open[s] = haOpen;
+            high[s] = Math.max(bar.getHigh(), Math.max(haOpen, haClose));
+            low[s] = Math.min(bar.getLow(), Math.min(haOpen, haClose));
+        } else {
+            //the first candle starts from the middle of its bar
+            open[s] = (bar.getOpen() + bar.getClose()) / 2;
+            high[s] = bar.getHigh();
+            low[s] = bar.getLow();
+        }
+        close[s] = haClose;
+    }
+
+    private static IBar getBar(IHistory history, Instrument instrument, Period period, OfferSide side, int shift) {
+        try {
+            return history.getBar(instrument, period, side, shift);
+        } catch (JFException e) {
+            //not in the history (yet)
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/*
+ * Latency histograms of the callbacks and branches of a tool, one per
+ * probe, indexed by constants of the tool.
+ *
+ * Usage:
+ * long start = System.nanoTime();
+ * ...
+ * latency.record(LAT_ON_TICK, start);
+ *
+ * The percentiles are printed on demand, e.g. in onStop, and can be
+ * appended periodically to a local file by a background thread, so the
+ * strategy thread never does I/O for them.
+ */
+public class LatencyMonitor {
+
+    private final String prefix;
+    private String[] names;
+    private LatencyHistogram[] histograms;
+    private Timer timer;
+    private String fileName;
+    private PrintStream errors;
+    //set on the first failed write, no more writes afterwards
+    private volatile boolean dumpFailed;
+
+    /*
+     * prefix is put in front of the probe names, e.g. the tool name.
+     */
+    public LatencyMonitor(String prefix, String... names) {
+        this.prefix = prefix;
+        this.names = names;
+        this.histograms = new LatencyHistogram[names.length];
+        for (int i = 0; i < names.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /*
+     * Adds probes after the ones of the constructor and returns the index
+     * of the first one, e.g. for the order round trips (see
+     * OrderLatencyTracker). Must be called before startFileDump.
+     */
+    public int addProbes(String... addedNames) {
+        int first = names.length;
+        names = Arrays.copyOf(names, first + addedNames.length);
+        histograms = Arrays.copyOf(histograms, first + addedNames.length);
+        for (int i = 0; i < addedNames.length; i++) {
+            names[first + i] = addedNames[i];
+            histograms[first + i] = new LatencyHistogram();
+        }
+        return first;
+    }
+
+    /*
+     * Records the time elapsed since startNanos (System.nanoTime) for the probe.
+     */
+    public void record(int probe, long startNanos) {
+        histograms[probe].record(System.nanoTime() - startNanos);
+    }
+
+    public LatencyHistogram get(int probe) {
+        return histograms[probe];
+    }
+
+    /*
+     * Prints one line per probe with recorded values.
+     */
+    public void print(PrintStream out) {
+        for (int i = 0; i < histograms.length; i++) {
+            if (histograms[i].getCount() > 0) {
+                out.println(histograms[i].format(prefix + "." + names[i]));
+            }
+        }
+    }
+
+    /*
+     * Appends the percentiles to the file every periodMillis from a daemon
+     * thread, until stopFileDump. The lines are read without stopping the
+     * recording, so they may miss the values recorded meanwhile.
+     * The first failed write is printed to errors and ends the dump.
+     */
+    public void startFileDump(String fileName, long periodMillis, PrintStream errors) {
+        stopFileDump();
+        this.fileName = fileName;
+        this.errors = errors;
+        this.dumpFailed = false;
+        timer = new Timer("LatencyMonitor", true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                if (!writeFile()) {
+                    cancel();
+                }
+            }
+        }, periodMillis, periodMillis);
+    }
+
+    /*
+     * Stops the periodic dump and appends the final percentiles, never
+     * throws.
+     */
+    public void stopFileDump() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+            writeFile();
+        }
+    }
+
+    /*
+     * Returns false if the dump failed, now or before.
+     */
+    private synchronized boolean writeFile() {
+        if (dumpFailed) {
+            return false;
+        }
+        PrintWriter writer = null;
+        try {
+            writer = new PrintWriter(new FileWriter(fileName, true));
+            String time = new Date().toString();
+            for (int i = 0; i < histograms.length; i++) {
+                if (histograms[i].getCount() > 0) {
+                    writer.println(time + " " + histograms[i].format(prefix + "." + names[i]));
+                }
+            }
+            if (writer.checkError()) {
+                throw new IOException("write error");
+            }
+            return true;
+        } catch (IOException e) {
+            return fail(e);
+        } catch (RuntimeException e) {
+            //e.g. a SecurityException of a sandbox denying the file
+            return fail(e);
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private boolean fail(Exception e) {
+        //the monitor must not disturb the strategy, stop dumping
+        dumpFailed = true;
+        errors.println("Latency file dump to " + fileName + " disabled: " + e);
+        return false;
+    }
+
+}
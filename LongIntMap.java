@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import java.util.Arrays;
+
+/*
+ * Map from long keys to int values with open addressing and linear
+ * probing in two primitive arrays, so lookups neither box nor allocate.
+ * Sized up front for the expected number of keys, it only grows (and
+ * allocates) once it gets more than half full. Negative keys are not
+ * supported, -1 marks a free cell.
+ */
+public class LongIntMap {
+
+    public static final int NONE = -1;
+
+    private static final long FREE = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    public LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, expectedSize) * 4 - 1);
+        allocate(capacity);
+    }
+
+    /*
+     * Returns the value of the key, NONE if it is not in the map.
+     */
+    public int get(long key) {
+        if (key < 0) {
+            return NONE;
+        }
+        int cell = cell(key);
+        while (keys[cell] != FREE) {
+            if (keys[cell] == key) {
+                return values[cell];
+            }
+            cell = (cell + 1) & mask;
+        }
+        return NONE;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != NONE;
+    }
+
+    public void put(long key, int value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative key: " + key);
+        }
+        int cell = cell(key);
+        while (keys[cell] != FREE) {
+            if (keys[cell] == key) {
+                values[cell] = value;
+                return;
+            }
+            cell = (cell + 1) & mask;
+        }
+        keys[cell] = key;
+        values[cell] = value;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /*
+     * Removes the key and returns its value, NONE if it was not in the map.
+     */
+    public int remove(long key) {
+        if (key < 0) {
+            return NONE;
+        }
+        int cell = cell(key);
+        while (keys[cell] != FREE) {
+            if (keys[cell] == key) {
+                int value = values[cell];
+                shiftBack(cell);
+                size--;
+                return value;
+            }
+            cell = (cell + 1) & mask;
+        }
+        return NONE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    /*
+     * Closes the gap left by a removed key, moving back the following keys
+     * of the probe run that would otherwise no longer be found.
+     */
+    private void shiftBack(int gap) {
+        int cell = (gap + 1) & mask;
+        while (keys[cell] != FREE) {
+            int home = cell(keys[cell]);
+            //move the key if its home cell is not between the gap and its cell
+            if (((cell - home) & mask) >= ((cell - gap) & mask)) {
+                keys[gap] = keys[cell];
+                values[gap] = values[cell];
+                gap = cell;
+            }
+            cell = (cell + 1) & mask;
+        }
+        keys[gap] = FREE;
+    }
+
+    private int cell(long key) {
+        //spread the sequence numbers in the low bits over the table
+        long hash = key * 0x9e3779b97f4a7c15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int n = 0; n < oldKeys.length; n++) {
+            if (oldKeys[n] != FREE) {
+                put(oldKeys[n], oldValues[n]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        size = 0;
+        Arrays.fill(keys, FREE);
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.IOrder;
+import java.util.Arrays;
+
+/*
+ * Table of the orders managed by one strategy instance, kept in parallel
+ * arrays indexed by slot (the order number minus one), found by order id
+ * (see OrderIds) through a primitive hash map.
+ * Slot states follow the order messages and are counted per state, so a
+ * tool can skip its loops over pending or filled orders without touching
+ * any order when there are none.
+ */
+public class ManagedOrders {
+
+    public static final int NONE = -1;
+
+    private IOrder[] orders;
+    private long[] ids;
+    private LongIntMap slotsById;
+    private IOrder.State[] states;
+    private int size;
+    private int createdCount;
+    private int openedCount;
+    private int filledCount;
+
+    public ManagedOrders(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.orders = new IOrder[capacity];
+        this.ids = new long[capacity];
+        this.slotsById = new LongIntMap(capacity);
+        this.states = new IOrder.State[capacity];
+    }
+
+    /*
+     * Adds a submitted order with its id and returns its slot.
+     */
+    public int add(long id, IOrder order) {
+        if (size == orders.length) {
+            orders = Arrays.copyOf(orders, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+            states = Arrays.copyOf(states, size * 2);
+        }
+        orders[size] = order;
+        ids[size] = id;
+        slotsById.put(id, size);
+        states[size] = order.getState();
+        count(states[size], 1);
+        return size++;
+    }
+
+    /*
+     * Returns the slot of the order, NONE if it is not managed here.
+     */
+    public int indexOf(long id) {
+        return slotsById.get(id);
+    }
+
+    /*
+     * Takes over the current state of a managed order, called for each
+     * order message with the id parsed from its label. Returns the slot of
+     * the order, NONE if not managed.
+     */
+    public int update(long id, IOrder order) {
+        int slot = indexOf(id);
+        if (slot != NONE) {
+            IOrder.State state = order.getState();
+            if (state != states[slot]) {
+                count(states[slot], -1);
+                states[slot] = state;
+                count(state, 1);
+            }
+        }
+        return slot;
+    }
+
+    public IOrder get(int slot) {
+        return orders[slot];
+    }
+
+    public long getId(int slot) {
+        return ids[slot];
+    }
+
+    public IOrder.State getState(int slot) {
+        return states[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /*
+     * Number of orders not closed, canceled or rejected yet.
+     */
+    public int getOpenCount() {
+        return createdCount + openedCount + filledCount;
+    }
+
+    /*
+     * Number of submitted orders not yet accepted by the server.
+     */
+    public int getCreatedCount() {
+        return createdCount;
+    }
+
+    /*
+     * Number of accepted orders waiting for their entry.
+     */
+    public int getOpenedCount() {
+        return openedCount;
+    }
+
+    public int getFilledCount() {
+        return filledCount;
+    }
+
+    private void count(IOrder.State state, int delta) {
+        if (state == IOrder.State.CREATED) {
+            createdCount += delta;
+        } else if (state == IOrder.State.OPENED) {
+            openedCount += delta;
+        } else if (state == IOrder.State.FILLED) {
+            filledCount += delta;
+        }
+    }
+
+}
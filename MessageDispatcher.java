@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.IMessage;
+import com.dukascopy.api.IOrder;
+import com.dukascopy.api.JFException;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/*
+ * Routes the messages of onMessage to the handler registered for their
+ * type, in a table indexed by the type ordinal.
+ * Every strategy receives the messages of the whole account, so types
+ * without a handler are dropped right away (unless an order listener
+ * take them) and order messages are only passed on if the order label carries
+ * an id of this instance (see OrderIds), both without building any string.
+ * Messages without order (notifications, connection status, broadcasts...)
+ * go to their own handlers, see registerOrderless.
+ */
+public class MessageDispatcher {
+
+    /*
+     * Handles one message type, orderId is OrderIds.NONE for messages
+     * without an order.
+     */
+    public interface Handler {
+        void onMessage(IMessage message, long orderId) throws JFException;
+    }
+
+    private final OrderIds orderIds;
+    private final Handler[] handlers;
+    //handlers of the messages without order per type
+    private final Handler[] orderlessHandlers;
+    //order listeners per type, null for types nobody listens to
+    private final Handler[][] listeners;
+
+    public MessageDispatcher(OrderIds orderIds) {
+        this.orderIds = orderIds;
+        this.handlers = new Handler[IMessage.Type.values().length];
+        this.orderlessHandlers = new Handler[IMessage.Type.values().length];
+        this.listeners = new Handler[IMessage.Type.values().length][];
+    }
+
+    /*
+     * Sets the handler of the messages of the given types about this
+     * instance's orders.
+     */
+    public void register(Handler handler, IMessage.Type... types) {
+        for (IMessage.Type type : types) {
+            handlers[type.ordinal()] = handler;
+        }
+    }
+
+    /*
+     * Sets the handler of the messages without order of the given types,
+     * e.g. to print them.
+     */
+    public void registerOrderless(Handler handler, IMessage.Type... types) {
+        for (IMessage.Type type : types) {
+            orderlessHandlers[type.ordinal()] = handler;
+        }
+    }
+
+    /*
+     * Adds a handler receiving the messages of the given types about this
+     * instance's orders before the handler of the type, e.g. to book them.
+     * Listeners are called in the order they were added.
+     */
+    public void addOrderListener(Handler listener, IMessage.Type... types) {
+        for (IMessage.Type type : types) {
+            Handler[] typeListeners = listeners[type.ordinal()];
+            if (typeListeners == null) {
+                typeListeners = new Handler[] {listener};
+            } else {
+                typeListeners = Arrays.copyOf(typeListeners, typeListeners.length + 1);
+                typeListeners[typeListeners.length - 1] = listener;
+            }
+            listeners[type.ordinal()] = typeListeners;
+        }
+    }
+
+    /*
+     * Passes the message to its handler. Returns false if the message was
+     * dropped, because nobody handles its type or the order is foreign.
+     */
+    public boolean dispatch(IMessage message) throws JFException {
+        int type = message.getType().ordinal();
+        Handler handler = handlers[type];
+        Handler[] typeListeners = listeners[type];
+        Handler orderlessHandler = orderlessHandlers[type];
+        if (handler == null && typeListeners == null && orderlessHandler == null) {
+            return false;
+        }
+        IOrder order = message.getOrder();
+        if (order == null) {
+            if (orderlessHandler == null) {
+                return false;
+            }
+            orderlessHandler.onMessage(message, OrderIds.NONE);
+            return true;
+        }
+        long orderId = OrderIds.parse(order.getLabel());
+        if (!orderIds.isOwn(orderId)) {
+            return false;
+        }
+        if (typeListeners != null) {
+            for (int n = 0; n < typeListeners.length; n++) {
+                typeListeners[n].onMessage(message, orderId);
+            }
+        }
+        if (handler == null) {
+            return false;
+        }
+        handler.onMessage(message, orderId);
+        return true;
+    }
+
+    /*
+     * Returns a handler printing the messages, e.g. for the messages without order.
+     */
+    public static Handler print(final PrintStream out) {
+        return new Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) {
+                out.println("Message: " + message.toString());
+            }
+        };
+    }
+
+}
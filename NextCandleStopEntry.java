@@ -40,6 +40,7 @@ import com.dukascopy.api.IStrategy;
 import com.dukascopy.api.ITick;
 import com.dukascopy.api.Instrument;
 import com.dukascopy.api.JFException;
+import com.dukascopy.api.OfferSide;
 import com.dukascopy.api.Period;
 import java.util.HashSet;
 import java.util.Set;
@@ -73,6 +74,9 @@ public class NextCandleStopEntry implements IStrategy {
     @Configurable(value = "Constant risk amount",
             description = "Constant account currency risk for each trade")
     public int constantCurrencyRisk = 10;
+    @Configurable(value = "Risk % of equity",
+            description = "Risk this percentage of the account equity instead of the constant amount, 0 to disable")
+    public double riskPercent = 0;
     @Configurable(value = "Stop entry price",
             description = "Entry price of the stop order")
     public double entryStopPrice = 0;
@@ -82,19 +86,59 @@ public class NextCandleStopEntry implements IStrategy {
     @Configurable(value = "B.E. on 1:1 R:R",
             description = "Move SL to break even on 1:1 risk:reward ratio")
     public boolean moveSLBreakEven = true;
+    @Configurable(value = "B.E. on tick",
+            description = "Check the B.E. move on every tick, not only on one minute bars")
+    public boolean breakEvenOnTick = true;
+    @Configurable(value = "Check period seconds",
+            description = "Run the one minute checks on bars of this many seconds built from ticks, 0 to disable")
+    public int checkPeriodSeconds = 0;
+    @Configurable(value = "Latency file",
+            description = "Append the callback latency percentiles to this file every minute, empty to disable")
+    public String latencyFile = "";
+    @Configurable(value = "Resize on tick",
+            description = "Resize the pending order from quote updates, only when its size changes by a lot step")
+    public boolean resizeOnTick = false;
+    @Configurable(value = "Resize tolerance %",
+            description = "Risk deviation in percent tolerated before resizing on tick, at least one lot step")
+    public double resizeTolerance = 0;
 
     //this is a safety feature to avoid too big position sizes due to typos
     private static final double maxPositionSize = 0.05;
+    //id of the break even level in the price trigger index
+    private static final int BREAK_EVEN_TRIGGER = 0;
+    //log categories, see ToolRuntime
+    private static final int LOG_ORDERS = ToolRuntime.LOG_ORDERS;
+    private static final int LOG_ERRORS = ToolRuntime.LOG_ERRORS;
+    //latency probes
+    private static final int LAT_ON_TICK = 0;
+    private static final int LAT_ON_BAR = 1;
+    private static final int LAT_ON_MESSAGE = 2;
+    private static final int LAT_CHECK_BE = 3;
+    private static final int LAT_RESIZE = 4;
 
     private IEngine engine;
     private IHistory history;
     private IContext context;
     private IConsole console;
+    private QuoteCache quoteCache;
+    private PositionSizer positionSizer;
+    private PriceTriggerIndex priceTriggers;
+    private ResizeTrigger resizeTrigger;
     private boolean orderIsOpen;
     private boolean SLMovedToBE;
     private double breakEvenTriggerPrice;
     private double totalProfit;
     private double totalCommission;
+    private OrderIds orderIds;
+    private long orderId;
+    private MessageDispatcher messageDispatcher;
+    private ToolRuntime runtime;
+    private AccountState accountState;
+    private RingLogger logger;
+    private LatencyMonitor latency;
+    private OrderLatencyTracker orderLatency;
+    private OrderModifier orderModifier;
+    private TickBarAggregator checkBars;
     private String orderLabel;
     private IEngine.OrderCommand orderCmd;
 
@@ -107,9 +151,26 @@ public class NextCandleStopEntry implements IStrategy {
         this.SLMovedToBE = false;
         this.breakEvenTriggerPrice = 0;
         this.console = context.getConsole();
+        this.runtime = new ToolRuntime(context, getClass().getSimpleName(), latencyFile,
+                "onTick", "onBar", "onMessage", "checkSLMoveBE", "updatePositionSize");
+        this.quoteCache = runtime.getQuoteCache();
+        this.positionSizer = runtime.getPositionSizer();
+        this.orderIds = runtime.getOrderIds();
+        this.messageDispatcher = runtime.getMessageDispatcher();
+        this.accountState = runtime.getAccountState();
+        this.logger = runtime.getLogger();
+        this.latency = runtime.getLatency();
+        this.orderLatency = runtime.getOrderLatency();
+        this.orderModifier = runtime.getOrderModifier();
+        this.priceTriggers = new PriceTriggerIndex(2);
+        this.resizeTrigger = new ResizeTrigger();
         this.totalProfit = 0;
         this.totalCommission = 0;
+        this.orderId = OrderIds.NONE;
         this.orderLabel = "invalid";
+        //custom check period bars, null for the platform one minute bars
+        this.checkBars = (checkPeriodSeconds > 0) ? new TickBarAggregator(1, checkPeriodSeconds * 1000L) : null;
+        registerMessageHandlers();
 
         //subscribe instruments
         console.getOut().println("Strategy starting. Subscribing instruments...");
@@ -151,7 +212,7 @@ public class NextCandleStopEntry implements IStrategy {
 
         //submit order
         String direction = orderCmd.isLong() ? "long" : "short";
-        IOrder order = submitOrder(this.constantCurrencyRisk, orderCmd, stopLossPrice);
+        IOrder order = submitOrder(getCurrencyRisk(), orderCmd, stopLossPrice);
         console.getInfo().println("Order " + order.getLabel()
                 + " submitted. Direction: " + direction
                 + " Stop entry: " + entryStopPrice
@@ -164,62 +225,142 @@ public class NextCandleStopEntry implements IStrategy {
 
     @Override
     public void onTick(Instrument instrument, ITick tick) throws JFException {
+        long start = System.nanoTime();
+        logger.setTime(tick.getTime());
+        quoteCache.onTick(instrument, tick);
+
+        //move SL to B.E. on the first tick reaching the trigger price
+        if (instrument.equals(this.instrument) && priceTriggers.poll(tick) == BREAK_EVEN_TRIGGER) {
+            checkSLMoveBE(tick.getAsk(), tick.getBid());
+        }
+
+        //check on the custom period bars built from the ticks instead of one minute bars
+        if (checkBars != null && instrument.equals(this.instrument) && checkBars.onTick(0, tick) && (orderIsOpen)) {
+            onCheckBar(checkBars.getHigh(0, OfferSide.ASK), checkBars.getLow(0, OfferSide.BID));
+        }
+
+        //resize pending order only once quotes moved the size enough
+        if (resizeOnTick && orderIsOpen && positionSizer.isSizingInstrument(this.instrument, instrument)) {
+            if (resizeTrigger.isTriggered(getSizeFactor())) {
+                updatePositionSize();
+            }
+        }
+
+        //send the order changes of this event
+        orderModifier.flush();
+
+        latency.record(LAT_ON_TICK, start);
     }
 
     @Override
     public void onBar(Instrument instrument, Period period, IBar askBar, IBar bidBar) throws JFException {
+        long start = System.nanoTime();
+        logger.setTime(askBar.getTime());
         if (instrument.equals(this.instrument) && period.equals(Period.ONE_MIN) && (orderIsOpen)) {
-            //check if order meets the B.E. SL move requirements
-            checkSLMoveBE(askBar, bidBar);
-            //update amount to ensure constant risk for pending orders
-            updatePositionSize();
+            if (checkBars == null) {
+                onCheckBar(askBar.getHigh(), bidBar.getLow());
+            }
         } else if (instrument.equals(this.instrument) && period.equals(this.period) && (orderIsOpen)) {
             cancelOrderIfNotFilled();
         }
+
+        //send the order changes of this event
+        orderModifier.flush();
+
+        latency.record(LAT_ON_BAR, start);
     }
 
     @Override
     public void onMessage(IMessage message) throws JFException {
-        IOrder order = message.getOrder();
-        if (order != null) {
-            //handle only messages relative to the order managed by this instance
-            if (order.getLabel().equals(orderLabel)) {
-                if (message.getType() == Type.ORDER_CLOSE_OK) {
-                    //update order variable on order close
-                    this.orderIsOpen = false;
-                    console.getInfo().println("Order " + order.getLabel()
-                            + " closed. Profit: " + order.getProfitLossInAccountCurrency());
-                    //update profit/loss and commission
-                    this.totalProfit += order.getProfitLossInAccountCurrency();
-                    this.totalCommission += order.getCommission();
-                } else if (message.getType() == Type.ORDER_SUBMIT_REJECTED) {
-                    //update order variable on order rejection
-                    this.orderIsOpen = false;
-                    console.getErr().println("Order " + order.getLabel() + " rejected.");
-                } else if (message.getType() == Type.ORDER_CHANGED_REJECTED) {
-                    console.getErr().println("Order " + order.getLabel() + " change rejected.");
-                }
-            }
-        } else if ((message.getType() == Type.INSTRUMENT_STATUS)
-                || (message.getType() == Type.CALENDAR)) {
-            //filter out
-        } else {
-            context.getConsole().getOut().println("Message: " + message.toString());
-        }
+        long start = System.nanoTime();
+        logger.setTime(message.getCreationTime());
+        //handle only messages relative to the order managed by this instance
+        messageDispatcher.dispatch(message);
+        latency.record(LAT_ON_MESSAGE, start);
     }
 
     @Override
     public void onAccount(IAccount account) throws JFException {
+        //keep equity up to date for sizing, resize pending orders once it moved the size enough
+        if (accountState.update(account) && riskPercent > 0 && resizeOnTick && orderIsOpen) {
+            if (resizeTrigger.isTriggered(getSizeFactor())) {
+                updatePositionSize();
+            }
+            //send the order changes of this event
+            orderModifier.flush();
+        }
     }
 
     @Override
     public void onStop() throws JFException {
-        console.getNotif().println("Strategy stopped. Profit: " + totalProfit +
-                " Commission: " + totalCommission +
-                " Net Profit: " + (totalProfit - totalCommission));
+        runtime.stop(totalProfit, totalCommission);
+    }
+
+    private void registerMessageHandlers() {
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                onOrderClose(message.getOrder());
+            }
+        }, Type.ORDER_CLOSE_OK);
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                onOrderFill(message.getOrder());
+            }
+        }, Type.ORDER_FILL_OK);
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                onOrderRejected(message.getOrder());
+            }
+        }, Type.ORDER_SUBMIT_REJECTED);
+        messageDispatcher.register(new MessageDispatcher.Handler() {
+            @Override
+            public void onMessage(IMessage message, long orderId) throws JFException {
+                onOrderChangeRejected(message.getOrder());
+            }
+        }, Type.ORDER_CHANGED_REJECTED);
+        //messages without order are printed as before, except instrument status and calendar
+        messageDispatcher.registerOrderless(MessageDispatcher.print(console.getOut()),
+                ToolRuntime.PRINTED_ORDERLESS_TYPES);
+    }
+
+    private void onOrderClose(IOrder order) throws JFException {
+        //update order variable on order close
+        this.orderIsOpen = false;
+        if (logger.begin(RingLogger.INFO, LOG_ORDERS, "Order {} closed. Profit: {}")) {
+            logger.arg(order.getLabel()).arg(order.getProfitLossInAccountCurrency()).end();
+        }
+        //update profit/loss and commission
+        this.totalProfit += order.getProfitLossInAccountCurrency();
+        this.totalCommission += order.getCommission();
+        priceTriggers.remove(BREAK_EVEN_TRIGGER);
+    }
+
+    private void onOrderFill(IOrder order) throws JFException {
+        //check the trigger price on each tick from now on
+        if (moveSLBreakEven && breakEvenOnTick && !SLMovedToBE) {
+            priceTriggers.put(BREAK_EVEN_TRIGGER, breakEvenTriggerPrice, order.isLong(),
+                    order.isLong() ? OfferSide.ASK : OfferSide.BID);
+        }
+    }
+
+    private void onOrderRejected(IOrder order) throws JFException {
+        //update order variable on order rejection
+        this.orderIsOpen = false;
+        if (logger.begin(RingLogger.ERROR, LOG_ORDERS, "Order {} rejected.")) {
+            logger.arg(order.getLabel()).end();
+        }
+    }
+
+    private void onOrderChangeRejected(IOrder order) throws JFException {
+        if (logger.begin(RingLogger.ERROR, LOG_ORDERS, "Order {} change rejected.")) {
+            logger.arg(order.getLabel()).end();
+        }
     }
 
-    private IOrder submitOrder(int currencyRisk, IEngine.OrderCommand orderCmd, double stopLossPrice)
+    private IOrder submitOrder(double currencyRisk, IEngine.OrderCommand orderCmd, double stopLossPrice)
             throws JFException {
         double takeProfitPrice;
         double positionSize;
@@ -239,156 +380,144 @@ public class NextCandleStopEntry implements IStrategy {
         positionSize = getPositionSize(instrument, stopLossPrice, currencyRisk, orderCmd);
         
         //create order label
-        this.orderLabel = getLabel(orderCmd);
+        this.orderId = orderIds.next();
+        this.orderLabel = orderIds.getLabel(orderCmd, orderId);
         
         //submit order
-        return engine.submitOrder(orderLabel, instrument, orderCmd, positionSize,
-                                  entryStopPrice, 5, stopLossPrice, takeProfitPrice);
+        long submitStart = System.nanoTime();
+        IOrder order = engine.submitOrder(orderLabel, instrument, orderCmd, positionSize,
+                                          entryStopPrice, 5, stopLossPrice, takeProfitPrice);
+        orderLatency.onSubmit(orderId, submitStart);
+        return order;
     }
     
-    private String getLabel(IEngine.OrderCommand cmd) {
-        return cmd.toString() + System.currentTimeMillis();
-    }
-
-    private double getPositionSize(Instrument pair, double stopLossPrice, int constantCurrencyRisk,
+    private double getPositionSize(Instrument pair, double stopLossPrice, double currencyRisk,
             IEngine.OrderCommand orderCmd)
             throws JFException {
-        //init symbols
-        String accountCurrency = context.getAccount().getCurrency().getCurrencyCode();
-        String primaryCurrency = pair.getPrimaryCurrency().getCurrencyCode();
-        String secondaryCurrency = pair.getSecondaryCurrency().getCurrencyCode();
-        
-        //get exchange rate of traded pair in relation to account currency
-        double accountCurrencyExchangeRate;
-        String apCurrency = accountCurrency + "/" + primaryCurrency;
-        Instrument i;
-        
-        if (primaryCurrency.equals(accountCurrency)) {
-            i = pair;
-        } else {
-            i = Instrument.fromString(apCurrency);
-        }
-        
-        if (i == null) { //currency not found, try inverted pair
-            i = Instrument.fromInvertedString(apCurrency);
-            if (orderCmd == IEngine.OrderCommand.BUYSTOP)
-                accountCurrencyExchangeRate = 1 / history.getLastTick(i).getAsk();
-            else
-                accountCurrencyExchangeRate = 1 / history.getLastTick(i).getBid();
-        } else {
-            if (orderCmd == IEngine.OrderCommand.BUYSTOP)
-                accountCurrencyExchangeRate = history.getLastTick(i).getAsk();
-            else
-                accountCurrencyExchangeRate = history.getLastTick(i).getBid();
-        }
-        
-        //calc currency/pip value
-        double pairExchangeRate;
-        if (orderCmd == IEngine.OrderCommand.BUYSTOP)
-            pairExchangeRate = history.getLastTick(pair).getAsk();
-        else
-            pairExchangeRate = history.getLastTick(pair).getBid();
-        double accountCurrencyPerPip = pair.getPipValue() / pairExchangeRate *
-                                       100000;
-        if (!primaryCurrency.equals(accountCurrency)) 
-            accountCurrencyPerPip /= accountCurrencyExchangeRate; //convert to account pip value
-        
         //calc stop loss pips
-        double stopLossPips;
-        if (orderCmd == IEngine.OrderCommand.BUYSTOP) {
-            stopLossPips = Math.abs(stopLossPrice - entryStopPrice) *
-                    Math.pow(10, this.instrument.getPipScale());
-        } else {
-            stopLossPips = Math.abs(stopLossPrice - entryStopPrice) *
-                    Math.pow(10, this.instrument.getPipScale());
-        }
-        
-        //calc position size
-        double units = constantCurrencyRisk / stopLossPips * 100000 / accountCurrencyPerPip;
+        double stopLossPips = positionSizer.getPips(pair, stopLossPrice, entryStopPrice);
 
-        //convert to standard lots
-        double lots = units / 1000000;
+        //calc position size
+        double lots = positionSizer.getPositionSize(pair, orderCmd.isLong(), stopLossPips, currencyRisk);
 
         //check position size safety
         if (lots > maxPositionSize) {
-            console.getErr().println("Position size exceeds safety check, maxPositionSize constant"
-                    + " is " + maxPositionSize + " lots. But current position size is " + lots + " lots.");
+            if (logger.begin(RingLogger.ERROR, LOG_ERRORS, "Position size exceeds safety check,"
+                    + " maxPositionSize constant is {} lots. But current position size is {} lots.")) {
+                logger.arg(maxPositionSize).arg(lots).end();
+            }
             lots = 0;
         }
 
         return lots;
     }
 
-    private void checkSLMoveBE(IBar askBar, IBar bidBar) throws JFException {
+    /*
+     * Checks done on each one minute bar, or on each custom period bar,
+     * with the extreme prices of the bar.
+     */
+    private void onCheckBar(double askHigh, double bidLow) throws JFException {
+        //check if order meets the B.E. SL move requirements
+        checkSLMoveBE(askHigh, bidLow);
+        //update amount to ensure constant risk for pending orders
+        if (!resizeOnTick) {
+            updatePositionSize();
+        }
+    }
+
+    /*
+     * askHigh and bidLow are the extreme prices since the last check, i.e.
+     * of the last one minute (or check period) bar or the prices of the current tick.
+     */
+    private void checkSLMoveBE(double askHigh, double bidLow) throws JFException {
+        long start = System.nanoTime();
         if (moveSLBreakEven) { //is it user enabled
             if (!SLMovedToBE) {
                 IOrder o = engine.getOrder(orderLabel);
                 if (o != null) {
                     if (o.getState() == IOrder.State.FILLED) {
                         if (o.isLong()) {
-                            if (askBar.getHigh() >= breakEvenTriggerPrice) {
-                                o.setStopLossPrice(o.getOpenPrice());
+                            if (askHigh >= breakEvenTriggerPrice) {
+                                orderModifier.setStopLossPrice(o, o.getOpenPrice());
                                 SLMovedToBE = true;
-                                console.getOut().println("Order " + o.getLabel() + ": SL moved to B.E.");
+                                priceTriggers.remove(BREAK_EVEN_TRIGGER);
+                                if (logger.begin(RingLogger.INFO, LOG_ORDERS, "Order {}: SL moved to B.E.")) {
+                                    logger.arg(o.getLabel()).end();
+                                }
                             }
                         } else {
-                            if (bidBar.getLow() <= breakEvenTriggerPrice) {
-                                o.setStopLossPrice(o.getOpenPrice());
+                            if (bidLow <= breakEvenTriggerPrice) {
+                                orderModifier.setStopLossPrice(o, o.getOpenPrice());
                                 SLMovedToBE = true;
-                                console.getOut().println("Order " + o.getLabel() + ": SL moved to B.E.");
+                                priceTriggers.remove(BREAK_EVEN_TRIGGER);
+                                if (logger.begin(RingLogger.INFO, LOG_ORDERS, "Order {}: SL moved to B.E.")) {
+                                    logger.arg(o.getLabel()).end();
+                                }
                             }
                         }
                     }
                 } else {
-                    console.getErr().println("Order " + orderLabel + " not found");
+                    if (logger.begin(RingLogger.ERROR, LOG_ERRORS, "Order {} not found")) {
+                        logger.arg(orderLabel).end();
+                    }
                 }
             }
         }
+
+        latency.record(LAT_CHECK_BE, start);
     }
 
     private void updatePositionSize() throws JFException {
+        long start = System.nanoTime();
         IOrder o = engine.getOrder(orderLabel);
         if (o == null) {
-            console.getErr().println("Order " + orderLabel + " not found");
+            if (logger.begin(RingLogger.ERROR, LOG_ERRORS, "Order {} not found")) {
+                logger.arg(orderLabel).end();
+            }
             return;
         }
         
         if (o.getState() == IOrder.State.OPENED) {
             double newPositionSize = getPositionSize(o.getInstrument(),
-                    stopLossPrice, constantCurrencyRisk, o.getOrderCommand());
+                    stopLossPrice, getCurrencyRisk(), o.getOrderCommand());
             
-            //update amount
-            if (o.getAmount() != newPositionSize) {
-                o.setRequestedAmount(newPositionSize);
-            }
+            //update amount, the modifier drops and does not log unchanged sizes
+            orderModifier.setRequestedAmount(o, newPositionSize);
             
-            console.getOut().println("Order " + o.getLabel()
-                    + " updated position size: " + newPositionSize);
+            //arm trigger for quote driven resizing
+            resizeTrigger.arm(newPositionSize, getSizeFactor(),
+                    PositionSizer.LOT_STEP, resizeTolerance / 100);
+        } else if (o.getState() != IOrder.State.CREATED) {
+            //not pending anymore, stop quote driven resizing
+            resizeTrigger.disarm();
         }
+
+        latency.record(LAT_RESIZE, start);
     }
 
-    private void subscribeInstruments() {
+    /*
+     * Account currency risk of new sizes, a percentage of the last known
+     * equity or the constant amount.
+     */
+    private double getCurrencyRisk() {
+        return (riskPercent > 0) ? accountState.getRisk(riskPercent) : constantCurrencyRisk;
+    }
+
+    /*
+     * For a fixed stop loss distance the position size is proportional to
+     * this factor, i.e. to the rates and to the currency risk.
+     */
+    private double getSizeFactor() throws JFException {
+        return positionSizer.getRateFactor(instrument, orderCmd.isLong()) * getCurrencyRisk();
+    }
+
+    private void subscribeInstruments() throws JFException {
         //init list
         Set<Instrument> instruments = new HashSet<Instrument>();
         instruments.add(instrument);
 
-        //init symbols
-        String accountCurrency = context.getAccount().getCurrency().getCurrencyCode();
-        String primaryCurrency = instrument.getPrimaryCurrency().getCurrencyCode();
-        String apCurrency = accountCurrency + "/" + primaryCurrency;
-        
-        //find complementary instrument
-        Instrument i;
-        if (primaryCurrency.equals(accountCurrency)) {
-            i = instrument;
-        } else {
-            i = Instrument.fromString(apCurrency);
-        }
-        if (i == null) { //currency not found, try inverted pair
-            i = Instrument.fromInvertedString(apCurrency);
-        }
-        if (i != instrument)
-            instruments.add(i);
+        //add complementary instruments for account currency conversion
+        positionSizer.addConversionInstruments(instrument, instruments);
 
         //subscribe
         context.setSubscribedInstruments(instruments, true);
@@ -397,15 +526,20 @@ public class NextCandleStopEntry implements IStrategy {
     private void cancelOrderIfNotFilled() throws JFException {
     IOrder o = engine.getOrder(orderLabel);
         if (o == null) {
-            console.getErr().println("Order " + orderLabel + " not found");
+            if (logger.begin(RingLogger.ERROR, LOG_ERRORS, "Order {} not found")) {
+                logger.arg(orderLabel).end();
+            }
             return;
         }
         
         if (o.getState() == IOrder.State.OPENED) {
+            long closeStart = System.nanoTime();
             o.close();
+            orderLatency.onClose(orderId, closeStart);
             this.orderIsOpen = false;
-            console.getOut().println("Order " + o.getLabel()
-                    + " cancelled because of new candle bar");
+            if (logger.begin(RingLogger.INFO, LOG_ORDERS, "Order {} cancelled because of new candle bar")) {
+                logger.arg(o.getLabel()).end();
+            }
         }
     }
 
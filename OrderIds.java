@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.IEngine.OrderCommand;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Creates collision free order labels and maps them back to numeric ids.
+ * An id combines the instance id of the strategy with a sequence number,
+ * the label is the order command followed by the id in base 36, e.g.
+ * BUYLIMIT_pq3tf5nlwav5. The instance id is the milliseconds since 2014 at
+ * its start, made unique within the JVM, mixed with a random salt of the
+ * JVM, so instances of strategies running in other JVMs on the same
+ * account (another client, a remote run) only collide by chance (2^-40
+ * per pair). Parsing a label back into its id does not allocate, so order
+ * messages can be routed by comparing or hashing longs instead of strings.
+ */
+public class OrderIds {
+
+    public static final long NONE = -1;
+
+    private static final int SEQUENCE_BITS = 23;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long INSTANCE_MASK = (1L << (63 - SEQUENCE_BITS)) - 1;
+    private static final long EPOCH = 1388534400000L; //2014-01-01 UTC
+    private static final char SEPARATOR = '_';
+    private static final int RADIX = 36;
+
+    //last instance id handed out before salting, strictly increasing
+    private static final AtomicLong LAST_INSTANCE = new AtomicLong();
+    //per JVM, xor keeps the instance ids of this JVM distinct
+    private static final long INSTANCE_SALT = new Random().nextLong() & INSTANCE_MASK;
+
+    private final long instance;
+    private long sequence;
+
+    public OrderIds() {
+        long now = (System.currentTimeMillis() - EPOCH) & INSTANCE_MASK;
+        long last;
+        long next;
+        do {
+            last = LAST_INSTANCE.get();
+            next = Math.max(now, last + 1) & INSTANCE_MASK;
+        } while (!LAST_INSTANCE.compareAndSet(last, next));
+        this.instance = next ^ INSTANCE_SALT;
+        this.sequence = 0;
+    }
+
+    /*
+     * Returns the id for the next order of this instance.
+     */
+    public long next() {
+        sequence = (sequence + 1) & SEQUENCE_MASK;
+        return (instance << SEQUENCE_BITS) | sequence;
+    }
+
+    public String getLabel(OrderCommand cmd, long id) {
+        return cmd.toString() + SEPARATOR + Long.toString(id, RADIX);
+    }
+
+    /*
+     * Returns true if the id belongs to an order of this instance.
+     */
+    public boolean isOwn(long id) {
+        return id != NONE && (id >>> SEQUENCE_BITS) == instance;
+    }
+
+    public static int getSequence(long id) {
+        return (int) (id & SEQUENCE_MASK);
+    }
+
+    /*
+     * Returns the id encoded in the label, NONE for labels not created here
+     * (manual orders, other strategies).
+     */
+    public static long parse(String label) {
+        if (label == null) {
+            return NONE;
+        }
+        int end = label.length();
+        int start = label.lastIndexOf(SEPARATOR) + 1;
+        if (start == 0 || start == end) {
+            return NONE;
+        }
+        long id = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(label.charAt(i), RADIX);
+            if (digit < 0 || id > (Long.MAX_VALUE - digit) / RADIX) {
+                return NONE;
+            }
+            id = id * RADIX + digit;
+        }
+        return id;
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.IMessage;
+import com.dukascopy.api.IOrder;
+import com.dukascopy.api.JFException;
+import java.util.Arrays;
+
+/*
+ * Measures the round trips of the order actions of one tool instance, from
+ * the call to the server message answering it:
+ * submitOrder to ORDER_SUBMIT_OK, submitOrder of market orders to
+ * ORDER_FILL_OK, setStopLossPrice and setRequestedAmount to
+ * ORDER_CHANGED_OK or ORDER_CHANGED_REJECTED and close to ORDER_CLOSE_OK.
+ * The tool stamps each action at the call, as order listener of
+ * the MESSAGE_TYPES (see MessageDispatcher) the tracker matches the
+ * messages and records the latencies in probes added to a LatencyMonitor,
+ * so slowdowns of the broker or the platform show up in its percentiles.
+ * Changes are answered in the order they were sent, so each change message
+ * is matched with the oldest pending change of its order. Change messages
+ * without pending change (e.g. server side changes) are not recorded.
+ * Not thread safe, it is used from the thread of its strategy only.
+ */
+public class OrderLatencyTracker implements MessageDispatcher.Handler {
+
+    public static final IMessage.Type[] MESSAGE_TYPES = {
+        IMessage.Type.ORDER_SUBMIT_OK, IMessage.Type.ORDER_SUBMIT_REJECTED, IMessage.Type.ORDER_FILL_OK,
+        IMessage.Type.ORDER_FILL_REJECTED, IMessage.Type.ORDER_CHANGED_OK, IMessage.Type.ORDER_CHANGED_REJECTED,
+        IMessage.Type.ORDER_CLOSE_OK, IMessage.Type.ORDER_CLOSE_REJECTED
+    };
+
+    //probes relative to the first one added to the monitor
+    private static final int SUBMIT = 0;
+    private static final int FILL = 1;
+    private static final int CHANGE = 2;
+    private static final int CHANGE_REJECTED = 3;
+    private static final int CLOSE = 4;
+    private static final String[] PROBE_NAMES = {
+        "orderSubmit", "orderFill", "orderChange", "orderChangeRejected", "orderClose"
+    };
+    //changes of one order in flight at once, older ones are dropped
+    private static final int MAX_CHANGES = 4;
+    private static final long NO_STAMP = Long.MIN_VALUE;
+
+    private final LatencyMonitor latency;
+    private final int firstProbe;
+    private final LongIntMap slotsById;
+    private long[] ids;
+    private long[] submitStamps;
+    private long[] closeStamps;
+    private long[] changeStamps;
+    private int[] changeHeads;
+    private int[] changeCounts;
+    private int[] freeSlots;
+    private int freeCount;
+    private int size;
+
+    public OrderLatencyTracker(LatencyMonitor latency) {
+        this.latency = latency;
+        this.firstProbe = latency.addProbes(PROBE_NAMES);
+        this.slotsById = new LongIntMap(8);
+        this.ids = new long[8];
+        this.submitStamps = new long[8];
+        this.closeStamps = new long[8];
+        this.changeStamps = new long[8 * MAX_CHANGES];
+        this.changeHeads = new int[8];
+        this.changeCounts = new int[8];
+        this.freeSlots = new int[8];
+    }
+
+    /*
+     * Stamps the submission of the order with the given id (see OrderIds),
+     * call it once engine.submitOrder returned with the System.nanoTime
+     * taken right before, so a failed submit leaves no stamp behind. The
+     * answers are delivered in a later onMessage.
+     */
+    public void onSubmit(long orderId, long startNanos) {
+        if (orderId == OrderIds.NONE) {
+            return;
+        }
+        submitStamps[getSlot(orderId)] = startNanos;
+    }
+
+    /*
+     * Stamps a stop loss, take profit or amount change of the order once the
+     * call returned, as onSubmit. Orders not created by OrderIds are ignored.
+     */
+    public void onChange(long orderId, long startNanos) {
+        if (orderId == OrderIds.NONE) {
+            return;
+        }
+        int slot = getSlot(orderId);
+        int index = slot * MAX_CHANGES + (changeHeads[slot] + changeCounts[slot]) % MAX_CHANGES;
+        changeStamps[index] = startNanos;
+        if (changeCounts[slot] < MAX_CHANGES) {
+            changeCounts[slot]++;
+        } else {
+            //the oldest change got no answer, drop it
+            changeHeads[slot] = (changeHeads[slot] + 1) % MAX_CHANGES;
+        }
+    }
+
+    /*
+     * Stamps the close or cancellation of the order once the call returned,
+     * as onSubmit.
+     */
+    public void onClose(long orderId, long startNanos) {
+        if (orderId == OrderIds.NONE) {
+            return;
+        }
+        closeStamps[getSlot(orderId)] = startNanos;
+    }
+
+    @Override
+    public void onMessage(IMessage message, long orderId) throws JFException {
+        int slot = slotsById.get(orderId);
+        if (slot == LongIntMap.NONE) {
+            return;
+        }
+        IMessage.Type type = message.getType();
+        if (type == IMessage.Type.ORDER_SUBMIT_OK) {
+            record(SUBMIT, submitStamps[slot]);
+            if (message.getOrder().getOrderCommand().isConditional()) {
+                //the fill of entry orders depends on the market, not on the server
+                submitStamps[slot] = NO_STAMP;
+            }
+        } else if (type == IMessage.Type.ORDER_FILL_OK) {
+            record(FILL, submitStamps[slot]);
+            submitStamps[slot] = NO_STAMP;
+        } else if (type == IMessage.Type.ORDER_CHANGED_OK || type == IMessage.Type.ORDER_CHANGED_REJECTED) {
+            if (changeCounts[slot] > 0) {
+                record(type == IMessage.Type.ORDER_CHANGED_OK ? CHANGE : CHANGE_REJECTED,
+                        changeStamps[slot * MAX_CHANGES + changeHeads[slot]]);
+                changeHeads[slot] = (changeHeads[slot] + 1) % MAX_CHANGES;
+                changeCounts[slot]--;
+            }
+        } else if (type == IMessage.Type.ORDER_CLOSE_OK) {
+            record(CLOSE, closeStamps[slot]);
+            closeStamps[slot] = NO_STAMP;
+        } else if (type == IMessage.Type.ORDER_CLOSE_REJECTED) {
+            closeStamps[slot] = NO_STAMP;
+        }
+
+        //forget orders that will not get any more answers
+        IOrder.State state = message.getOrder().getState();
+        if (state == IOrder.State.CLOSED || state == IOrder.State.CANCELED) {
+            remove(slot);
+        }
+    }
+
+    private void record(int probe, long stamp) {
+        if (stamp != NO_STAMP) {
+            latency.record(firstProbe + probe, stamp);
+        }
+    }
+
+    private int getSlot(long orderId) {
+        int slot = slotsById.get(orderId);
+        if (slot != LongIntMap.NONE) {
+            return slot;
+        }
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                submitStamps = Arrays.copyOf(submitStamps, size * 2);
+                closeStamps = Arrays.copyOf(closeStamps, size * 2);
+                changeStamps = Arrays.copyOf(changeStamps, size * 2 * MAX_CHANGES);
+                changeHeads = Arrays.copyOf(changeHeads, size * 2);
+                changeCounts = Arrays.copyOf(changeCounts, size * 2);
+                freeSlots = Arrays.copyOf(freeSlots, size * 2);
+            }
+            slot = size++;
+        }
+        ids[slot] = orderId;
+        submitStamps[slot] = NO_STAMP;
+        closeStamps[slot] = NO_STAMP;
+        changeHeads[slot] = 0;
+        changeCounts[slot] = 0;
+        slotsById.put(orderId, slot);
+        return slot;
+    }
+
+    private void remove(int slot) {
+        slotsById.remove(ids[slot]);
+        freeSlots[freeCount++] = slot;
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.IOrder;
+import com.dukascopy.api.JFException;
+import java.util.Arrays;
+
+/*
+ * Collects the stop loss and amount changes a tool wants to make during one
+ * callback and sends them with flush at its end.
+ * Repeated changes of the same order keep only the last value, prices are
+ * rounded to pipettes and amounts to the lot step, and a change equal to
+ * the current value of the order after rounding is not sent at all, so
+ * each order gets at most one server call per field and event.
+ * The platform has no call changing both fields at once.
+ * The calls sent can be stamped for an OrderLatencyTracker and the amount
+ * changes sent logged, so recomputing an unchanged size logs nothing.
+ */
+public class OrderModifier {
+
+    private static final double AMOUNT_SCALE = Math.round(1 / PositionSizer.LOT_STEP);
+
+    private IOrder[] orders;
+    private double[] stopLossPrices;
+    private double[] amounts;
+    private int size;
+    private long requestedCount;
+    private long suppressedCount;
+    private long sentCount;
+    private OrderLatencyTracker latencyTracker;
+    private RingLogger logger;
+    private int logCategory;
+
+    public OrderModifier(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.orders = new IOrder[capacity];
+        this.stopLossPrices = new double[capacity];
+        this.amounts = new double[capacity];
+    }
+
+    /*
+     * Stamps the changes sent from now on, null to stop.
+     */
+    public void setLatencyTracker(OrderLatencyTracker latencyTracker) {
+        this.latencyTracker = latencyTracker;
+    }
+
+    /*
+     * Logs the amount changes sent in the category, null to stop.
+     */
+    public void setLogger(RingLogger logger, int logCategory) {
+        this.logger = logger;
+        this.logCategory = logCategory;
+    }
+
+    public void setStopLossPrice(IOrder order, double price) {
+        int slot = getSlot(order);
+        if (!Double.isNaN(stopLossPrices[slot])) {
+            suppressedCount++; //replaced by this change
+        }
+        stopLossPrices[slot] = price;
+        requestedCount++;
+    }
+
+    public void setRequestedAmount(IOrder order, double amount) {
+        int slot = getSlot(order);
+        if (!Double.isNaN(amounts[slot])) {
+            suppressedCount++; //replaced by this change
+        }
+        amounts[slot] = amount;
+        requestedCount++;
+    }
+
+    /*
+     * Sends the collected changes, returns the number of server calls.
+     */
+    public int flush() throws JFException {
+        int calls = 0;
+        for (int n = 0; n < size; n++) {
+            IOrder order = orders[n];
+            double stopLossPrice = stopLossPrices[n];
+            double amount = amounts[n];
+            orders[n] = null;
+            IOrder.State state = order.getState();
+            boolean active = (state == IOrder.State.OPENED || state == IOrder.State.FILLED);
+
+            if (!Double.isNaN(stopLossPrice)) {
+                double scale = Math.round(10 / order.getInstrument().getPipValue());
+                stopLossPrice = Math.round(stopLossPrice * scale) / scale;
+                if (active && stopLossPrice != Math.round(order.getStopLossPrice() * scale) / scale) {
+                    long start = System.nanoTime();
+                    order.setStopLossPrice(stopLossPrice);
+                    stamp(order, start);
+                    calls++;
+                } else {
+                    suppressedCount++;
+                }
+            }
+
+            //the amount can be changed only before the fill
+            if (!Double.isNaN(amount)) {
+                amount = Math.round(amount * AMOUNT_SCALE) / AMOUNT_SCALE;
+                if (state == IOrder.State.OPENED && amount > 0
+                        && amount != Math.round(order.getRequestedAmount() * AMOUNT_SCALE) / AMOUNT_SCALE) {
+                    long start = System.nanoTime();
+                    order.setRequestedAmount(amount);
+                    stamp(order, start);
+                    calls++;
+                    if (logger != null && logger.begin(RingLogger.INFO, logCategory, "Order {} amount changed to {}")) {
+                        logger.arg(order.getLabel()).arg(amount).end();
+                    }
+                } else {
+                    suppressedCount++;
+                }
+            }
+        }
+        size = 0;
+        sentCount += calls;
+        return calls;
+    }
+
+    public long getRequestedCount() {
+        return requestedCount;
+    }
+
+    /*
+     * Changes replaced by a later one or equal to the current value.
+     */
+    public long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    private void stamp(IOrder order, long startNanos) {
+        if (latencyTracker != null) {
+            latencyTracker.onChange(OrderIds.parse(order.getLabel()), startNanos);
+        }
+    }
+
+    private int getSlot(IOrder order) {
+        for (int n = 0; n < size; n++) {
+            if (orders[n] == order) {
+                return n;
+            }
+        }
+        if (size == orders.length) {
+            orders = Arrays.copyOf(orders, size * 2);
+            stopLossPrices = Arrays.copyOf(stopLossPrices, size * 2);
+            amounts = Arrays.copyOf(amounts, size * 2);
+        }
+        orders[size] = order;
+        stopLossPrices[size] = Double.NaN;
+        amounts[size] = Double.NaN;
+        return size++;
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.ITick;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.JFException;
+import java.util.Set;
+
+/*
+ * Shared position sizing engine used by all constant risk tools.
+ * The conversion route (account currency to primary currency, see
+ * CurrencyGraph) and the pip multiplier of every traded pair are resolved
+ * once and cached by instrument ordinal, so a sizing call only reads the
+ * cached last ticks and does a handful of double operations without allocating.
+ * The arithmetic is kept in the same order as the original per-tool
+ * getPositionSize, so single leg conversions give identical results.
+ */
+public class PositionSizer {
+
+    //smallest amount change accepted by the platform, in lots (millions)
+    public static final double LOT_STEP = 0.001;
+
+    private static final Instrument[] INSTRUMENTS = Instrument.values();
+
+    private final QuoteCache quoteCache;
+    private final String accountCurrency;
+    private final CurrencyGraph currencyGraph;
+    private final int[] legs;
+    //conversion route per instrument ordinal, -1 if not resolved yet
+    private final int[] routeLength;
+    private final int[] routeLeg1;
+    private final int[] routeLeg2;
+    private final double[] pipMultiplier;
+    //ticks read during the current sizing call, valid while stamps match
+    private final ITick[] snapshotTicks;
+    private final int[] snapshotStamps;
+    private int snapshotStamp;
+
+    public PositionSizer(QuoteCache quoteCache, String accountCurrency) {
+        this.quoteCache = quoteCache;
+        this.accountCurrency = accountCurrency;
+        this.currencyGraph = CurrencyGraph.getInstance();
+        this.legs = new int[CurrencyGraph.MAX_LEGS];
+        this.routeLength = new int[INSTRUMENTS.length];
+        this.routeLeg1 = new int[INSTRUMENTS.length];
+        this.routeLeg2 = new int[INSTRUMENTS.length];
+        this.pipMultiplier = new double[INSTRUMENTS.length];
+        this.snapshotTicks = new ITick[INSTRUMENTS.length];
+        this.snapshotStamps = new int[INSTRUMENTS.length];
+        for (int i = 0; i < INSTRUMENTS.length; i++) {
+            routeLength[i] = -1;
+        }
+    }
+
+    /*
+     * Returns the position size in lots (millions) for the given stop loss
+     * distance in pips, so that a stop loss hit costs currencyRisk in
+     * account currency. Long orders are sized on ask prices, short on bid.
+     */
+    public double getPositionSize(Instrument pair, boolean isLong, double stopLossPips, double currencyRisk)
+            throws JFException {
+        snapshotStamp++;
+        return calcPositionSize(pair, isLong, stopLossPips, currencyRisk);
+    }
+
+    /*
+     * Sizes count orders in one pass and writes the lots to the given array.
+     * Every instrument's tick is read once per batch, so all orders see the
+     * same conversion rates. An entry price of 0 means market entry, i.e.
+     * the current ask for long and bid for short orders.
+     */
+    public void getPositionSizes(int count, Instrument[] pairs, boolean[] isLong, double[] entryPrices,
+            double[] stopLossPrices, double[] currencyRisks, double[] lots) throws JFException {
+        snapshotStamp++;
+        for (int n = 0; n < count; n++) {
+            Instrument pair = pairs[n];
+            double entryPrice = entryPrices[n];
+            if (entryPrice <= 0) {
+                ITick tick = getSnapshotTick(pair);
+                entryPrice = isLong[n] ? tick.getAsk() : tick.getBid();
+            }
+            double stopLossPips = getPips(pair, stopLossPrices[n], entryPrice);
+            lots[n] = calcPositionSize(pair, isLong[n], stopLossPips, currencyRisks[n]);
+        }
+    }
+
+    /*
+     * Returns the product of the pair rate and the account currency
+     * conversion rate. For a given stop loss distance and risk the position
+     * size is proportional to this factor.
+     */
+    public double getRateFactor(Instrument pair, boolean isLong) throws JFException {
+        snapshotStamp++;
+        int index = resolve(pair);
+        ITick pairTick = getSnapshotTick(pair);
+        double factor = isLong ? pairTick.getAsk() : pairTick.getBid();
+        int length = routeLength[index];
+        if (length > 0) {
+            factor *= getLegRate(routeLeg1[index], isLong);
+            if (length > 1) {
+                factor *= getLegRate(routeLeg2[index], isLong);
+            }
+        }
+        return factor;
+    }
+
+    /*
+     * Returns the price at which a position of the given amount opened at
+     * openPrice shows the given profit in account currency, at the current
+     * conversion rates. The profit of a price move is the move times the
+     * amount divided by the rate factor (see getRateFactor).
+     */
+    public double getProfitPrice(Instrument pair, boolean isLong, double openPrice, double amount, double profit)
+            throws JFException {
+        double delta = profit * getRateFactor(pair, isLong) / (amount * 1000000);
+        return isLong ? openPrice + delta : openPrice - delta;
+    }
+
+    /*
+     * Returns the value in account currency of a price move of a position
+     * of the given amount, at the current conversion rates.
+     */
+    public double getMoveValue(Instrument pair, boolean isLong, double priceMove, double amount) throws JFException {
+        return priceMove * amount * 1000000 / getRateFactor(pair, isLong);
+    }
+
+    /*
+     * Returns true if ticks of the given instrument affect the pair's size.
+     */
+    public boolean isSizingInstrument(Instrument pair, Instrument instrument) throws JFException {
+        if (pair == instrument) {
+            return true;
+        }
+        int index = resolve(pair);
+        int length = routeLength[index];
+        return (length > 0 && CurrencyGraph.getInstrument(routeLeg1[index]) == instrument)
+                || (length > 1 && CurrencyGraph.getInstrument(routeLeg2[index]) == instrument);
+    }
+
+    /*
+     * Pure sizing formula. accountCurrencyExchangeRate is the price of one
+     * unit of account currency expressed in the pair's primary currency.
+     */
+    public static double calcLots(double pipValue, double pairExchangeRate, double accountCurrencyExchangeRate,
+            boolean convert, double stopLossPips, double currencyRisk) {
+        //calc currency/pip value
+        double accountCurrencyPerPip = pipValue / pairExchangeRate * 100000;
+        if (convert)
+            accountCurrencyPerPip /= accountCurrencyExchangeRate; //convert to account pip value
+
+        //calc position size
+        double units = currencyRisk / stopLossPips * 100000 / accountCurrencyPerPip;
+
+        //convert to standard lots
+        return units / 1000000;
+    }
+
+    /*
+     * Distance between the two prices expressed in pips of the given pair.
+     */
+    public double getPips(Instrument pair, double price, double otherPrice) throws JFException {
+        return Math.abs(price - otherPrice) * pipMultiplier[resolve(pair)];
+    }
+
+    /*
+     * Adds the instruments needed to convert the pair's values to account
+     * currency to the given set.
+     */
+    public void addConversionInstruments(Instrument pair, Set<Instrument> instruments) throws JFException {
+        int index = resolve(pair);
+        if (routeLength[index] > 0) {
+            instruments.add(CurrencyGraph.getInstrument(routeLeg1[index]));
+        }
+        if (routeLength[index] > 1) {
+            instruments.add(CurrencyGraph.getInstrument(routeLeg2[index]));
+        }
+    }
+
+    private double calcPositionSize(Instrument pair, boolean isLong, double stopLossPips, double currencyRisk)
+            throws JFException {
+        int index = resolve(pair);
+
+        //get exchange rate of traded pair in relation to account currency
+        int length = routeLength[index];
+        double accountCurrencyExchangeRate = 1;
+        if (length > 0) {
+            accountCurrencyExchangeRate = getLegRate(routeLeg1[index], isLong);
+            if (length > 1) {
+                accountCurrencyExchangeRate *= getLegRate(routeLeg2[index], isLong);
+            }
+        }
+
+        //get exchange rate of traded pair
+        ITick pairTick = getSnapshotTick(pair);
+        double pairExchangeRate = isLong ? pairTick.getAsk() : pairTick.getBid();
+
+        return calcLots(pair.getPipValue(), pairExchangeRate, accountCurrencyExchangeRate,
+                length > 0, stopLossPips, currencyRisk);
+    }
+
+    private double getLegRate(int leg, boolean isLong) throws JFException {
+        ITick tick = getSnapshotTick(CurrencyGraph.getInstrument(leg));
+        double rate = isLong ? tick.getAsk() : tick.getBid();
+        return CurrencyGraph.isInverted(leg) ? 1 / rate : rate;
+    }
+
+    private ITick getSnapshotTick(Instrument instrument) throws JFException {
+        int index = instrument.ordinal();
+        if (snapshotStamps[index] != snapshotStamp) {
+            snapshotTicks[index] = quoteCache.getLastTick(instrument);
+            snapshotStamps[index] = snapshotStamp;
+        }
+        return snapshotTicks[index];
+    }
+
+    private int resolve(Instrument pair) throws JFException {
+        int index = pair.ordinal();
+        if (routeLength[index] >= 0) {
+            return index;
+        }
+
+        //find route from account currency to primary currency, once per pair
+        String primaryCurrency = pair.getPrimaryCurrency().getCurrencyCode();
+        int length = currencyGraph.findRoute(accountCurrency, primaryCurrency, legs);
+        if (length == CurrencyGraph.NO_ROUTE) {
+            throw new JFException("No conversion route found for " + accountCurrency + "/" + primaryCurrency);
+        }
+        routeLeg1[index] = legs[0];
+        routeLeg2[index] = legs[1];
+        pipMultiplier[index] = Math.pow(10, pair.getPipScale());
+        routeLength[index] = length;
+        return index;
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.ITick;
+import com.dukascopy.api.OfferSide;
+import java.util.Arrays;
+
+/*
+ * Price levels of the managed orders (break even triggers, 90% levels)
+ * checked against every tick.
+ * Levels are kept in primitive arrays sorted so that the next level to be
+ * crossed is always the last one, with one array per direction (rising:
+ * price at or above the level, falling: at or below) and offer side.
+ * A tick that crosses nothing costs four comparisons, crossed levels are
+ * popped from the end one by one, so handling k crossed levels out of n is
+ * O(k). Ids are small non-negative ints (one per managed order or leg)
+ * indexing the side and key of their trigger, so contains is a lookup and
+ * adding, replacing or removing a level is a binary search in its side plus
+ * an array shift. The shift is linear in the triggers of that side, which
+ * are bounded by the orders of one tool instance (a few, up to the legs of
+ * a basket), and only happens on order events.
+ */
+public class PriceTriggerIndex {
+
+    public static final int NONE = -1;
+
+    private final Side[] sides;
+    //per id: index of the side holding its trigger (NONE if not set) and its key there
+    private int[] sideOfId;
+    private double[] keyOfId;
+
+    public PriceTriggerIndex(int capacity) {
+        this.sides = new Side[] {
+            new Side(true, false, capacity), //rising bid
+            new Side(true, true, capacity), //rising ask
+            new Side(false, false, capacity), //falling bid
+            new Side(false, true, capacity) //falling ask
+        };
+        this.sideOfId = new int[Math.max(1, capacity)];
+        this.keyOfId = new double[sideOfId.length];
+        Arrays.fill(sideOfId, NONE);
+    }
+
+    /*
+     * Sets the level of trigger id, replacing a previous level of the same
+     * id. A rising trigger fires once the price of the given side is at or
+     * above level, a falling one once it is at or below.
+     */
+    public void put(int id, double level, boolean rising, OfferSide side) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative trigger id: " + id);
+        }
+        remove(id);
+        if (id >= sideOfId.length) {
+            int length = Math.max(id + 1, sideOfId.length * 2);
+            sideOfId = Arrays.copyOf(sideOfId, length);
+            keyOfId = Arrays.copyOf(keyOfId, length);
+            Arrays.fill(sideOfId, id, length, NONE);
+        }
+        int index = (rising ? 0 : 2) + (side == OfferSide.ASK ? 1 : 0);
+        double key = rising ? level : -level;
+        sides[index].insert(id, key);
+        sideOfId[id] = index;
+        keyOfId[id] = key;
+    }
+
+    /*
+     * Removes trigger id, returns false if it was not set.
+     */
+    public boolean remove(int id) {
+        if (!contains(id)) {
+            return false;
+        }
+        sides[sideOfId[id]].remove(id, keyOfId[id]);
+        sideOfId[id] = NONE;
+        return true;
+    }
+
+    public boolean contains(int id) {
+        return id >= 0 && id < sideOfId.length && sideOfId[id] != NONE;
+    }
+
+    public void clear() {
+        for (Side side : sides) {
+            side.size = 0;
+        }
+        Arrays.fill(sideOfId, NONE);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Side side : sides) {
+            size += side.size;
+        }
+        return size;
+    }
+
+    /*
+     * Removes and returns the id of one trigger crossed by the tick, NONE if
+     * no trigger was crossed. Call repeatedly to get all crossed triggers.
+     */
+    public int poll(ITick tick) {
+        return poll(tick.getBid(), tick.getAsk());
+    }
+
+    public int poll(double bid, double ask) {
+        for (Side side : sides) {
+            int id = side.poll(side.ask ? ask : bid);
+            if (id != NONE) {
+                sideOfId[id] = NONE;
+                return id;
+            }
+        }
+        return NONE;
+    }
+
+    /*
+     * Levels of one direction and offer side. Keys are the levels, negated
+     * for falling triggers, sorted descending so that the smallest key,
+     * i.e. the next level to cross, is at the end.
+     */
+    private static final class Side {
+
+        private final boolean rising;
+        private final boolean ask;
+        private double[] keys;
+        private int[] ids;
+        private int size;
+
+        Side(boolean rising, boolean ask, int capacity) {
+            this.rising = rising;
+            this.ask = ask;
+            this.keys = new double[Math.max(1, capacity)];
+            this.ids = new int[keys.length];
+        }
+
+        int poll(double price) {
+            //comparisons with NaN prices are false, so nothing fires
+            if (size > 0 && keys[size - 1] <= (rising ? price : -price)) {
+                size--;
+                return ids[size];
+            }
+            return NONE;
+        }
+
+        void insert(int id, double key) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            //insert before equal keys so that those fire in insertion order
+            int low = search(key);
+            System.arraycopy(keys, low, keys, low + 1, size - low);
+            System.arraycopy(ids, low, ids, low + 1, size - low);
+            keys[low] = key;
+            ids[low] = id;
+            size++;
+        }
+
+        void remove(int id, double key) {
+            int index = indexOf(id, key);
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+        }
+
+        //index of the first key not greater than key, i.e. of the run of keys equal to it
+        private int search(double key) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle] > key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private int indexOf(int id, double key) {
+            for (int i = search(key); i < size && keys[i] == key; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            //NaN levels are not ordered, look them up one by one
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Trigger " + id + " not found");
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.IHistory;
+import com.dukascopy.api.ITick;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.JFException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Last tick cache per instrument, fed from onTick.
+ * Ticks delivered by the platform are immutable, so the cache just keeps
+ * the reference of the latest one: a reader always gets a consistent
+ * bid/ask pair and never blocks the writer. The history is only asked
+ * for instruments which did not receive any tick yet.
+ */
+public class QuoteCache {
+
+    private final IHistory history;
+    private final AtomicReferenceArray<ITick> lastTicks;
+
+    public QuoteCache(IHistory history) {
+        this.history = history;
+        this.lastTicks = new AtomicReferenceArray<ITick>(Instrument.values().length);
+    }
+
+    public void onTick(Instrument instrument, ITick tick) {
+        lastTicks.set(instrument.ordinal(), tick);
+    }
+
+    public ITick getLastTick(Instrument instrument) throws JFException {
+        ITick tick = lastTicks.get(instrument.ordinal());
+        if (tick == null) {
+            //no tick received yet, ask the platform once
+            tick = history.getLastTick(instrument);
+            lastTicks.compareAndSet(instrument.ordinal(), null, tick);
+        }
+        return tick;
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+/*
+ * Decides when a pending order needs to be resized.
+ * For a fixed stop loss distance the position size is proportional to the
+ * rate factor (see PositionSizer.getRateFactor) and to the currency risk, so
+ * once armed with the current size and their product this only compares
+ * each new product against a precomputed band: the order is resized only
+ * when the size would change by at least one lot step, or by the tolerated
+ * risk deviation if that is larger.
+ */
+public class ResizeTrigger {
+
+    private double lowFactor;
+    private double highFactor;
+
+    public ResizeTrigger() {
+        reset();
+    }
+
+    /*
+     * Forces the next check to trigger.
+     */
+    public void reset() {
+        lowFactor = Double.NaN;
+        highFactor = Double.NaN;
+    }
+
+    /*
+     * Stops triggering, e.g. once the order is no longer pending.
+     */
+    public void disarm() {
+        lowFactor = Double.NEGATIVE_INFINITY;
+        highFactor = Double.POSITIVE_INFINITY;
+    }
+
+    /*
+     * Arms the trigger for the size just set at the given rate factor.
+     * tolerance is the allowed risk deviation as a fraction (0.01 is 1%).
+     */
+    public void arm(double positionSize, double rateFactor, double lotStep, double tolerance) {
+        if (positionSize <= 0) {
+            //size rejected by safety check, equity or rate changes can bring it back under the limit: check again
+            reset();
+            return;
+        }
+        double threshold = Math.max(lotStep, positionSize * tolerance);
+        double band = rateFactor * threshold / positionSize;
+        lowFactor = rateFactor - band;
+        highFactor = rateFactor + band;
+    }
+
+    public boolean isTriggered(double rateFactor) {
+        //written this way so that an unarmed (NaN) band always triggers
+        return !(rateFactor > lowFactor && rateFactor < highFactor);
+    }
+
+}
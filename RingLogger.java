@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.IConsole;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Log of the tools, written on the strategy thread without formatting or
+ * console I/O.
+ * An entry is a constant format with {} placeholders plus up to MAX_ARGS
+ * arguments (doubles, longs or references to immutable objects such as
+ * labels), stored in a preallocated ring buffer. A background thread
+ * formats the entries and prints them to the console stream of their
+ * level, or to one stream, e.g. a local file.
+ * Entries below the minimum level, entries of a category logged again
+ * within its minimum interval and entries not fitting in a full buffer are
+ * dropped instead of blocking; the number of rate limited entries is
+ * appended to the next entry of the category, or printed by stop.
+ * Rate limits are measured in event time, set by the callbacks with
+ * setTime, so a backtest is limited like a live run.
+ * There must be only one producer thread, as for the strategy callbacks.
+ * The background thread waits while the buffer is empty.
+ *
+ * Usage:
+ * if (logger.begin(RingLogger.INFO, LOG_ORDERS, "Order {} closed. Profit: {}")) {
+ *     logger.arg(label).arg(profit).end();
+ * }
+ */
+public class RingLogger {
+
+    public static final int DEBUG = 0;
+    public static final int INFO = 1;
+    public static final int WARN = 2;
+    public static final int ERROR = 3;
+
+    public static final int MAX_ARGS = 4;
+    public static final int MAX_CATEGORIES = 16;
+
+    private static final byte REF = 0;
+    private static final byte DOUBLE = 1;
+    private static final byte LONG = 2;
+
+    private final PrintStream[] streams;
+    private final int mask;
+
+    //entries, args at index slot * MAX_ARGS
+    private final int[] levels;
+    private final String[] formats;
+    private final int[] argCounts;
+    private final int[] suppressed;
+    private final byte[] kinds;
+    private final Object[] refs;
+    private final long[] values;
+
+    //next entry to write (producer) and to print (consumer)
+    private final AtomicLong head;
+    private final AtomicLong tail;
+
+    //producer state
+    private final long[] minIntervals;
+    private final long[] lastTimes;
+    private final int[] suppressedCounts;
+    private final int[] suppressedLevels;
+    private final String[] suppressedFormats;
+    private long time;
+    private int minLevel;
+    private int slot;
+    private long dropped;
+
+    private final StringBuilder line;
+    private volatile boolean running;
+    private Thread consumer;
+    //the consumer waits on the signal while the buffer is empty
+    private final Object signal;
+    private volatile boolean consumerWaiting;
+
+    /*
+     * Logs to the console, on getOut, getInfo, getWarn and getErr by level.
+     */
+    public RingLogger(IConsole console, int capacity) {
+        this(new PrintStream[] {console.getOut(), console.getInfo(), console.getWarn(), console.getErr()}, capacity);
+    }
+
+    /*
+     * Logs all levels to the stream.
+     */
+    public RingLogger(PrintStream out, int capacity) {
+        this(new PrintStream[] {out, out, out, out}, capacity);
+    }
+
+    private RingLogger(PrintStream[] streams, int capacity) {
+        capacity = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.streams = streams;
+        this.mask = capacity - 1;
+        this.levels = new int[capacity];
+        this.formats = new String[capacity];
+        this.argCounts = new int[capacity];
+        this.suppressed = new int[capacity];
+        this.kinds = new byte[capacity * MAX_ARGS];
+        this.refs = new Object[capacity * MAX_ARGS];
+        this.values = new long[capacity * MAX_ARGS];
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+        this.minIntervals = new long[MAX_CATEGORIES];
+        this.lastTimes = new long[MAX_CATEGORIES];
+        this.suppressedCounts = new int[MAX_CATEGORIES];
+        this.suppressedLevels = new int[MAX_CATEGORIES];
+        this.suppressedFormats = new String[MAX_CATEGORIES];
+        this.time = 0;
+        this.minLevel = DEBUG;
+        this.line = new StringBuilder(256);
+        this.signal = new Object();
+    }
+
+    public void setLevel(int minLevel) {
+        this.minLevel = minLevel;
+    }
+
+    /*
+     * Logs the category (0 to MAX_CATEGORIES - 1) at most once per interval.
+     */
+    public void setRateLimit(int category, long minIntervalMillis) {
+        minIntervals[category] = minIntervalMillis;
+        lastTimes[category] = time - minIntervalMillis;
+    }
+
+    /*
+     * Sets the event time in milliseconds of the entries logged next, e.g.
+     * the tick time. The time never goes back, so the earlier start time of
+     * a bar following its ticks does not restart the intervals.
+     */
+    public void setTime(long time) {
+        if (time > this.time) {
+            this.time = time;
+        }
+    }
+
+    /*
+     * Starts the background thread printing the entries.
+     */
+    public void start() {
+        running = true;
+        consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (running) {
+                    if (print() == 0 && !awaitEntries()) {
+                        return;
+                    }
+                }
+            }
+        }, "RingLogger");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /*
+     * Stops the background thread and prints the remaining entries, and
+     * the number of entries still rate limited per category.
+     */
+    public void stop() {
+        running = false;
+        if (consumer != null) {
+            wakeConsumer();
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            consumer = null;
+        }
+        print();
+        for (int category = 0; category < MAX_CATEGORIES; category++) {
+            if (suppressedCounts[category] > 0) {
+                streams[suppressedLevels[category]].println(suppressedCounts[category]
+                        + " similar log entries suppressed, last: " + suppressedFormats[category]);
+                suppressedCounts[category] = 0;
+            }
+        }
+        if (dropped > 0) {
+            streams[WARN].println(dropped + " log entries dropped, log buffer full");
+            dropped = 0;
+        }
+        for (PrintStream stream : streams) {
+            stream.flush();
+        }
+    }
+
+    /*
+     * Starts an entry, returns false if it is dropped. If true the
+     * arguments must follow and the entry be completed with end.
+     */
+    public boolean begin(int level, int category, String format) {
+        if (level < minLevel) {
+            return false;
+        }
+        if (minIntervals[category] > 0 && time - lastTimes[category] < minIntervals[category]) {
+            suppressedCounts[category]++;
+            suppressedLevels[category] = level;
+            suppressedFormats[category] = format;
+            return false;
+        }
+        long next = head.get();
+        if (next - tail.get() > mask) {
+            dropped++;
+            return false;
+        }
+        if (minIntervals[category] > 0) {
+            lastTimes[category] = time;
+        }
+        slot = (int) next & mask;
+        levels[slot] = level;
+        formats[slot] = format;
+        argCounts[slot] = 0;
+        suppressed[slot] = suppressedCounts[category];
+        suppressedCounts[category] = 0;
+        return true;
+    }
+
+    public RingLogger arg(Object ref) {
+        int index = nextArg(REF);
+        if (index >= 0) {
+            refs[index] = ref;
+        }
+        return this;
+    }
+
+    public RingLogger arg(double value) {
+        int index = nextArg(DOUBLE);
+        if (index >= 0) {
+            values[index] = Double.doubleToRawLongBits(value);
+        }
+        return this;
+    }
+
+    public RingLogger arg(long value) {
+        int index = nextArg(LONG);
+        if (index >= 0) {
+            values[index] = value;
+        }
+        return this;
+    }
+
+    /*
+     * Publishes the entry started by begin.
+     */
+    public void end() {
+        //a volatile write, ordered before reading consumerWaiting
+        head.set(head.get() + 1);
+        if (consumerWaiting) {
+            wakeConsumer();
+        }
+    }
+
+    /*
+     * Logs a message without arguments.
+     */
+    public void log(int level, int category, String message) {
+        if (begin(level, category, message)) {
+            end();
+        }
+    }
+
+    private int nextArg(byte kind) {
+        int count = argCounts[slot];
+        if (count == MAX_ARGS) {
+            return -1;
+        }
+        int index = slot * MAX_ARGS + count;
+        kinds[index] = kind;
+        argCounts[slot] = count + 1;
+        return index;
+    }
+
+    /*
+     * Waits until an entry is published or the logger stops, called by the
+     * consumer only. Returns false if the consumer was interrupted.
+     */
+    private boolean awaitEntries() {
+        synchronized (signal) {
+            consumerWaiting = true;
+            try {
+                while (running && head.get() == tail.get()) {
+                    signal.wait();
+                }
+            } catch (InterruptedException e) {
+                return false;
+            } finally {
+                consumerWaiting = false;
+            }
+        }
+        return true;
+    }
+
+    private void wakeConsumer() {
+        synchronized (signal) {
+            signal.notify();
+        }
+    }
+
+    /*
+     * Prints the published entries, called by the consumer only.
+     */
+    private int print() {
+        long last = head.get();
+        long next = tail.get();
+        int count = 0;
+        while (next < last) {
+            int entry = (int) next & mask;
+            format(entry);
+            streams[levels[entry]].println(line);
+            for (int n = 0; n < argCounts[entry]; n++) {
+                refs[entry * MAX_ARGS + n] = null;
+            }
+            next++;
+            count++;
+            tail.lazySet(next);
+        }
+        return count;
+    }
+
+    private void format(int entry) {
+        line.setLength(0);
+        String format = formats[entry];
+        int arg = 0;
+        int start = 0;
+        int placeholder;
+        while ((placeholder = format.indexOf("{}", start)) >= 0) {
+            line.append(format, start, placeholder);
+            if (arg < argCounts[entry]) {
+                int index = entry * MAX_ARGS + arg++;
+                if (kinds[index] == REF) {
+                    line.append(refs[index]);
+                } else if (kinds[index] == DOUBLE) {
+                    line.append(Double.longBitsToDouble(values[index]));
+                } else {
+                    line.append(values[index]);
+                }
+            } else {
+                line.append("{}");
+            }
+            start = placeholder + 2;
+        }
+        line.append(format, start, format.length());
+        if (suppressed[entry] > 0) {
+            line.append(" (").append(suppressed[entry]).append(" similar suppressed)");
+        }
+    }
+
+}
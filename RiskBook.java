@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.IMessage;
+import com.dukascopy.api.IOrder;
+import com.dukascopy.api.ITick;
+import com.dukascopy.api.JFException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Account wide risk of all tool instances running in this JVM.
+ * Every instance books its orders through its own Ledger, which is fed
+ * with the instance's order messages and applies the change of each order
+ * to a few shared counters: open risk (stop loss distance times amount of
+ * filled orders, in account currency), pending risk (the same for orders
+ * waiting for their entry), realized profit/loss and commission.
+ * The counters are atomic fixed point longs, so booking never locks and
+ * reading the total exposure costs the same for any number of instances.
+ * Each counter is exact on its own, a snapshot of several counters may
+ * mix states of a concurrent update. Orders without stop loss, or with the
+ * stop loss moved to break even or beyond, count no risk and the risk of an
+ * order is valued at the conversion rates of its last message.
+ * Orders still live when their instance stops stay booked at their last
+ * risk, since they still are exposure of the account, until they are seen
+ * closed or canceled by refreshReleased.
+ */
+public class RiskBook {
+
+    //order messages changing the risk of an order, see Ledger
+    public static final IMessage.Type[] MESSAGE_TYPES = {
+        IMessage.Type.ORDER_SUBMIT_OK, IMessage.Type.ORDER_SUBMIT_REJECTED, IMessage.Type.ORDER_FILL_OK,
+        IMessage.Type.ORDER_FILL_REJECTED, IMessage.Type.ORDER_CHANGED_OK, IMessage.Type.ORDER_CLOSE_OK,
+        IMessage.Type.ORDERS_MERGE_OK
+    };
+    //counters are in millionths of account currency
+    private static final double SCALE = 1000000;
+    private static final RiskBook instance = new RiskBook();
+
+    private final AtomicLong openRisk = new AtomicLong();
+    private final AtomicLong pendingRisk = new AtomicLong();
+    private final AtomicLong realizedProfitLoss = new AtomicLong();
+    private final AtomicLong commission = new AtomicLong();
+    private final AtomicLong openCount = new AtomicLong();
+    private final AtomicLong pendingCount = new AtomicLong();
+    //ledgers of stopped instances with live orders, see Ledger.release
+    private final List<Ledger> releasedLedgers = new ArrayList<Ledger>();
+
+    private RiskBook() {
+    }
+
+    public static RiskBook getInstance() {
+        return instance;
+    }
+
+    /*
+     * Returns a ledger booking the orders of one tool instance.
+     */
+    public Ledger newLedger(PositionSizer positionSizer, QuoteCache quoteCache) {
+        refreshReleased();
+        return new Ledger(this, positionSizer, quoteCache);
+    }
+
+    /*
+     * Takes the orders of stopped instances closed or canceled since then
+     * out of the book, realizing the profit of the closed ones. Called when
+     * an instance starts or stops, and before reading the counters if the
+     * orders of stopped instances matter.
+     */
+    public void refreshReleased() {
+        synchronized (releasedLedgers) {
+            for (Iterator<Ledger> it = releasedLedgers.iterator(); it.hasNext();) {
+                if (!it.next().releaseClosed()) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    public double getOpenRisk() {
+        return openRisk.get() / SCALE;
+    }
+
+    public double getPendingRisk() {
+        return pendingRisk.get() / SCALE;
+    }
+
+    public double getRealizedProfitLoss() {
+        return realizedProfitLoss.get() / SCALE;
+    }
+
+    public double getCommission() {
+        return commission.get() / SCALE;
+    }
+
+    public long getOpenCount() {
+        return openCount.get();
+    }
+
+    public long getPendingCount() {
+        return pendingCount.get();
+    }
+
+    private static long toFixed(double value) {
+        return Math.round(value * SCALE);
+    }
+
+    /*
+     * Orders of one tool instance and the risk they contribute to the book.
+     * Not thread safe, it is used from the thread of its strategy only. As
+     * order listener of the MESSAGE_TYPES (see MessageDispatcher) it books
+     * the instance's orders on each of their changes.
+     */
+    public static class Ledger implements MessageDispatcher.Handler {
+
+        private static final int NONE = 0;
+        private static final int PENDING = 1;
+        private static final int OPEN = 2;
+
+        private final RiskBook book;
+        private final PositionSizer positionSizer;
+        private final QuoteCache quoteCache;
+        private final LongIntMap slotsById;
+        private long[] ids;
+        private IOrder[] orders;
+        private long[] risks;
+        private int[] kinds;
+        private int[] freeSlots;
+        private int freeCount;
+        private int size;
+
+        private Ledger(RiskBook book, PositionSizer positionSizer, QuoteCache quoteCache) {
+            this.book = book;
+            this.positionSizer = positionSizer;
+            this.quoteCache = quoteCache;
+            this.slotsById = new LongIntMap(8);
+            this.ids = new long[8];
+            this.orders = new IOrder[8];
+            this.risks = new long[8];
+            this.kinds = new int[8];
+            this.freeSlots = new int[8];
+        }
+
+        @Override
+        public void onMessage(IMessage message, long orderId) throws JFException {
+            book(orderId, message.getOrder());
+        }
+
+        /*
+         * Books the current state of an order: created and opened orders
+         * are pending, filled ones open, closed ones realize their profit
+         * and canceled or rejected ones leave the book.
+         */
+        public void book(long orderId, IOrder order) throws JFException {
+            IOrder.State state = order.getState();
+            int kind = NONE;
+            if (state == IOrder.State.CREATED || state == IOrder.State.OPENED) {
+                kind = PENDING;
+            } else if (state == IOrder.State.FILLED) {
+                kind = OPEN;
+            }
+
+            int slot = slotsById.get(orderId);
+            if (kind == NONE) {
+                if (slot != LongIntMap.NONE) {
+                    leave(slot, order);
+                }
+                return;
+            }
+            if (slot == LongIntMap.NONE) {
+                slot = add(orderId);
+            }
+            orders[slot] = order;
+            set(slot, kind, toFixed(getRisk(order)));
+        }
+
+        /*
+         * Takes the closed and canceled orders of the instance out of the
+         * book on stop. The live ones stay booked at their last risk and
+         * are handed to the book, which takes them out once they are done
+         * (see refreshReleased). The ledger must not be used afterwards.
+         */
+        public void release() {
+            book.refreshReleased();
+            if (releaseClosed()) {
+                synchronized (book.releasedLedgers) {
+                    book.releasedLedgers.add(this);
+                }
+            }
+        }
+
+        /*
+         * Takes the orders no longer live out of the book, returns true if
+         * live ones are left.
+         */
+        private boolean releaseClosed() {
+            boolean live = false;
+            for (int slot = 0; slot < size; slot++) {
+                if (kinds[slot] == NONE) {
+                    continue;
+                }
+                IOrder.State state = orders[slot].getState();
+                if (state == IOrder.State.CREATED || state == IOrder.State.OPENED
+                        || state == IOrder.State.FILLED) {
+                    live = true;
+                } else {
+                    leave(slot, orders[slot]);
+                }
+            }
+            return live;
+        }
+
+        /*
+         * Takes a closed, canceled or rejected order out of the book.
+         */
+        private void leave(int slot, IOrder order) {
+            if (order.getState() == IOrder.State.CLOSED) {
+                book.realizedProfitLoss.addAndGet(toFixed(order.getProfitLossInAccountCurrency()));
+                book.commission.addAndGet(toFixed(order.getCommission()));
+            }
+            set(slot, NONE, 0);
+            remove(slot);
+        }
+
+        private double getRisk(IOrder order) throws JFException {
+            double stopLossPrice = order.getStopLossPrice();
+            if (stopLossPrice <= 0) {
+                return 0;
+            }
+            double entryPrice = order.getOpenPrice();
+            if (entryPrice <= 0) {
+                //market order not filled yet
+                ITick tick = quoteCache.getLastTick(order.getInstrument());
+                entryPrice = order.isLong() ? tick.getAsk() : tick.getBid();
+            }
+            //a stop moved to or beyond break even risks nothing
+            double lossDistance = order.isLong() ? entryPrice - stopLossPrice : stopLossPrice - entryPrice;
+            if (lossDistance <= 0) {
+                return 0;
+            }
+            return positionSizer.getMoveValue(order.getInstrument(), order.isLong(), lossDistance, order.getAmount());
+        }
+
+        private void set(int slot, int kind, long risk) {
+            if (kinds[slot] == kind && risks[slot] == risk) {
+                return;
+            }
+            //take out the previous contribution, then add the new one
+            if (kinds[slot] == PENDING) {
+                book.pendingRisk.addAndGet(-risks[slot]);
+                book.pendingCount.decrementAndGet();
+            } else if (kinds[slot] == OPEN) {
+                book.openRisk.addAndGet(-risks[slot]);
+                book.openCount.decrementAndGet();
+            }
+            if (kind == PENDING) {
+                book.pendingRisk.addAndGet(risk);
+                book.pendingCount.incrementAndGet();
+            } else if (kind == OPEN) {
+                book.openRisk.addAndGet(risk);
+                book.openCount.incrementAndGet();
+            }
+            kinds[slot] = kind;
+            risks[slot] = risk;
+        }
+
+        private int add(long orderId) {
+            int slot;
+            if (freeCount > 0) {
+                slot = freeSlots[--freeCount];
+            } else {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                    orders = Arrays.copyOf(orders, size * 2);
+                    risks = Arrays.copyOf(risks, size * 2);
+                    kinds = Arrays.copyOf(kinds, size * 2);
+                    freeSlots = Arrays.copyOf(freeSlots, size * 2);
+                }
+                slot = size++;
+            }
+            ids[slot] = orderId;
+            kinds[slot] = NONE;
+            risks[slot] = 0;
+            slotsById.put(orderId, slot);
+            return slot;
+        }
+
+        private void remove(int slot) {
+            slotsById.remove(ids[slot]);
+            orders[slot] = null;
+            freeSlots[freeCount++] = slot;
+        }
+
+    }
+
+}
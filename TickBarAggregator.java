@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.ITick;
+import com.dukascopy.api.OfferSide;
+
+/*
+ * Builds bid and ask OHLC bars of a custom period from the ticks of a set
+ * of slots (e.g. one per instrument), so that the checks done on platform
+ * one minute bars can run every few seconds without subscribing to more bar
+ * feeds. Bars are aligned to multiples of the period since the epoch, like
+ * the platform bars, and a bar is completed by the first tick of a later
+ * bar. Periods without ticks produce no bar.
+ * All prices are kept in flat arrays allocated once, indexed by slot and
+ * side, so aggregating a tick only costs a few comparisons.
+ */
+public class TickBarAggregator {
+
+    private static final int SIDES = 2;
+    private static final int ASK = OfferSide.ASK.ordinal();
+    private static final int BID = OfferSide.BID.ordinal();
+
+    private final long periodMillis;
+
+    //bar in progress per slot and side
+    private final double[] barOpen;
+    private final double[] barHigh;
+    private final double[] barLow;
+    private final double[] barClose;
+    private final long[] barTime;
+    private final boolean[] barStarted;
+
+    //last completed bar per slot and side
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+    private final long[] time;
+
+    public TickBarAggregator(int size, long periodMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Invalid bar period: " + periodMillis);
+        }
+        this.periodMillis = periodMillis;
+        this.barOpen = new double[size * SIDES];
+        this.barHigh = new double[size * SIDES];
+        this.barLow = new double[size * SIDES];
+        this.barClose = new double[size * SIDES];
+        this.barTime = new long[size];
+        this.barStarted = new boolean[size];
+        this.open = new double[size * SIDES];
+        this.high = new double[size * SIDES];
+        this.low = new double[size * SIDES];
+        this.close = new double[size * SIDES];
+        this.time = new long[size];
+    }
+
+    public long getPeriodMillis() {
+        return periodMillis;
+    }
+
+    /*
+     * Adds a tick to the bar in progress of the slot. Returns true if the
+     * tick starts a new bar and so completed the previous one, which is then
+     * available through the getters until the next completed bar.
+     */
+    public boolean onTick(int slot, ITick tick) {
+        long tickTime = tick.getTime();
+        long start = tickTime - (tickTime % periodMillis);
+        boolean completed = false;
+        if (barStarted[slot] && start != barTime[slot]) {
+            if (start < barTime[slot]) {
+                //out of order tick, belongs to a completed bar
+                return false;
+            }
+            complete(slot, ASK);
+            complete(slot, BID);
+            time[slot] = barTime[slot];
+            barStarted[slot] = false;
+            completed = true;
+        }
+        if (!barStarted[slot]) {
+            barTime[slot] = start;
+            barStarted[slot] = true;
+            start(slot * SIDES + ASK, tick.getAsk());
+            start(slot * SIDES + BID, tick.getBid());
+        } else {
+            update(slot * SIDES + ASK, tick.getAsk());
+            update(slot * SIDES + BID, tick.getBid());
+        }
+        return completed;
+    }
+
+    /*
+     * Drops the bar in progress of the slot, e.g. after a gap in the data.
+     */
+    public void reset(int slot) {
+        barStarted[slot] = false;
+    }
+
+    /*
+     * Start time of the last completed bar of the slot.
+     */
+    public long getTime(int slot) {
+        return time[slot];
+    }
+
+    public double getOpen(int slot, OfferSide side) {
+        return open[slot * SIDES + side.ordinal()];
+    }
+
+    public double getHigh(int slot, OfferSide side) {
+        return high[slot * SIDES + side.ordinal()];
+    }
+
+    public double getLow(int slot, OfferSide side) {
+        return low[slot * SIDES + side.ordinal()];
+    }
+
+    public double getClose(int slot, OfferSide side) {
+        return close[slot * SIDES + side.ordinal()];
+    }
+
+    private void complete(int slot, int s) {
+        int i = slot * SIDES + s;
+        open[i] = barOpen[i];
+        high[i] = barHigh[i];
+        low[i] = barLow[i];
+        close[i] = barClose[i];
+    }
+
+    private void start(int i, double price) {
+        barOpen[i] = price;
+        barHigh[i] = price;
+        barLow[i] = price;
+        barClose[i] = price;
+    }
+
+    private void update(int i, double price) {
+        if (price > barHigh[i]) {
+            barHigh[i] = price;
+        }
+        if (price < barLow[i]) {
+            barLow[i] = price;
+        }
+        barClose[i] = price;
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import com.dukascopy.api.IConsole;
+import com.dukascopy.api.IContext;
+import com.dukascopy.api.IMessage;
+import com.dukascopy.api.JFException;
+
+/*
+ * Components every tool instance sets up in onStart and tears down in
+ * onStop: quote cache and position sizer, order ids, the message
+ * dispatcher with the risk ledger and the order latency tracker as order
+ * listeners, account state, log, latency monitor and order modifier.
+ * The tool keeps the components it uses in its own fields, registers its
+ * message handlers and calls stop from onStop.
+ *
+ * Usage:
+ * this.runtime = new ToolRuntime(context, getClass().getSimpleName(), latencyFile,
+ *         "onTick", "onBar", "onMessage");
+ * this.logger = runtime.getLogger();
+ */
+public class ToolRuntime {
+
+    //log categories of the tools, lines repeated on every bar are rate limited
+    public static final int LOG_ORDERS = 0;
+    public static final int LOG_RESIZE = 1;
+    public static final int LOG_ERRORS = 2;
+    //the lines are repeated on every one minute bar or tick, log one per 10 minutes
+    private static final long LOG_RATE_LIMIT = 10 * 60 * 1000;
+    //interval of the latency file dump
+    private static final long LATENCY_DUMP_PERIOD = 60 * 1000;
+    //messages without order the tools print: the types printed before, all but instrument status and calendar
+    public static final IMessage.Type[] PRINTED_ORDERLESS_TYPES = {
+        IMessage.Type.ORDER_SUBMIT_OK, IMessage.Type.ORDER_SUBMIT_REJECTED, IMessage.Type.ORDER_FILL_OK,
+        IMessage.Type.ORDER_FILL_REJECTED, IMessage.Type.ORDER_CHANGED_OK, IMessage.Type.ORDER_CHANGED_REJECTED,
+        IMessage.Type.ORDER_CLOSE_OK, IMessage.Type.ORDER_CLOSE_REJECTED, IMessage.Type.ORDERS_MERGE_OK,
+        IMessage.Type.ORDERS_MERGE_REJECTED, IMessage.Type.NOTIFICATION, IMessage.Type.CONNECTION_STATUS,
+        IMessage.Type.STRATEGY_BROADCAST, IMessage.Type.SENDING_ORDER, IMessage.Type.MAIL, IMessage.Type.NEWS
+    };
+
+    private final IConsole console;
+    private final QuoteCache quoteCache;
+    private final PositionSizer positionSizer;
+    private final OrderIds orderIds;
+    private final MessageDispatcher messageDispatcher;
+    private final RiskBook.Ledger riskLedger;
+    private final AccountState accountState;
+    private final RingLogger logger;
+    private final LatencyMonitor latency;
+    private final OrderLatencyTracker orderLatency;
+    private final OrderModifier orderModifier;
+
+    /*
+     * Sets up the components of a tool named name with the latency probes
+     * of the tool, and starts the log and the latency file dump, if a
+     * latency file is given.
+     */
+    public ToolRuntime(IContext context, String name, String latencyFile, String... probeNames)
+            throws JFException {
+        this.console = context.getConsole();
+        this.quoteCache = new QuoteCache(context.getHistory());
+        this.positionSizer = new PositionSizer(quoteCache,
+                context.getAccount().getCurrency().getCurrencyCode());
+        this.orderIds = new OrderIds();
+        this.messageDispatcher = new MessageDispatcher(orderIds);
+        //book the orders of this instance in the account wide risk book
+        this.riskLedger = RiskBook.getInstance().newLedger(positionSizer, quoteCache);
+        messageDispatcher.addOrderListener(riskLedger, RiskBook.MESSAGE_TYPES);
+        this.accountState = new AccountState();
+        accountState.update(context.getAccount());
+        this.logger = new RingLogger(console, 256);
+        logger.setRateLimit(LOG_RESIZE, LOG_RATE_LIMIT);
+        logger.setRateLimit(LOG_ERRORS, LOG_RATE_LIMIT);
+        logger.start();
+        this.latency = new LatencyMonitor(name, probeNames);
+        //round trips of the order actions in the same histograms
+        this.orderLatency = new OrderLatencyTracker(latency);
+        messageDispatcher.addOrderListener(orderLatency, OrderLatencyTracker.MESSAGE_TYPES);
+        if (!latencyFile.isEmpty()) {
+            latency.startFileDump(latencyFile, LATENCY_DUMP_PERIOD, console.getErr());
+        }
+        this.orderModifier = new OrderModifier(2);
+        orderModifier.setLatencyTracker(orderLatency);
+        orderModifier.setLogger(logger, LOG_RESIZE);
+    }
+
+    public QuoteCache getQuoteCache() {
+        return quoteCache;
+    }
+
+    public PositionSizer getPositionSizer() {
+        return positionSizer;
+    }
+
+    public OrderIds getOrderIds() {
+        return orderIds;
+    }
+
+    public MessageDispatcher getMessageDispatcher() {
+        return messageDispatcher;
+    }
+
+    public AccountState getAccountState() {
+        return accountState;
+    }
+
+    public RingLogger getLogger() {
+        return logger;
+    }
+
+    public LatencyMonitor getLatency() {
+        return latency;
+    }
+
+    public OrderLatencyTracker getOrderLatency() {
+        return orderLatency;
+    }
+
+    public OrderModifier getOrderModifier() {
+        return orderModifier;
+    }
+
+    /*
+     * Logs the order change counts and the account risk, releases the
+     * orders of the instance from the risk book, stops the latency dump
+     * and the log, then prints the latencies and the totals of the tool.
+     */
+    public void stop(double totalProfit, double totalCommission) {
+        if (logger.begin(RingLogger.INFO, LOG_ORDERS, "Order changes requested: {} suppressed: {} sent: {}")) {
+            logger.arg(orderModifier.getRequestedCount()).arg(orderModifier.getSuppressedCount())
+                    .arg(orderModifier.getSentCount()).end();
+        }
+        RiskBook riskBook = RiskBook.getInstance();
+        if (logger.begin(RingLogger.INFO, LOG_ORDERS, "Account open risk: {} pending risk: {} realized net profit: {}")) {
+            logger.arg(riskBook.getOpenRisk()).arg(riskBook.getPendingRisk())
+                    .arg(riskBook.getRealizedProfitLoss() - riskBook.getCommission()).end();
+        }
+        riskLedger.release();
+        latency.stopFileDump();
+        //print the pending log lines before the summary
+        logger.stop();
+        latency.print(console.getInfo());
+        console.getNotif().println("Strategy stopped. Profit: " + totalProfit +
+                " Commission: " + totalCommission +
+                " Net Profit: " + (totalProfit - totalCommission));
+    }
+
+}
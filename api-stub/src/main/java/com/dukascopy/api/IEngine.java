@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.dukascopy.api;
+
+import java.util.List;
+
+/*
+ * Order entry, subset of the JForex API used by the tools.
+ */
+public interface IEngine {
+
+    enum OrderCommand {
+        BUY, SELL, BUYLIMIT, SELLLIMIT, BUYSTOP, SELLSTOP, BUYLIMIT_BYBID, SELLLIMIT_BYASK, BUYSTOP_BYBID,
+        SELLSTOP_BYASK, PLACE_BID, PLACE_OFFER;
+
+        public boolean isLong() {
+            return this == BUY || this == BUYLIMIT || this == BUYSTOP || this == BUYLIMIT_BYBID
+                    || this == BUYSTOP_BYBID || this == PLACE_BID;
+        }
+
+        public boolean isShort() {
+            return !isLong();
+        }
+
+        /*
+         * True for entry orders waiting for a price, false for market orders.
+         */
+        public boolean isConditional() {
+            return this != BUY && this != SELL;
+        }
+    }
+
+    IOrder submitOrder(String label, Instrument instrument, OrderCommand orderCommand, double amount, double price,
+            double slippage, double stopLossPrice, double takeProfitPrice) throws JFException;
+
+    IOrder submitOrder(String label, Instrument instrument, OrderCommand orderCommand, double amount)
+            throws JFException;
+
+    IOrder getOrder(String label) throws JFException;
+
+    List<IOrder> getOrders() throws JFException;
+
+}
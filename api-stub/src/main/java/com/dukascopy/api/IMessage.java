@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.dukascopy.api;
+
+/*
+ * Platform message passed to IStrategy.onMessage, subset of the JForex API used by the tools.
+ */
+public interface IMessage {
+
+    enum Type {
+        ORDER_SUBMIT_OK, ORDER_SUBMIT_REJECTED, ORDER_FILL_OK, ORDER_FILL_REJECTED, ORDER_CHANGED_OK,
+        ORDER_CHANGED_REJECTED, ORDER_CLOSE_OK, ORDER_CLOSE_REJECTED, ORDERS_MERGE_OK, ORDERS_MERGE_REJECTED,
+        NOTIFICATION, INSTRUMENT_STATUS, CALENDAR, CONNECTION_STATUS, STRATEGY_BROADCAST, SENDING_ORDER, MAIL,
+        NEWS
+    }
+
+    Type getType();
+
+    /*
+     * Order the message is about, null for messages without order.
+     */
+    IOrder getOrder();
+
+    String getContent();
+
+    long getCreationTime();
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.dukascopy.api;
+
+/*
+ * Order of the account, subset of the JForex API used by the tools.
+ */
+public interface IOrder {
+
+    enum State {
+        CREATED, OPENED, FILLED, CLOSED, CANCELED
+    }
+
+    String getLabel();
+
+    String getId();
+
+    Instrument getInstrument();
+
+    IEngine.OrderCommand getOrderCommand();
+
+    double getAmount();
+
+    double getRequestedAmount();
+
+    double getOpenPrice();
+
+    double getClosePrice();
+
+    double getStopLossPrice();
+
+    double getTakeProfitPrice();
+
+    State getState();
+
+    boolean isLong();
+
+    void setStopLossPrice(double price) throws JFException;
+
+    void setRequestedAmount(double amount) throws JFException;
+
+    void setTakeProfitPrice(double price) throws JFException;
+
+    void close() throws JFException;
+
+    double getProfitLossInAccountCurrency();
+
+    double getProfitLossInPips();
+
+    double getCommission();
+
+    long getCreationTime();
+
+    long getFillTime();
+
+    long getCloseTime();
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.dukascopy.api;
+
+import java.util.Currency;
+
+/*
+ * Tradable currency pairs and metals, subset of the JForex API used by the tools.
+ */
+public enum Instrument {
+
+    EURUSD("EUR", "USD", 4),
+    GBPUSD("GBP", "USD", 4),
+    USDJPY("USD", "JPY", 2),
+    USDCHF("USD", "CHF", 4),
+    AUDUSD("AUD", "USD", 4),
+    NZDUSD("NZD", "USD", 4),
+    USDCAD("USD", "CAD", 4),
+    EURJPY("EUR", "JPY", 2),
+    EURGBP("EUR", "GBP", 4),
+    EURCHF("EUR", "CHF", 4),
+    GBPJPY("GBP", "JPY", 2),
+    GBPCHF("GBP", "CHF", 4),
+    AUDJPY("AUD", "JPY", 2),
+    CHFJPY("CHF", "JPY", 2),
+    CADJPY("CAD", "JPY", 2),
+    EURAUD("EUR", "AUD", 4),
+    EURCAD("EUR", "CAD", 4),
+    AUDCAD("AUD", "CAD", 4),
+    AUDNZD("AUD", "NZD", 4),
+    EURNZD("EUR", "NZD", 4),
+    GBPAUD("GBP", "AUD", 4),
+    GBPNZD("GBP", "NZD", 4),
+    NZDJPY("NZD", "JPY", 2),
+    NZDCAD("NZD", "CAD", 4),
+    AUDCHF("AUD", "CHF", 4),
+    CADCHF("CAD", "CHF", 4),
+    NZDCHF("NZD", "CHF", 4),
+    GBPCAD("GBP", "CAD", 4),
+    XAUUSD("XAU", "USD", 2),
+    XAGUSD("XAG", "USD", 2),
+    USDSEK("USD", "SEK", 4),
+    USDNOK("USD", "NOK", 4),
+    EURSEK("EUR", "SEK", 4),
+    EURNOK("EUR", "NOK", 4),
+    USDSGD("USD", "SGD", 4),
+    USDHKD("USD", "HKD", 4),
+    EURPLN("EUR", "PLN", 4),
+    USDTRY("USD", "TRY", 4),
+    USDZAR("USD", "ZAR", 4),
+    USDMXN("USD", "MXN", 4),
+    EURHUF("EUR", "HUF", 4),
+    USDCZK("USD", "CZK", 4),
+    USDRUB("USD", "RUB", 4),
+    EURDKK("EUR", "DKK", 4);
+
+    private final String primaryCurrency;
+    private final String secondaryCurrency;
+    private final int pipScale;
+
+    private Instrument(String primaryCurrency, String secondaryCurrency, int pipScale) {
+        this.primaryCurrency = primaryCurrency;
+        this.secondaryCurrency = secondaryCurrency;
+        this.pipScale = pipScale;
+    }
+
+    public Currency getPrimaryCurrency() {
+        return Currency.getInstance(primaryCurrency);
+    }
+
+    public Currency getSecondaryCurrency() {
+        return Currency.getInstance(secondaryCurrency);
+    }
+
+    public int getPipScale() {
+        return pipScale;
+    }
+
+    public double getPipValue() {
+        return (pipScale == 2) ? 0.01 : 0.0001;
+    }
+
+    @Override
+    public String toString() {
+        return primaryCurrency + "/" + secondaryCurrency;
+    }
+
+    /*
+     * Returns the instrument named like "EUR/USD", null if there is none.
+     */
+    public static Instrument fromString(String name) {
+        for (Instrument instrument : values()) {
+            if (instrument.toString().equals(name)) {
+                return instrument;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Returns the instrument named like "USD/EUR" read backwards, null if there is none.
+     */
+    public static Instrument fromInvertedString(String name) {
+        String[] currencies = name.split("/");
+        return fromString(currencies[1] + "/" + currencies[0]);
+    }
+
+}
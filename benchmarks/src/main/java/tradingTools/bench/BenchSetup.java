@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.bench;
+
+import com.dukascopy.api.IBar;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.JFException;
+import com.dukascopy.api.Period;
+import tradingTools.sim.SimBar;
+import tradingTools.sim.SimConsole;
+import tradingTools.sim.SimContext;
+import tradingTools.sim.SimQuotes;
+import tradingTools.sim.SimTick;
+
+/*
+ * Setup shared by the benchmarks: a simulated context with quotes for every
+ * instrument and the history the tools read at start.
+ */
+final class BenchSetup {
+
+    static final long START_TIME = 1393804800000L; //2014-03-03 00:00 GMT
+
+    private BenchSetup() {
+    }
+
+    /*
+     * Context with a quote for every instrument, derived from USD rates.
+     */
+    static SimContext newContext(String accountCurrency) throws JFException {
+        SimContext context = new SimContext(accountCurrency, 10000, SimConsole.quiet());
+        for (Instrument instrument : Instrument.values()) {
+            context.tick(instrument, SimQuotes.getTick(instrument, START_TIME));
+        }
+        //ticks before the start only seed the history, EUR/USD is used by the tools
+        context.tick(Instrument.EURUSD, SimTick.create(START_TIME, 1.37, 1.3701, 1, 1));
+        return context;
+    }
+
+    /*
+     * Adds completed hourly EUR/USD bars before the start and returns the
+     * next price. The bars rise, which keeps the Heikin Ashi candles bullish.
+     */
+    static double addHourBars(SimContext context, int count) throws JFException {
+        double price = 1.35;
+        for (int i = 0; i < count; i++) {
+            IBar hourBar = SimBar.create(START_TIME - (count - i) * 3600000L,
+                    price, price + 0.0012, price - 0.0002, price + 0.001, 100);
+            context.bar(Instrument.EURUSD, Period.ONE_HOUR, hourBar, hourBar);
+            price += 0.0001;
+        }
+        return price;
+    }
+
+    //delivers the messages of order changes made by the operation
+    static double drain(SimContext context) throws JFException {
+        int count = 0;
+        while (context.getSimEngine().pollMessage() != null) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.bench;
+
+import com.dukascopy.api.IBar;
+import com.dukascopy.api.IIndicators;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.JFException;
+import com.dukascopy.api.OfferSide;
+import com.dukascopy.api.Period;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tradingTools.HeikinAshiState;
+import tradingTools.sim.SimContext;
+
+/*
+ * Last Heikin Ashi candle on 200 hourly bars: the indicator call HAWave
+ * used before against the incremental update of HeikinAshiState.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class HeikinAshiBenchmark {
+
+    private IIndicators indicators;
+    private HeikinAshiState heikinAshi;
+    private IBar bar;
+
+    @Setup
+    public void setUp() throws JFException {
+        SimContext context = BenchSetup.newContext("USD");
+        double price = BenchSetup.addHourBars(context, 200);
+        indicators = context.getIndicators();
+        heikinAshi = new HeikinAshiState(1);
+        heikinAshi.seed(0, context.getHistory(), Instrument.EURUSD, Period.ONE_HOUR, 100);
+        bar = new PlainBar(BenchSetup.START_TIME, price, price + 0.0012, price - 0.0002, price + 0.001, 100);
+    }
+
+    @Benchmark
+    public double indicatorLastCandle() throws JFException {
+        return indicators.heikinAshi(Instrument.EURUSD, Period.ONE_HOUR, OfferSide.BID, 1)[1];
+    }
+
+    @Benchmark
+    public double incrementalLastCandle() {
+        heikinAshi.onBar(0, bar, bar);
+        return heikinAshi.getClose(0, OfferSide.BID);
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.bench;
+
+import com.dukascopy.api.IEngine;
+import com.dukascopy.api.IOrder;
+import com.dukascopy.api.Instrument;
+
+/*
+ * Read only copy of an order as a plain object, for the messages passed to
+ * the tools by the benchmarks. Changing it is not supported.
+ */
+final class PlainOrder implements IOrder {
+
+    private final String label;
+    private final String id;
+    private final Instrument instrument;
+    private final IEngine.OrderCommand orderCommand;
+    private final double amount;
+    private final double requestedAmount;
+    private final double openPrice;
+    private final double closePrice;
+    private final double stopLossPrice;
+    private final double takeProfitPrice;
+    private final State state;
+    private final double profitLoss;
+    private final double profitLossInPips;
+    private final double commission;
+    private final long creationTime;
+    private final long fillTime;
+    private final long closeTime;
+
+    PlainOrder(IOrder order) {
+        this.label = order.getLabel();
+        this.id = order.getId();
+        this.instrument = order.getInstrument();
+        this.orderCommand = order.getOrderCommand();
+        this.amount = order.getAmount();
+        this.requestedAmount = order.getRequestedAmount();
+        this.openPrice = order.getOpenPrice();
+        this.closePrice = order.getClosePrice();
+        this.stopLossPrice = order.getStopLossPrice();
+        this.takeProfitPrice = order.getTakeProfitPrice();
+        this.state = order.getState();
+        this.profitLoss = order.getProfitLossInAccountCurrency();
+        this.profitLossInPips = order.getProfitLossInPips();
+        this.commission = order.getCommission();
+        this.creationTime = order.getCreationTime();
+        this.fillTime = order.getFillTime();
+        this.closeTime = order.getCloseTime();
+    }
+
+    @Override
+    public String getLabel() {
+        return label;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public Instrument getInstrument() {
+        return instrument;
+    }
+
+    @Override
+    public IEngine.OrderCommand getOrderCommand() {
+        return orderCommand;
+    }
+
+    @Override
+    public double getAmount() {
+        return amount;
+    }
+
+    @Override
+    public double getRequestedAmount() {
+        return requestedAmount;
+    }
+
+    @Override
+    public double getOpenPrice() {
+        return openPrice;
+    }
+
+    @Override
+    public double getClosePrice() {
+        return closePrice;
+    }
+
+    @Override
+    public double getStopLossPrice() {
+        return stopLossPrice;
+    }
+
+    @Override
+    public double getTakeProfitPrice() {
+        return takeProfitPrice;
+    }
+
+    @Override
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public boolean isLong() {
+        return orderCommand.isLong();
+    }
+
+    @Override
+    public void setStopLossPrice(double price) {
+        throw new UnsupportedOperationException("Read only order " + label);
+    }
+
+    @Override
+    public void setRequestedAmount(double amount) {
+        throw new UnsupportedOperationException("Read only order " + label);
+    }
+
+    @Override
+    public void setTakeProfitPrice(double price) {
+        throw new UnsupportedOperationException("Read only order " + label);
+    }
+
+    @Override
+    public void close() {
+        throw new UnsupportedOperationException("Read only order " + label);
+    }
+
+    @Override
+    public double getProfitLossInAccountCurrency() {
+        return profitLoss;
+    }
+
+    @Override
+    public double getProfitLossInPips() {
+        return profitLossInPips;
+    }
+
+    @Override
+    public double getCommission() {
+        return commission;
+    }
+
+    @Override
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    @Override
+    public long getFillTime() {
+        return fillTime;
+    }
+
+    @Override
+    public long getCloseTime() {
+        return closeTime;
+    }
+
+}
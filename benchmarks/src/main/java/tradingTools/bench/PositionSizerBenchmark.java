@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.bench;
+
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.JFException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tradingTools.PositionSizer;
+import tradingTools.QuoteCache;
+import tradingTools.sim.SimContext;
+
+/*
+ * PositionSizer.getPositionSize without conversion (EUR/USD in USD), with
+ * one conversion leg (GBP/JPY in USD) and with two (EUR/GBP in SEK).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class PositionSizerBenchmark {
+
+    @Param({"EURUSD USD", "GBPJPY USD", "EURGBP SEK"})
+    public String market;
+
+    private PositionSizer positionSizer;
+    private Instrument pair;
+    private double stopLossPips;
+
+    @Setup
+    public void setUp() throws JFException {
+        String[] fields = market.split(" ");
+        pair = Instrument.valueOf(fields[0]);
+        SimContext context = BenchSetup.newContext(fields[1]);
+        QuoteCache quoteCache = new QuoteCache(context.getHistory());
+        for (Instrument instrument : Instrument.values()) {
+            quoteCache.onTick(instrument, context.getHistory().getLastTick(instrument));
+        }
+        positionSizer = new PositionSizer(quoteCache, fields[1]);
+        stopLossPips = 50;
+    }
+
+    @Benchmark
+    public double getPositionSize() throws JFException {
+        //vary the input so the call cannot be hoisted
+        stopLossPips = (stopLossPips < 60) ? stopLossPips + 0.1 : 50;
+        return positionSizer.getPositionSize(pair, true, stopLossPips, 100);
+    }
+
+}
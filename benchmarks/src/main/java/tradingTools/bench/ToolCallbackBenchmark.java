@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.bench;
+
+import com.dukascopy.api.IBar;
+import com.dukascopy.api.IEngine;
+import com.dukascopy.api.IMessage;
+import com.dukascopy.api.IOrder;
+import com.dukascopy.api.IStrategy;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.JFException;
+import com.dukascopy.api.Period;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tradingTools.sim.SimContext;
+import tradingTools.sim.SimTick;
+import tradingTools.sim.StrategyConfig;
+
+/*
+ * Callbacks of the tools on the simulated platform:
+ * the one minute onBar with the B.E. check and with the pending order
+ * resize, onMessage for own, foreign and order-less messages, onMessage of
+ * an account busy with orders of other strategies and the Heikin Ashi
+ * decision of HAWave. Messages, bars and the quotes cached by the tools are
+ * plain objects (see PlainOrder), the orders the tools look up in the engine
+ * are still harness objects.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ToolCallbackBenchmark {
+
+    private static final long START_TIME = BenchSetup.START_TIME;
+
+    /*
+     * Replaces the quotes cached by the strategy with plain ticks.
+     */
+    static void usePlainTicks(SimContext context, IStrategy strategy) throws JFException {
+        for (Instrument instrument : Instrument.values()) {
+            strategy.onTick(instrument, new PlainTick(context.getHistory().getLastTick(instrument)));
+        }
+        BenchSetup.drain(context);
+    }
+
+    @State(Scope.Thread)
+    public static class BreakEvenCheck {
+
+        SimContext context;
+        IStrategy strategy;
+        IBar bar;
+
+        @Setup
+        public void setUp() throws Exception {
+            context = BenchSetup.newContext("USD");
+            strategy = StrategyConfig.create("ConstantRiskLimitTool");
+            StrategyConfig.set(strategy, "isBuyOrder=true");
+            //limit above the ask fills on the next tick
+            StrategyConfig.set(strategy, "entryLimitPrice=1.3705");
+            StrategyConfig.set(strategy, "moveSLBreakEven90=true");
+            StrategyConfig.set(strategy, "resizeOnTick=true");
+            context.start(strategy, START_TIME);
+            context.tick(Instrument.EURUSD, SimTick.create(START_TIME + 1000, 1.37, 1.3701, 1, 1));
+            usePlainTicks(context, strategy);
+            bar = new PlainBar(START_TIME, 1.37, 1.3702, 1.3699, 1.37, 10);
+        }
+
+        @TearDown
+        public void tearDown() throws JFException {
+            context.finish();
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class PendingResize {
+
+        SimContext context;
+        IStrategy strategy;
+        IBar bar;
+
+        @Setup
+        public void setUp() throws Exception {
+            context = BenchSetup.newContext("USD");
+            strategy = StrategyConfig.create("ConstantRiskLimitTool");
+            StrategyConfig.set(strategy, "isBuyOrder=true");
+            StrategyConfig.set(strategy, "entryLimitPrice=1.3000");
+            context.start(strategy, START_TIME);
+            usePlainTicks(context, strategy);
+            bar = new PlainBar(START_TIME, 1.37, 1.3702, 1.3699, 1.37, 10);
+        }
+
+        @TearDown
+        public void tearDown() throws JFException {
+            context.finish();
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class Messages {
+
+        SimContext context;
+        IStrategy strategy;
+        IMessage[] messages;
+        int next;
+
+        @Setup
+        public void setUp() throws Exception {
+            context = BenchSetup.newContext("USD");
+            strategy = StrategyConfig.create("ConstantRiskLimitTool");
+            StrategyConfig.set(strategy, "isBuyOrder=true");
+            StrategyConfig.set(strategy, "entryLimitPrice=1.3000");
+            context.start(strategy, START_TIME);
+            usePlainTicks(context, strategy);
+            IOrder own = new PlainOrder(context.getSimEngine().getOrders().get(0));
+            IOrder other = new PlainOrder(context.getSimEngine().submitOrder("manual", Instrument.EURUSD,
+                    IEngine.OrderCommand.BUYLIMIT, 0.01, 1.2));
+            BenchSetup.drain(context);
+            //own order, order of another strategy, filtered and printed messages without order
+            messages = new IMessage[] {
+                new PlainMessage(IMessage.Type.ORDER_CHANGED_OK, own, null, START_TIME),
+                new PlainMessage(IMessage.Type.ORDER_CHANGED_OK, other, null, START_TIME),
+                new PlainMessage(IMessage.Type.INSTRUMENT_STATUS, null, null, START_TIME),
+                new PlainMessage(IMessage.Type.NOTIFICATION, null, "Notification", START_TIME)
+            };
+        }
+
+        @TearDown
+        public void tearDown() throws JFException {
+            context.finish();
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class BusyAccount {
+
+        SimContext context;
+        IStrategy strategy;
+        IMessage[] messages;
+        int next;
+
+        @Setup
+        public void setUp() throws Exception {
+            context = BenchSetup.newContext("USD");
+            strategy = StrategyConfig.create("ConstRiskMarketScaleOut");
+            StrategyConfig.set(strategy, "isBuyOrder=true");
+            StrategyConfig.set(strategy, "stopLossPrice=1.3650");
+            StrategyConfig.set(strategy, "target1Price=1.3750");
+            StrategyConfig.set(strategy, "target2Price=1.3800");
+            StrategyConfig.set(strategy, "constantCurrencyRisk=100");
+            context.start(strategy, START_TIME);
+            usePlainTicks(context, strategy);
+            IOrder own = new PlainOrder(context.getSimEngine().getOrders().get(0));
+            IOrder[] others = new IOrder[64];
+            for (int i = 0; i < others.length; i++) {
+                others[i] = new PlainOrder(context.getSimEngine().submitOrder("manual" + i, Instrument.EURUSD,
+                        IEngine.OrderCommand.BUYLIMIT, 0.01, 1.2));
+            }
+            BenchSetup.drain(context);
+            //mostly messages of other orders in the account, one in 16 of an own order
+            IMessage.Type[] types = {IMessage.Type.ORDER_FILL_OK, IMessage.Type.ORDER_CHANGED_OK,
+                IMessage.Type.ORDER_CLOSE_OK};
+            messages = new IMessage[128];
+            for (int i = 0; i < messages.length; i++) {
+                if (i % 16 == 0) {
+                    messages[i] = new PlainMessage(IMessage.Type.ORDER_CHANGED_OK, own, null, START_TIME);
+                } else if (i % 4 == 1) {
+                    messages[i] = new PlainMessage(IMessage.Type.INSTRUMENT_STATUS, null, null, START_TIME);
+                } else {
+                    messages[i] = new PlainMessage(types[i % types.length], others[i % others.length], null,
+                            START_TIME);
+                }
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws JFException {
+            context.finish();
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class HeikinAshiDecision {
+
+        SimContext context;
+        IStrategy strategy;
+        IBar bar;
+
+        @Setup
+        public void setUp() throws Exception {
+            context = BenchSetup.newContext("USD");
+            double price = BenchSetup.addHourBars(context, 200);
+            strategy = StrategyConfig.create("HAWave");
+            StrategyConfig.set(strategy, "isBuyOrder=true");
+            StrategyConfig.set(strategy, "stopLossPrice=1.3650");
+            context.start(strategy, START_TIME);
+            usePlainTicks(context, strategy);
+            bar = new PlainBar(START_TIME, price, price + 0.0012, price - 0.0002, price + 0.001, 100);
+        }
+
+        @TearDown
+        public void tearDown() throws JFException {
+            context.finish();
+        }
+
+    }
+
+    @Benchmark
+    public double onBarBreakEvenCheck(BreakEvenCheck state) throws JFException {
+        state.strategy.onBar(Instrument.EURUSD, Period.ONE_MIN, state.bar, state.bar);
+        return BenchSetup.drain(state.context);
+    }
+
+    @Benchmark
+    public double onBarPendingResize(PendingResize state) throws JFException {
+        state.strategy.onBar(Instrument.EURUSD, Period.ONE_MIN, state.bar, state.bar);
+        return BenchSetup.drain(state.context);
+    }
+
+    @Benchmark
+    public int onMessage(Messages state) throws JFException {
+        state.strategy.onMessage(state.messages[state.next]);
+        state.next = (state.next + 1) & 3;
+        return state.next;
+    }
+
+    @Benchmark
+    public int onMessageBusyAccount(BusyAccount state) throws JFException {
+        state.strategy.onMessage(state.messages[state.next]);
+        state.next = (state.next + 1) & 127;
+        return state.next;
+    }
+
+    @Benchmark
+    public double onBarHeikinAshiDecision(HeikinAshiDecision state) throws JFException {
+        state.strategy.onBar(Instrument.EURUSD, Period.ONE_HOUR, state.bar, state.bar);
+        return BenchSetup.drain(state.context);
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/*
+ * Implements a JForex API interface on top of a plain simulation object.
+ * Every interface method is forwarded to the public method of the target
+ * with the same name and parameter types, methods the simulation does not
+ * provide throw UnsupportedOperationException. This way the harness only
+ * implements the subset of the API used by the tools and keeps working
+ * with any version of the platform interfaces.
+ */
+public final class ApiProxy implements InvocationHandler {
+
+    //resolved target methods per interface and target class, never modified
+    //once published so that proxies can be used from many threads without locking
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, Map<Method, Method>>> METHOD_CACHE =
+            new ConcurrentHashMap<Class<?>, ConcurrentMap<Class<?>, Map<Method, Method>>>();
+
+    private final Object target;
+    private final Map<Method, Method> methods;
+
+    private ApiProxy(Class<?> api, Object target) {
+        this.target = target;
+        this.methods = getMethods(api, target.getClass());
+    }
+
+    public static <T> T wrap(Class<T> api, Object target) {
+        Object proxy = Proxy.newProxyInstance(api.getClassLoader(), new Class<?>[] {api}, new ApiProxy(api, target));
+        return api.cast(proxy);
+    }
+
+    /*
+     * Returns the simulation object behind a proxy created by wrap.
+     */
+    public static Object unwrap(Object proxy) {
+        if (proxy != null && Proxy.isProxyClass(proxy.getClass())) {
+            InvocationHandler handler = Proxy.getInvocationHandler(proxy);
+            if (handler instanceof ApiProxy) {
+                return ((ApiProxy) handler).target;
+            }
+        }
+        return proxy;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            return target.toString();
+        }
+
+        Method targetMethod = methods.get(method);
+        if (targetMethod == null) {
+            throw new UnsupportedOperationException(method.getDeclaringClass().getSimpleName()
+                    + "." + method.getName() + " is not supported by the simulation");
+        }
+        try {
+            return targetMethod.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Map<Method, Method> getMethods(Class<?> api, Class<?> targetClass) {
+        ConcurrentMap<Class<?>, Map<Method, Method>> apiMethods = METHOD_CACHE.get(api);
+        if (apiMethods == null) {
+            METHOD_CACHE.putIfAbsent(api, new ConcurrentHashMap<Class<?>, Map<Method, Method>>());
+            apiMethods = METHOD_CACHE.get(api);
+        }
+        Map<Method, Method> methods = apiMethods.get(targetClass);
+        if (methods == null) {
+            methods = new HashMap<Method, Method>();
+            for (Method method : api.getMethods()) {
+                try {
+                    Method targetMethod = targetClass.getMethod(method.getName(), method.getParameterTypes());
+                    targetMethod.setAccessible(true);
+                    methods.put(method, targetMethod);
+                } catch (NoSuchMethodException e) {
+                    //unsupported, reported when called
+                }
+            }
+            //concurrent resolutions are equal, keep the first one
+            apiMethods.putIfAbsent(targetClass, methods);
+            methods = apiMethods.get(targetClass);
+        }
+        return methods;
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.IBar;
+import com.dukascopy.api.Period;
+
+/*
+ * Builds bid and ask bars of one instrument and period from ticks.
+ * Bars are aligned to multiples of the period interval since the epoch,
+ * periods without ticks produce no bar.
+ */
+final class BarBuilder {
+
+    private final Period period;
+    private final long interval;
+    private long barStart = Long.MIN_VALUE;
+    private double askOpen, askHigh, askLow, askClose, askVolume;
+    private double bidOpen, bidHigh, bidLow, bidClose, bidVolume;
+    private IBar completedAskBar;
+    private IBar completedBidBar;
+
+    BarBuilder(Period period) {
+        this.period = period;
+        this.interval = period.getInterval();
+    }
+
+    Period getPeriod() {
+        return period;
+    }
+
+    IBar getCompletedAskBar() {
+        return completedAskBar;
+    }
+
+    IBar getCompletedBidBar() {
+        return completedBidBar;
+    }
+
+    /*
+     * Adds a tick and returns true if it completed the previous bar, which
+     * is then available through the getCompleted methods.
+     */
+    boolean onTick(long time, double bid, double ask, double bidVol, double askVol) {
+        long start = time - time % interval;
+        boolean completed = false;
+        if (start != barStart) {
+            if (barStart != Long.MIN_VALUE) {
+                completedAskBar = SimBar.create(barStart, askOpen, askHigh, askLow, askClose, askVolume);
+                completedBidBar = SimBar.create(barStart, bidOpen, bidHigh, bidLow, bidClose, bidVolume);
+                completed = true;
+            }
+            barStart = start;
+            askOpen = askHigh = askLow = ask;
+            bidOpen = bidHigh = bidLow = bid;
+            askVolume = 0;
+            bidVolume = 0;
+        }
+        askHigh = Math.max(askHigh, ask);
+        askLow = Math.min(askLow, ask);
+        askClose = ask;
+        askVolume += askVol;
+        bidHigh = Math.max(bidHigh, bid);
+        bidLow = Math.min(bidLow, bid);
+        bidClose = bid;
+        bidVolume += bidVol;
+        return completed;
+    }
+
+}
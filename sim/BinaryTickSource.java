@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.Instrument;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/*
+ * Reads the day files of one instrument from a BinaryTickStore in time
+ * order. Each file is memory mapped and decoded in place, so apart from
+ * the mapping per day no objects are created while reading ticks.
+ */
+public final class BinaryTickSource implements TickSource {
+
+    private final Instrument instrument;
+    private final File[] files;
+    private int fileIndex;
+    private MappedByteBuffer buffer;
+    private int remaining;
+    private double scale;
+    private long time;
+    private long bidPipettes;
+    private double bid;
+    private double ask;
+    private double bidVolume;
+    private double askVolume;
+
+    public BinaryTickSource(BinaryTickStore store, Instrument instrument) throws IOException {
+        this(store, instrument, null, null);
+    }
+
+    /*
+     * Reads the days from fromDay to toDay inclusive (yyyy-MM-dd), null for
+     * an open range.
+     */
+    public BinaryTickSource(BinaryTickStore store, Instrument instrument, String fromDay, String toDay)
+            throws IOException {
+        this.instrument = instrument;
+        File[] dayFiles = store.getDirectory(instrument).listFiles();
+        if (dayFiles == null) {
+            throw new IOException("No tick files for " + instrument + " in " + store.getDirectory(instrument));
+        }
+        int count = 0;
+        for (File file : dayFiles) {
+            String name = file.getName();
+            if (name.endsWith(BinaryTickStore.EXTENSION)) {
+                String day = name.substring(0, name.length() - BinaryTickStore.EXTENSION.length());
+                if ((fromDay == null || day.compareTo(fromDay) >= 0) && (toDay == null || day.compareTo(toDay) <= 0)) {
+                    dayFiles[count++] = file;
+                }
+            }
+        }
+        //ISO dates sort in time order
+        this.files = Arrays.copyOf(dayFiles, count);
+        Arrays.sort(this.files);
+    }
+
+    @Override
+    public Instrument getInstrument() {
+        return instrument;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (remaining == 0) {
+            if (fileIndex == files.length) {
+                buffer = null;
+                return false;
+            }
+            map(files[fileIndex++]);
+        }
+        remaining--;
+        time += unzigzag(readVarLong());
+        bidPipettes += unzigzag(readVarLong());
+        long spread = unzigzag(readVarLong());
+        //division by the power of ten restores the exact decimal price
+        bid = bidPipettes / scale;
+        ask = (bidPipettes + spread) / scale;
+        askVolume = readVarLong() / BinaryTickStore.VOLUME_SCALE;
+        bidVolume = readVarLong() / BinaryTickStore.VOLUME_SCALE;
+        return true;
+    }
+
+    @Override
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public double getBid() {
+        return bid;
+    }
+
+    @Override
+    public double getAsk() {
+        return ask;
+    }
+
+    @Override
+    public double getBidVolume() {
+        return bidVolume;
+    }
+
+    @Override
+    public double getAskVolume() {
+        return askVolume;
+    }
+
+    @Override
+    public void close() {
+        buffer = null;
+        remaining = 0;
+        fileIndex = files.length;
+    }
+
+    private void map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            //the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+        if (buffer.limit() < BinaryTickStore.HEADER_SIZE || buffer.getInt() != BinaryTickStore.MAGIC) {
+            throw new IOException("Not a tick file: " + file);
+        }
+        int version = buffer.getInt();
+        if (version != BinaryTickStore.VERSION) {
+            throw new IOException("Unsupported tick file version " + version + ": " + file);
+        }
+        scale = buffer.getInt();
+        time = buffer.getLong();
+        remaining = buffer.getInt();
+        bidPipettes = 0;
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (!buffer.hasRemaining()) {
+                throw new IOException("Truncated tick file: " + files[fileIndex - 1]);
+            }
+            b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.Instrument;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/*
+ * Binary tick files of the replay path, one file per instrument and GMT
+ * day at <root>/<INSTRUMENT>/<yyyy-MM-dd>.tck.
+ * A file starts with a header (magic, version, pipette scale, day start,
+ * tick count) followed by variable length records: time delta to the
+ * previous tick in ms, bid delta in pipettes, spread in pipettes, ask and
+ * bid volume in hundredths. Signed values are zigzag encoded, so a tick
+ * usually takes 6 to 10 bytes instead of about 50 in the CSV export.
+ * Prices are stored exactly, volumes are rounded to 0.01.
+ */
+public final class BinaryTickStore {
+
+    static final int MAGIC = 0x4a46544b; //"JFTK"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final double VOLUME_SCALE = 100;
+    static final String EXTENSION = ".tck";
+
+    private static final long DAY = 86400000L;
+
+    private final File root;
+
+    public BinaryTickStore(File root) {
+        this.root = root;
+    }
+
+    public File getDirectory(Instrument instrument) {
+        return new File(root, getName(instrument));
+    }
+
+    public File getFile(Instrument instrument, long dayStart) {
+        return new File(getDirectory(instrument), formatDay(dayStart) + EXTENSION);
+    }
+
+    static String getName(Instrument instrument) {
+        return instrument.getPrimaryCurrency().getCurrencyCode() + instrument.getSecondaryCurrency().getCurrencyCode();
+    }
+
+    static String formatDay(long dayStart) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(dayStart));
+    }
+
+    /*
+     * Number of pipettes per price unit, e.g. 100000 for EUR/USD.
+     */
+    static int getPipetteScale(Instrument instrument) {
+        int scale = 10;
+        for (int n = 0; n < instrument.getPipScale(); n++) {
+            scale *= 10;
+        }
+        return scale;
+    }
+
+    /*
+     * Converts all ticks of a source into day files, replacing existing
+     * files of the same days. Returns the number of ticks written.
+     */
+    public long write(TickSource source) throws IOException {
+        Instrument instrument = source.getInstrument();
+        File directory = getDirectory(instrument);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        int scale = getPipetteScale(instrument);
+        ByteArrayOutputStream records = new ByteArrayOutputStream(1 << 20);
+        long dayStart = 0;
+        long lastTime = 0;
+        long lastBid = 0;
+        int count = 0;
+        long total = 0;
+        while (source.next()) {
+            long time = source.getTime();
+            if (total == 0 || time - dayStart >= DAY || time < dayStart) {
+                if (count > 0) {
+                    writeFile(getFile(instrument, dayStart), scale, dayStart, count, records);
+                }
+                dayStart = time - time % DAY;
+                lastTime = dayStart;
+                lastBid = 0;
+                count = 0;
+                records.reset();
+            }
+            long bid = Math.round(source.getBid() * scale);
+            long ask = Math.round(source.getAsk() * scale);
+            writeVarLong(records, zigzag(time - lastTime));
+            writeVarLong(records, zigzag(bid - lastBid));
+            writeVarLong(records, zigzag(ask - bid));
+            writeVarLong(records, Math.round(source.getAskVolume() * VOLUME_SCALE));
+            writeVarLong(records, Math.round(source.getBidVolume() * VOLUME_SCALE));
+            lastTime = time;
+            lastBid = bid;
+            count++;
+            total++;
+        }
+        if (count > 0) {
+            writeFile(getFile(instrument, dayStart), scale, dayStart, count, records);
+        }
+        return total;
+    }
+
+    private static void writeFile(File file, int scale, long dayStart, int count,
+            ByteArrayOutputStream records) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(scale).putLong(dayStart).putInt(count);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(header.array());
+            records.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /*
+     * Usage: BinaryTickStore <root> <instrument> <ticks.csv>...
+     * Converts Dukascopy tick CSV exports into the binary store.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: BinaryTickStore <root> <instrument> <ticks.csv>...");
+            System.exit(2);
+        }
+        BinaryTickStore store = new BinaryTickStore(new File(args[0]));
+        Instrument instrument = StrategyConfig.parseInstrument(args[1]);
+        for (int i = 2; i < args.length; i++) {
+            long start = System.nanoTime();
+            CsvTickSource source = new CsvTickSource(instrument, args[i]);
+            long count;
+            try {
+                count = store.write(source);
+            } finally {
+                source.close();
+            }
+            System.out.printf("%s: %d ticks converted in %.3f s%n", args[i], count, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+}
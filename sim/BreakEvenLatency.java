@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.IStrategy;
+import com.dukascopy.api.Period;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Measures how much earlier the stop loss is moved to break even with the
+ * tick trigger than with the one minute bar check alone.
+ * The same ticks are replayed twice, with breakEvenOnTick on and off, and
+ * the stop loss change times of the orders are compared in simulated time.
+ *
+ * Usage: BreakEvenLatency <strategy> <instrument> <ticks> [<instrument> <ticks>...] [name=value...]
+ */
+public final class BreakEvenLatency {
+
+    private static final double BALANCE = 10000;
+
+    private BreakEvenLatency() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: BreakEvenLatency <strategy> <instrument> <ticks> [<instrument> <ticks>...]"
+                    + " [name=value...]");
+            System.exit(2);
+        }
+        List<TickArray> ticks = new ArrayList<TickArray>();
+        int i = 1;
+        while (i + 1 < args.length && args[i].indexOf('=') < 0) {
+            TickSource source = ReplayDriver.openSource(args[i], args[i + 1]);
+            try {
+                ticks.add(TickArray.load(source));
+            } finally {
+                source.close();
+            }
+            i += 2;
+        }
+        List<String> assignments = new ArrayList<String>();
+        for (; i < args.length; i++) {
+            assignments.add(args[i]);
+        }
+
+        SimContext onTick = replay(args[0], ticks, assignments, true);
+        SimContext onBar = replay(args[0], ticks, assignments, false);
+        List<SimOrder> tickOrders = onTick.getSimEngine().getSubmittedOrders();
+        List<SimOrder> barOrders = onBar.getSimEngine().getSubmittedOrders();
+
+        long totalDelay = 0;
+        long maxDelay = 0;
+        int moved = 0;
+        for (int n = 0; n < Math.min(tickOrders.size(), barOrders.size()); n++) {
+            long tickTime = tickOrders.get(n).getStopLossTime();
+            long barTime = barOrders.get(n).getStopLossTime();
+            if (tickTime == 0) {
+                System.out.println("Order " + (n + 1) + ": SL not moved on tick"
+                        + ((barTime != 0) ? ", moved on bar" : ""));
+            } else if (barTime == 0) {
+                System.out.println("Order " + (n + 1) + ": SL moved on tick, the order was closed before the bar check");
+            } else {
+                long delay = barTime - tickTime;
+                System.out.println("Order " + (n + 1) + ": SL moved " + delay + " ms earlier on tick");
+                totalDelay += delay;
+                maxDelay = Math.max(maxDelay, delay);
+                moved++;
+            }
+        }
+        if (moved > 0) {
+            System.out.println("Mean gain: " + (totalDelay / moved) + " ms, max gain: " + maxDelay + " ms");
+        }
+        System.out.printf("Net profit on tick: %.2f, on bar: %.2f%n",
+                onTick.getSimAccount().getEquity() - BALANCE, onBar.getSimAccount().getEquity() - BALANCE);
+    }
+
+    private static SimContext replay(String strategyClass, List<TickArray> ticks, List<String> assignments,
+            boolean breakEvenOnTick) throws Exception {
+        IStrategy strategy = StrategyConfig.create(strategyClass);
+        for (String assignment : assignments) {
+            StrategyConfig.set(strategy, assignment);
+        }
+        StrategyConfig.set(strategy, "breakEvenOnTick", Boolean.toString(breakEvenOnTick));
+        SimContext context = new SimContext("USD", BALANCE, SimConsole.quiet());
+        List<Period> periods = new ArrayList<Period>();
+        periods.add(Period.ONE_MIN);
+        Object period = StrategyConfig.get(strategy, "period");
+        if (period instanceof Period && period != Period.ONE_MIN) {
+            periods.add((Period) period);
+        }
+        TickSource[] sources = new TickSource[ticks.size()];
+        for (int n = 0; n < sources.length; n++) {
+            sources[n] = ticks.get(n).newSource();
+        }
+        new ReplayDriver(context, periods.toArray(new Period[periods.size()])).run(strategy, sources);
+        return context;
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.Instrument;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/*
+ * Reads a tick export of the Dukascopy historical data feed, i.e. lines of
+ * "Gmt time,Ask,Bid,AskVolume,BidVolume" with the time formatted as
+ * "dd.MM.yyyy HH:mm:ss.SSS". A header line is skipped.
+ */
+public final class CsvTickSource implements TickSource {
+
+    private final Instrument instrument;
+    private final BufferedReader reader;
+    private final Calendar calendar;
+    //epoch millis of the last parsed day, the date part rarely changes
+    private int lastDay = -1;
+    private int lastMonth = -1;
+    private int lastYear = -1;
+    private long lastDayMillis;
+    private long time;
+    private double bid;
+    private double ask;
+    private double bidVolume;
+    private double askVolume;
+
+    public CsvTickSource(Instrument instrument, String fileName) throws IOException {
+        this.instrument = instrument;
+        this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(fileName),
+                Charset.forName("US-ASCII")), 1 << 16);
+        this.calendar = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+    }
+
+    @Override
+    public Instrument getInstrument() {
+        return instrument;
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.length() > 0 && Character.isDigit(line.charAt(0))) {
+                parse(line);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public double getBid() {
+        return bid;
+    }
+
+    @Override
+    public double getAsk() {
+        return ask;
+    }
+
+    @Override
+    public double getBidVolume() {
+        return bidVolume;
+    }
+
+    @Override
+    public double getAskVolume() {
+        return askVolume;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void parse(String line) throws IOException {
+        //dd.MM.yyyy HH:mm:ss.SSS
+        int day = digits(line, 0, 2);
+        int month = digits(line, 3, 2);
+        int year = digits(line, 6, 4);
+        if (day != lastDay || month != lastMonth || year != lastYear) {
+            calendar.clear();
+            calendar.set(year, month - 1, day);
+            lastDayMillis = calendar.getTimeInMillis();
+            lastDay = day;
+            lastMonth = month;
+            lastYear = year;
+        }
+        time = lastDayMillis + digits(line, 11, 2) * 3600000L + digits(line, 14, 2) * 60000L
+                + digits(line, 17, 2) * 1000L + digits(line, 20, 3);
+
+        int start = line.indexOf(',', 23) + 1;
+        int end = line.indexOf(',', start);
+        ask = Double.parseDouble(line.substring(start, end));
+        start = end + 1;
+        end = line.indexOf(',', start);
+        bid = Double.parseDouble(line.substring(start, end));
+        start = end + 1;
+        end = line.indexOf(',', start);
+        askVolume = Double.parseDouble(line.substring(start, end));
+        bidVolume = Double.parseDouble(line.substring(end + 1).trim());
+    }
+
+    private static int digits(String line, int offset, int count) throws IOException {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IOException("Invalid tick time: " + line);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.IStrategy;
+import com.dukascopy.api.ITick;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.JFException;
+import com.dukascopy.api.Period;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Replays recorded ticks through a SimContext.
+ * The ticks of all sources are merged in time order, every tick is passed
+ * to the context and feeds one bar builder per instrument and period, so
+ * the strategy receives onTick and the derived onBar callbacks just like
+ * on the platform. By default ticks are replayed as fast as possible, a
+ * speed greater than zero paces the replay against the wall clock
+ * (1 is real time, 60 replays one hour per minute).
+ */
+public final class ReplayDriver {
+
+    private final SimContext context;
+    private final Period[] periods;
+    private double speed;
+
+    public ReplayDriver(SimContext context, Period... periods) {
+        this.context = context;
+        this.periods = periods.clone();
+    }
+
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    public ReplayStats run(IStrategy strategy, TickSource... sources) throws JFException, IOException {
+        int count = sources.length;
+        BarBuilder[][] builders = new BarBuilder[count][periods.length];
+        boolean[] active = new boolean[count];
+        ReplayStats stats = new ReplayStats();
+
+        //the first tick of every source seeds the history before the start
+        long startTime = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            for (int p = 0; p < periods.length; p++) {
+                builders[i][p] = new BarBuilder(periods[p]);
+            }
+            active[i] = sources[i].next();
+            if (active[i]) {
+                startTime = Math.min(startTime, sources[i].getTime());
+                context.tick(sources[i].getInstrument(), createTick(sources[i]));
+            }
+        }
+        if (startTime == Long.MAX_VALUE) {
+            return stats;
+        }
+
+        stats.firstTime = startTime;
+        long wallStart = System.nanoTime();
+        context.start(strategy, startTime);
+        while (!context.isStopped()) {
+            //k-way merge, the number of sources is small
+            int next = -1;
+            for (int i = 0; i < count; i++) {
+                if (active[i] && (next < 0 || sources[i].getTime() < sources[next].getTime())) {
+                    next = i;
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+
+            TickSource source = sources[next];
+            long time = source.getTime();
+            if (speed > 0) {
+                pace(wallStart, (time - startTime) / speed);
+            }
+            Instrument instrument = source.getInstrument();
+            for (BarBuilder builder : builders[next]) {
+                //a tick of the next period completes the bar before it is seen
+                if (builder.onTick(time, source.getBid(), source.getAsk(),
+                        source.getBidVolume(), source.getAskVolume())) {
+                    context.bar(instrument, builder.getPeriod(),
+                            builder.getCompletedAskBar(), builder.getCompletedBidBar());
+                    stats.bars++;
+                }
+            }
+            context.tick(instrument, createTick(source));
+            stats.ticks++;
+            stats.lastTime = time;
+            active[next] = source.next();
+        }
+        if (!context.isStopped()) {
+            context.finish();
+        }
+        stats.wallNanos = System.nanoTime() - wallStart;
+        return stats;
+    }
+
+    private static ITick createTick(TickSource source) {
+        return SimTick.create(source.getTime(), source.getBid(), source.getAsk(),
+                source.getBidVolume(), source.getAskVolume());
+    }
+
+    private static void pace(long wallStart, double simulatedMillis) {
+        long wait = (long) (simulatedMillis * 1e6) - (System.nanoTime() - wallStart);
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /*
+     * Opens a CSV export or the root directory of a BinaryTickStore.
+     */
+    static TickSource openSource(String instrumentName, String path) throws IOException {
+        Instrument instrument = StrategyConfig.parseInstrument(instrumentName);
+        File file = new File(path);
+        if (file.isDirectory()) {
+            return new BinaryTickSource(new BinaryTickStore(file), instrument);
+        }
+        return new CsvTickSource(instrument, path);
+    }
+
+    /*
+     * Usage: ReplayDriver <strategy> <instrument> <ticks> [<instrument> <ticks>...]
+     *            [name=value...] [--speed=N] [--account=USD] [--balance=N] [--periods=ONE_MIN,...] [--quiet]
+     * ticks is either a CSV export or the root directory of a BinaryTickStore.
+     * The strategy is the class name of one of the tools, name=value sets
+     * its parameters. Bars are built for ONE_MIN and the period parameter
+     * of the strategy unless --periods is given.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: ReplayDriver <strategy> <instrument> <ticks> [<instrument> <ticks>...]"
+                    + " [name=value...] [--speed=N] [--account=USD] [--balance=N] [--periods=ONE_MIN,...] [--quiet]");
+            System.exit(2);
+        }
+        IStrategy strategy = StrategyConfig.create(args[0]);
+        List<TickSource> sources = new ArrayList<TickSource>();
+        List<Period> periods = new ArrayList<Period>();
+        double speed = 0;
+        String account = "USD";
+        double balance = 10000;
+        boolean quiet = false;
+
+        int i = 1;
+        while (i + 1 < args.length && args[i].indexOf('=') < 0 && !args[i].startsWith("--")) {
+            sources.add(openSource(args[i], args[i + 1]));
+            i += 2;
+        }
+        for (; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--speed=")) {
+                speed = Double.parseDouble(arg.substring(8));
+            } else if (arg.startsWith("--account=")) {
+                account = arg.substring(10);
+            } else if (arg.startsWith("--balance=")) {
+                balance = Double.parseDouble(arg.substring(10));
+            } else if (arg.startsWith("--periods=")) {
+                for (String name : arg.substring(10).split(",")) {
+                    periods.add(StrategyConfig.parsePeriod(name.trim()));
+                }
+            } else if (arg.equals("--quiet")) {
+                quiet = true;
+            } else {
+                StrategyConfig.set(strategy, arg);
+            }
+        }
+        if (periods.isEmpty()) {
+            periods.add(Period.ONE_MIN);
+            Object period = StrategyConfig.get(strategy, "period");
+            if (period instanceof Period && !periods.contains(period)) {
+                periods.add((Period) period);
+            }
+        }
+
+        SimConsole console = quiet ? SimConsole.quiet() : new SimConsole(System.out, System.err);
+        SimContext context = new SimContext(account, balance, console);
+        ReplayDriver driver = new ReplayDriver(context, periods.toArray(new Period[periods.size()]));
+        driver.setSpeed(speed);
+        ReplayStats stats;
+        try {
+            stats = driver.run(strategy, sources.toArray(new TickSource[sources.size()]));
+        } finally {
+            for (TickSource source : sources) {
+                source.close();
+            }
+        }
+        System.out.println(stats);
+        System.out.println("Balance: " + context.getSimAccount().getBalance()
+                + " equity: " + context.getSimAccount().getEquity());
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+/*
+ * Counters of one replay run.
+ */
+public final class ReplayStats {
+
+    long ticks;
+    long bars;
+    long firstTime;
+    long lastTime;
+    long wallNanos;
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getBars() {
+        return bars;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    /*
+     * Simulated time span covered by the replayed ticks, in milliseconds.
+     */
+    public long getSimulatedMillis() {
+        return lastTime - firstTime;
+    }
+
+    public double getTicksPerSecond() {
+        return (wallNanos > 0) ? ticks * 1e9 / wallNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        double seconds = wallNanos / 1e9;
+        double days = getSimulatedMillis() / 86400000.0;
+        return String.format("Replayed %d ticks and %d bars (%.1f days) in %.3f s: %.0f ticks/s, %.3f s per simulated year",
+                ticks, bars, days, seconds, getTicksPerSecond(), (days > 0) ? seconds * 365 / days : 0);
+    }
+
+}
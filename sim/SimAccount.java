@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.IAccount;
+import java.util.Currency;
+
+/*
+ * Account of the simulation, exposed to the tools as IAccount.
+ * Equity and margin are derived from the engine on every call.
+ */
+public final class SimAccount {
+
+    private final SimContext context;
+    private final IAccount account;
+    private final Currency currency;
+    private final double leverage;
+    private double balance;
+
+    SimAccount(SimContext context, Currency currency, double balance, double leverage) {
+        this.context = context;
+        this.currency = currency;
+        this.balance = balance;
+        this.leverage = leverage;
+        this.account = ApiProxy.wrap(IAccount.class, this);
+    }
+
+    IAccount asAccount() {
+        return account;
+    }
+
+    void addBalance(double amount) {
+        balance += amount;
+    }
+
+    public String getAccountId() {
+        return "SIM";
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public double getBalance() {
+        return balance;
+    }
+
+    public double getEquity() {
+        return balance + context.getSimEngine().getOpenProfitLoss();
+    }
+
+    public double getBaseEquity() {
+        return getEquity();
+    }
+
+    public double getLeverage() {
+        return leverage;
+    }
+
+    public double getUsedMargin() {
+        return context.getSimEngine().getOpenNotional() / leverage;
+    }
+
+    public double getCreditLine() {
+        return (getEquity() - getUsedMargin()) * leverage;
+    }
+
+    @Override
+    public String toString() {
+        return "Account " + currency + " balance: " + balance;
+    }
+
+}
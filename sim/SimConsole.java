@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.IConsole;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/*
+ * Console of the simulation, exposed to the tools as IConsole.
+ * Output and info lines go to one stream, errors and warnings to another;
+ * a quiet console discards everything except errors.
+ */
+public final class SimConsole {
+
+    private static final PrintStream NULL_STREAM = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    });
+
+    private final IConsole console;
+    private final PrintStream out;
+    private final PrintStream err;
+
+    public SimConsole(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+        this.console = ApiProxy.wrap(IConsole.class, this);
+    }
+
+    public static SimConsole quiet() {
+        return new SimConsole(NULL_STREAM, System.err);
+    }
+
+    IConsole asConsole() {
+        return console;
+    }
+
+    public PrintStream getOut() {
+        return out;
+    }
+
+    public PrintStream getInfo() {
+        return out;
+    }
+
+    public PrintStream getNotif() {
+        return out;
+    }
+
+    public PrintStream getWarn() {
+        return err;
+    }
+
+    public PrintStream getErr() {
+        return err;
+    }
+
+}
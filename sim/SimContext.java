@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.IAccount;
+import com.dukascopy.api.IBar;
+import com.dukascopy.api.IConsole;
+import com.dukascopy.api.IContext;
+import com.dukascopy.api.IEngine;
+import com.dukascopy.api.IHistory;
+import com.dukascopy.api.IIndicators;
+import com.dukascopy.api.IMessage;
+import com.dukascopy.api.IStrategy;
+import com.dukascopy.api.ITick;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.JFException;
+import com.dukascopy.api.Period;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.Set;
+import tradingTools.CurrencyGraph;
+
+/*
+ * Headless JForex context running one strategy against the simulated
+ * engine, history, indicators, account and console.
+ * The owner feeds market data through tick and bar; each call updates the
+ * history, matches orders, invokes the strategy callback and then delivers
+ * the queued order messages, so the strategy sees the same sequence of
+ * events as on the platform without a client or server connection.
+ */
+public final class SimContext {
+
+    //interval between onAccount callbacks, in simulated milliseconds
+    private static final long ACCOUNT_INTERVAL = 1000;
+
+    private final IContext context;
+    private final SimEngine engine;
+    private final SimHistory history;
+    private final SimIndicators indicators;
+    private final SimAccount account;
+    private final SimConsole console;
+    private final Set<Instrument> subscribedInstruments;
+    private final int[] legs;
+    private IStrategy strategy;
+    private long time;
+    private long lastAccountTime;
+    private boolean stopped;
+
+    public SimContext(String accountCurrency, double balance, SimConsole console) {
+        this.context = ApiProxy.wrap(IContext.class, this);
+        this.engine = new SimEngine(this);
+        this.history = new SimHistory();
+        this.indicators = new SimIndicators(history);
+        this.account = new SimAccount(this, Currency.getInstance(accountCurrency), balance, 100);
+        this.console = console;
+        this.subscribedInstruments = new HashSet<Instrument>();
+        this.legs = new int[CurrencyGraph.MAX_LEGS];
+    }
+
+    public IContext asContext() {
+        return context;
+    }
+
+    public SimEngine getSimEngine() {
+        return engine;
+    }
+
+    public SimAccount getSimAccount() {
+        return account;
+    }
+
+    // IContext
+
+    public IEngine getEngine() {
+        return engine.asEngine();
+    }
+
+    public IHistory getHistory() {
+        return history.asHistory();
+    }
+
+    public IIndicators getIndicators() {
+        return indicators.asIndicators();
+    }
+
+    public IAccount getAccount() {
+        return account.asAccount();
+    }
+
+    public IConsole getConsole() {
+        return console.asConsole();
+    }
+
+    public Set<Instrument> getSubscribedInstruments() {
+        return new HashSet<Instrument>(subscribedInstruments);
+    }
+
+    public void setSubscribedInstruments(Set<Instrument> instruments) {
+        subscribedInstruments.addAll(instruments);
+    }
+
+    public void setSubscribedInstruments(Set<Instrument> instruments, boolean lock) {
+        subscribedInstruments.addAll(instruments);
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    // harness
+
+    public void start(IStrategy strategy, long startTime) throws JFException {
+        this.strategy = strategy;
+        this.time = startTime;
+        this.lastAccountTime = startTime;
+        strategy.onStart(context);
+        deliverMessages();
+    }
+
+    public void tick(Instrument instrument, ITick tick) throws JFException {
+        time = tick.getTime();
+        history.setLastTick(instrument, tick);
+        engine.onTick(instrument, tick);
+        if (strategy == null) {
+            //market data before the strategy start only seeds the history
+            return;
+        }
+        deliverMessages();
+        if (stopped) {
+            return;
+        }
+        if (subscribedInstruments.contains(instrument)) {
+            strategy.onTick(instrument, tick);
+            deliverMessages();
+        }
+        if (time - lastAccountTime >= ACCOUNT_INTERVAL) {
+            lastAccountTime = time;
+            strategy.onAccount(account.asAccount());
+            deliverMessages();
+        }
+    }
+
+    public void bar(Instrument instrument, Period period, IBar askBar, IBar bidBar) throws JFException {
+        history.addBar(instrument, period, askBar, bidBar);
+        if (strategy == null || stopped) {
+            return;
+        }
+        if (subscribedInstruments.contains(instrument)) {
+            strategy.onBar(instrument, period, askBar, bidBar);
+            deliverMessages();
+        }
+    }
+
+    public void finish() throws JFException {
+        strategy.onStop();
+        stopped = true;
+    }
+
+    ITick getLastTick(Instrument instrument) {
+        return history.getLastTickOrNull(instrument);
+    }
+
+    void addRealized(double amount) {
+        account.addBalance(amount);
+    }
+
+    /*
+     * Converts an amount of the given currency to account currency at the
+     * last bid prices, NaN if a conversion instrument has no tick yet.
+     */
+    double convertToAccount(double amount, String currency) {
+        String accountCurrency = account.getCurrency().getCurrencyCode();
+        int length = CurrencyGraph.getInstance().findRoute(accountCurrency, currency, legs);
+        double rate = 1;
+        for (int n = 0; n < length; n++) {
+            ITick tick = history.getLastTickOrNull(CurrencyGraph.getInstrument(legs[n]));
+            if (tick == null) {
+                return Double.NaN;
+            }
+            rate *= CurrencyGraph.isInverted(legs[n]) ? 1 / tick.getBid() : tick.getBid();
+        }
+        return (length == CurrencyGraph.NO_ROUTE) ? Double.NaN : amount / rate;
+    }
+
+    private void deliverMessages() throws JFException {
+        IMessage message;
+        while ((message = engine.pollMessage()) != null) {
+            strategy.onMessage(message);
+        }
+    }
+
+}
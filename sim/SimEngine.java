@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.IEngine;
+import com.dukascopy.api.IMessage;
+import com.dukascopy.api.IOrder;
+import com.dukascopy.api.ITick;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.JFException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * In-memory matching engine exposed to the tools as IEngine.
+ * Market orders fill at the current ask (long) or bid (short) once their
+ * submission is confirmed, limit and stop orders fill on the first tick
+ * crossing the entry price, and filled orders are closed on the first tick
+ * crossing their stop loss or take profit. Every state change queues the
+ * message the platform would send; SimContext delivers them after each
+ * strategy callback.
+ */
+public final class SimEngine {
+
+    //smallest order amount accepted, in lots (millions)
+    public static final double MIN_AMOUNT = 0.001;
+
+    private final SimContext context;
+    private final IEngine engine;
+    private final Map<String, SimOrder> ordersByLabel;
+    private final List<SimOrder> activeOrders;
+    private final ArrayDeque<SimMessage> outbox;
+    private double commissionPerMillion;
+    private int orderCount;
+    private int closedOrderCount;
+    private double realizedProfitLoss;
+    private double realizedCommission;
+
+    SimEngine(SimContext context) {
+        this.context = context;
+        this.engine = ApiProxy.wrap(IEngine.class, this);
+        this.ordersByLabel = new LinkedHashMap<String, SimOrder>();
+        this.activeOrders = new ArrayList<SimOrder>();
+        this.outbox = new ArrayDeque<SimMessage>();
+        this.commissionPerMillion = 35;
+    }
+
+    IEngine asEngine() {
+        return engine;
+    }
+
+    /*
+     * Commission in account currency charged per million traded and per side.
+     */
+    public void setCommissionPerMillion(double commissionPerMillion) {
+        this.commissionPerMillion = commissionPerMillion;
+    }
+
+    public int getClosedOrderCount() {
+        return closedOrderCount;
+    }
+
+    /*
+     * Profit/loss of all closed orders before commission, in account currency.
+     */
+    public double getRealizedProfitLoss() {
+        return realizedProfitLoss;
+    }
+
+    public double getRealizedCommission() {
+        return realizedCommission;
+    }
+
+    /*
+     * Returns all orders ever submitted, in submission order.
+     */
+    public List<SimOrder> getSubmittedOrders() {
+        return new ArrayList<SimOrder>(ordersByLabel.values());
+    }
+
+    public IOrder submitOrder(String label, Instrument instrument, IEngine.OrderCommand orderCommand, double amount)
+            throws JFException {
+        return submitOrder(label, instrument, orderCommand, amount, 0, 5, 0, 0);
+    }
+
+    public IOrder submitOrder(String label, Instrument instrument, IEngine.OrderCommand orderCommand, double amount,
+            double price) throws JFException {
+        return submitOrder(label, instrument, orderCommand, amount, price, 5, 0, 0);
+    }
+
+    public IOrder submitOrder(String label, Instrument instrument, IEngine.OrderCommand orderCommand, double amount,
+            double price, double slippage) throws JFException {
+        return submitOrder(label, instrument, orderCommand, amount, price, slippage, 0, 0);
+    }
+
+    public IOrder submitOrder(String label, Instrument instrument, IEngine.OrderCommand orderCommand, double amount,
+            double price, double slippage, double stopLossPrice, double takeProfitPrice) throws JFException {
+        if (!isValidLabel(label)) {
+            throw new JFException("Invalid order label: " + label);
+        }
+        if (ordersByLabel.containsKey(label)) {
+            throw new JFException("Label not unique: " + label);
+        }
+
+        SimOrder order = new SimOrder(this, Integer.toString(++orderCount), label, instrument, orderCommand,
+                amount, price, stopLossPrice, takeProfitPrice, context.getTime());
+        ordersByLabel.put(label, order);
+
+        if (amount < MIN_AMOUNT) {
+            order.state = IOrder.State.CANCELED;
+            queue(IMessage.Type.ORDER_SUBMIT_REJECTED, order, "Amount below minimum: " + amount, null);
+        } else if (orderCommand.isConditional() && price <= 0) {
+            order.state = IOrder.State.CANCELED;
+            queue(IMessage.Type.ORDER_SUBMIT_REJECTED, order, "Invalid entry price: " + price, null);
+        } else {
+            activeOrders.add(order);
+            queue(IMessage.Type.ORDER_SUBMIT_OK, order, null, IOrder.State.OPENED);
+        }
+        return order.asOrder();
+    }
+
+    public IOrder getOrder(String label) {
+        SimOrder order = ordersByLabel.get(label);
+        return (order != null && activeOrders.contains(order)) ? order.asOrder() : null;
+    }
+
+    public List<IOrder> getOrders() {
+        List<IOrder> orders = new ArrayList<IOrder>(activeOrders.size());
+        for (SimOrder order : activeOrders) {
+            orders.add(order.asOrder());
+        }
+        return orders;
+    }
+
+    public List<IOrder> getOrders(Instrument instrument) {
+        List<IOrder> orders = new ArrayList<IOrder>();
+        for (SimOrder order : activeOrders) {
+            if (order.getInstrument() == instrument) {
+                orders.add(order.asOrder());
+            }
+        }
+        return orders;
+    }
+
+    /*
+     * Matches all active orders of the instrument against the new tick.
+     */
+    void onTick(Instrument instrument, ITick tick) {
+        double bid = tick.getBid();
+        double ask = tick.getAsk();
+        for (int n = 0; n < activeOrders.size(); n++) {
+            SimOrder order = activeOrders.get(n);
+            if (order.getInstrument() != instrument) {
+                continue;
+            }
+            if (order.state == IOrder.State.OPENED && order.getOrderCommand().isConditional()) {
+                if (isEntryTriggered(order, bid, ask)) {
+                    fill(order, order.isLong() ? ask : bid);
+                }
+            }
+            if (order.state == IOrder.State.FILLED) {
+                double exitPrice = order.isLong() ? bid : ask;
+                double sl = order.stopLossPrice;
+                double tp = order.takeProfitPrice;
+                boolean stopHit = (sl > 0) && (order.isLong() ? exitPrice <= sl : exitPrice >= sl);
+                boolean targetHit = (tp > 0) && (order.isLong() ? exitPrice >= tp : exitPrice <= tp);
+                if (stopHit || targetHit) {
+                    closeFilled(order, exitPrice);
+                }
+            }
+            if (order.state == IOrder.State.CLOSED || order.state == IOrder.State.CANCELED) {
+                activeOrders.remove(n--);
+            }
+        }
+    }
+
+    /*
+     * Returns the next queued message after applying the state change it
+     * announces, or null if the queue is empty.
+     */
+    public IMessage pollMessage() throws JFException {
+        SimMessage message = outbox.poll();
+        if (message == null) {
+            return null;
+        }
+        SimOrder order = message.getSimOrder();
+        if (order != null && message.getNewState() == IOrder.State.OPENED
+                && order.state == IOrder.State.CREATED) {
+            order.state = IOrder.State.OPENED;
+            if (!order.getOrderCommand().isConditional()) {
+                //market order, fill right after the submission is confirmed
+                ITick tick = context.getLastTick(order.getInstrument());
+                if (tick == null) {
+                    order.state = IOrder.State.CANCELED;
+                    activeOrders.remove(order);
+                    queue(IMessage.Type.ORDER_FILL_REJECTED, order, "No market price", null);
+                } else {
+                    fill(order, order.isLong() ? tick.getAsk() : tick.getBid());
+                }
+            }
+        }
+        return message.asMessage();
+    }
+
+    void changeStopLoss(SimOrder order, double price) throws JFException {
+        checkActive(order);
+        ITick tick = context.getLastTick(order.getInstrument());
+        if (order.state == IOrder.State.FILLED && price > 0 && tick != null) {
+            boolean wrongSide = order.isLong() ? price >= tick.getBid() : price <= tick.getAsk();
+            if (wrongSide) {
+                queue(IMessage.Type.ORDER_CHANGED_REJECTED, order, "Stop loss on wrong side: " + price, null);
+                return;
+            }
+        }
+        order.stopLossPrice = price;
+        order.stopLossTime = context.getTime();
+        queue(IMessage.Type.ORDER_CHANGED_OK, order, null, null);
+    }
+
+    void changeTakeProfit(SimOrder order, double price) throws JFException {
+        checkActive(order);
+        order.takeProfitPrice = price;
+        queue(IMessage.Type.ORDER_CHANGED_OK, order, null, null);
+    }
+
+    void changeAmount(SimOrder order, double amount) throws JFException {
+        checkActive(order);
+        if (order.state != IOrder.State.OPENED || amount < MIN_AMOUNT) {
+            queue(IMessage.Type.ORDER_CHANGED_REJECTED, order, "Amount change not possible: " + amount, null);
+            return;
+        }
+        order.requestedAmount = amount;
+        order.amount = amount;
+        queue(IMessage.Type.ORDER_CHANGED_OK, order, null, null);
+    }
+
+    void close(SimOrder order) throws JFException {
+        checkActive(order);
+        if (order.state == IOrder.State.FILLED) {
+            ITick tick = context.getLastTick(order.getInstrument());
+            closeFilled(order, order.isLong() ? tick.getBid() : tick.getAsk());
+        } else {
+            order.state = IOrder.State.CANCELED;
+            order.closeTime = context.getTime();
+            queue(IMessage.Type.ORDER_CLOSE_OK, order, null, null);
+        }
+        activeOrders.remove(order);
+    }
+
+    double getProfitLossInAccountCurrency(SimOrder order) {
+        if (order.state == IOrder.State.CLOSED) {
+            return order.closedProfitLoss;
+        } else if (order.state != IOrder.State.FILLED) {
+            return 0;
+        }
+        ITick tick = context.getLastTick(order.getInstrument());
+        return calcProfitLoss(order, order.isLong() ? tick.getBid() : tick.getAsk());
+    }
+
+    double getProfitLossInPips(SimOrder order) {
+        double exitPrice;
+        if (order.state == IOrder.State.CLOSED) {
+            exitPrice = order.closePrice;
+        } else if (order.state == IOrder.State.FILLED) {
+            ITick tick = context.getLastTick(order.getInstrument());
+            exitPrice = order.isLong() ? tick.getBid() : tick.getAsk();
+        } else {
+            return 0;
+        }
+        double delta = order.isLong() ? exitPrice - order.openPrice : order.openPrice - exitPrice;
+        return delta / order.getInstrument().getPipValue();
+    }
+
+    /*
+     * Sum of the profit/loss of all filled orders, in account currency.
+     */
+    double getOpenProfitLoss() {
+        double profitLoss = 0;
+        for (SimOrder order : activeOrders) {
+            if (order.state == IOrder.State.FILLED) {
+                profitLoss += getProfitLossInAccountCurrency(order);
+            }
+        }
+        return profitLoss;
+    }
+
+    /*
+     * Sum of the notional of all filled orders, in account currency.
+     */
+    double getOpenNotional() {
+        double notional = 0;
+        for (SimOrder order : activeOrders) {
+            if (order.state == IOrder.State.FILLED) {
+                notional += context.convertToAccount(order.amount * 1000000,
+                        order.getInstrument().getPrimaryCurrency().getCurrencyCode());
+            }
+        }
+        return notional;
+    }
+
+    private void fill(SimOrder order, double price) {
+        order.state = IOrder.State.FILLED;
+        order.openPrice = price;
+        order.amount = order.requestedAmount;
+        order.fillTime = context.getTime();
+        order.commission += order.amount * commissionPerMillion;
+        queue(IMessage.Type.ORDER_FILL_OK, order, null, null);
+    }
+
+    private void closeFilled(SimOrder order, double price) {
+        order.closePrice = price;
+        order.closedProfitLoss = calcProfitLoss(order, price);
+        order.state = IOrder.State.CLOSED;
+        order.closeTime = context.getTime();
+        order.commission += order.amount * commissionPerMillion;
+        closedOrderCount++;
+        realizedProfitLoss += order.closedProfitLoss;
+        realizedCommission += order.commission;
+        context.addRealized(order.closedProfitLoss - order.commission);
+        queue(IMessage.Type.ORDER_CLOSE_OK, order, null, null);
+    }
+
+    private double calcProfitLoss(SimOrder order, double exitPrice) {
+        double delta = order.isLong() ? exitPrice - order.openPrice : order.openPrice - exitPrice;
+        return context.convertToAccount(delta * order.amount * 1000000,
+                order.getInstrument().getSecondaryCurrency().getCurrencyCode());
+    }
+
+    private boolean isEntryTriggered(SimOrder order, double bid, double ask) {
+        double price = order.getPrice();
+        switch (order.getOrderCommand()) {
+            case BUYLIMIT:
+                return ask <= price;
+            case SELLLIMIT:
+                return bid >= price;
+            case BUYSTOP:
+                return ask >= price;
+            case SELLSTOP:
+                return bid <= price;
+            default:
+                return false;
+        }
+    }
+
+    private void checkActive(SimOrder order) throws JFException {
+        if (!activeOrders.contains(order)) {
+            throw new JFException("Order " + order.getLabel() + " is not active");
+        }
+    }
+
+    private void queue(IMessage.Type type, SimOrder order, String content, IOrder.State newState) {
+        outbox.add(new SimMessage(type, order, content, context.getTime(), newState));
+    }
+
+    private static boolean isValidLabel(String label) {
+        if (label == null || label.isEmpty() || label.length() > 256 || !Character.isLetter(label.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || c == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
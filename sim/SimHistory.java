@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.IBar;
+import com.dukascopy.api.IHistory;
+import com.dukascopy.api.ITick;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.JFException;
+import com.dukascopy.api.OfferSide;
+import com.dukascopy.api.Period;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * History of the simulation, exposed to the tools as IHistory.
+ * It keeps the last tick of every instrument and a bounded window of the
+ * most recent completed bars per instrument, period and offer side.
+ */
+public final class SimHistory {
+
+    private static final int DEFAULT_MAX_BARS = 1000;
+
+    private final IHistory history;
+    private final ITick[] lastTicks;
+    private final Map<String, IBar[]> bars;
+    private final Map<String, Integer> barCounts;
+    private final int maxBars;
+
+    SimHistory() {
+        this.history = ApiProxy.wrap(IHistory.class, this);
+        this.lastTicks = new ITick[Instrument.values().length];
+        this.bars = new HashMap<String, IBar[]>();
+        this.barCounts = new HashMap<String, Integer>();
+        this.maxBars = DEFAULT_MAX_BARS;
+    }
+
+    IHistory asHistory() {
+        return history;
+    }
+
+    void setLastTick(Instrument instrument, ITick tick) {
+        lastTicks[instrument.ordinal()] = tick;
+    }
+
+    ITick getLastTickOrNull(Instrument instrument) {
+        return lastTicks[instrument.ordinal()];
+    }
+
+    void addBar(Instrument instrument, Period period, IBar askBar, IBar bidBar) {
+        addBar(key(instrument, period, OfferSide.ASK), askBar);
+        addBar(key(instrument, period, OfferSide.BID), bidBar);
+    }
+
+    public ITick getLastTick(Instrument instrument) throws JFException {
+        ITick tick = lastTicks[instrument.ordinal()];
+        if (tick == null) {
+            throw new JFException("No tick available for " + instrument);
+        }
+        return tick;
+    }
+
+    public long getTimeOfLastTick(Instrument instrument) throws JFException {
+        return getLastTick(instrument).getTime();
+    }
+
+    /*
+     * Returns a completed bar, shift 1 being the most recent one. The bar
+     * in progress (shift 0) is not simulated.
+     */
+    public IBar getBar(Instrument instrument, Period period, OfferSide side, int shift) throws JFException {
+        String key = key(instrument, period, side);
+        IBar[] ring = bars.get(key);
+        Integer count = barCounts.get(key);
+        if (ring == null || shift < 1 || shift > Math.min(count, maxBars)) {
+            throw new JFException("Bar not available: " + key + " shift " + shift);
+        }
+        return ring[(count - shift) % maxBars];
+    }
+
+    /*
+     * Number of completed bars which can be read with getBar.
+     */
+    int getBarCount(Instrument instrument, Period period, OfferSide side) {
+        Integer count = barCounts.get(key(instrument, period, side));
+        return (count == null) ? 0 : Math.min(count, maxBars);
+    }
+
+    private void addBar(String key, IBar bar) {
+        IBar[] ring = bars.get(key);
+        if (ring == null) {
+            ring = new IBar[maxBars];
+            bars.put(key, ring);
+            barCounts.put(key, 0);
+        }
+        int count = barCounts.get(key);
+        ring[count % maxBars] = bar;
+        barCounts.put(key, count + 1);
+    }
+
+    private static String key(Instrument instrument, Period period, OfferSide side) {
+        return instrument + " " + period + " " + side;
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.IBar;
+import com.dukascopy.api.IIndicators;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.JFException;
+import com.dukascopy.api.OfferSide;
+import com.dukascopy.api.Period;
+
+/*
+ * Indicators of the simulation, exposed to the tools as IIndicators.
+ * Only the indicators used by the tools are available, computed from the
+ * completed bars of SimHistory like the platform does: every call walks
+ * the lookback window again.
+ */
+public final class SimIndicators {
+
+    private static final int LOOKBACK = 100;
+
+    private final SimHistory history;
+    private final IIndicators indicators;
+
+    SimIndicators(SimHistory history) {
+        this.history = history;
+        this.indicators = ApiProxy.wrap(IIndicators.class, this);
+    }
+
+    IIndicators asIndicators() {
+        return indicators;
+    }
+
+    /*
+     * Heikin Ashi candle as {open, close, high, low}, shift 1 being the
+     * last completed bar.
+     */
+    public double[] heikinAshi(Instrument instrument, Period period, OfferSide side, int shift) throws JFException {
+        int available = history.getBarCount(instrument, period, side);
+        int first = Math.min(available, shift + LOOKBACK - 1);
+        if (first < shift) {
+            throw new JFException("Not enough bars for Heikin Ashi: " + instrument + " " + period);
+        }
+
+        IBar bar = history.getBar(instrument, period, side, first);
+        double haOpen = (bar.getOpen() + bar.getClose()) / 2;
+        double haClose = (bar.getOpen() + bar.getHigh() + bar.getLow() + bar.getClose()) / 4;
+        double haHigh = bar.getHigh();
+        double haLow = bar.getLow();
+        for (int s = first - 1; s >= shift; s--) {
+            bar = history.getBar(instrument, period, side, s);
+            haOpen = (haOpen + haClose) / 2;
+            haClose = (bar.getOpen() + bar.getHigh() + bar.getLow() + bar.getClose()) / 4;
+            haHigh = Math.max(bar.getHigh(), Math.max(haOpen, haClose));
+            haLow = Math.min(bar.getLow(), Math.min(haOpen, haClose));
+        }
+        return new double[] {haOpen, haClose, haHigh, haLow};
+    }
+
+}
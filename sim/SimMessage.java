@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.IMessage;
+import com.dukascopy.api.IOrder;
+
+/*
+ * Message of the simulation, exposed to the tools as IMessage.
+ * An order message may carry the state change it announces, which the
+ * engine applies right before the message is delivered.
+ */
+public final class SimMessage {
+
+    private final IMessage.Type type;
+    private final SimOrder order;
+    private final String content;
+    private final long creationTime;
+    private final IOrder.State newState;
+    private IMessage message;
+
+    SimMessage(IMessage.Type type, SimOrder order, String content, long creationTime, IOrder.State newState) {
+        this.type = type;
+        this.order = order;
+        this.content = content;
+        this.creationTime = creationTime;
+        this.newState = newState;
+    }
+
+    public static IMessage create(IMessage.Type type, String content, long creationTime) {
+        return new SimMessage(type, null, content, creationTime, null).asMessage();
+    }
+
+    IMessage asMessage() {
+        if (message == null) {
+            message = ApiProxy.wrap(IMessage.class, this);
+        }
+        return message;
+    }
+
+    SimOrder getSimOrder() {
+        return order;
+    }
+
+    IOrder.State getNewState() {
+        return newState;
+    }
+
+    public IMessage.Type getType() {
+        return type;
+    }
+
+    public IOrder getOrder() {
+        return (order != null) ? order.asOrder() : null;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    @Override
+    public String toString() {
+        return "Message " + type + ((order != null) ? " order: " + order.getLabel() : "")
+                + ((content != null) ? " " + content : "");
+    }
+
+}
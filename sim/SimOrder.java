@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.IEngine;
+import com.dukascopy.api.IOrder;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.JFException;
+
+/*
+ * Order of the simulated engine, exposed to the tools as IOrder.
+ * Modifications are forwarded to the engine, which validates them and
+ * answers with the same messages the platform would send.
+ */
+public final class SimOrder {
+
+    private final SimEngine engine;
+    private final IOrder order;
+    private final String id;
+    private final String label;
+    private final Instrument instrument;
+    private final IEngine.OrderCommand orderCommand;
+    private final long creationTime;
+    private final double price;
+    double requestedAmount;
+    double amount;
+    double stopLossPrice;
+    double takeProfitPrice;
+    double openPrice;
+    double closePrice;
+    long fillTime;
+    long closeTime;
+    long stopLossTime;
+    double commission;
+    double closedProfitLoss;
+    IOrder.State state;
+
+    SimOrder(SimEngine engine, String id, String label, Instrument instrument, IEngine.OrderCommand orderCommand,
+            double amount, double price, double stopLossPrice, double takeProfitPrice, long creationTime) {
+        this.engine = engine;
+        this.id = id;
+        this.label = label;
+        this.instrument = instrument;
+        this.orderCommand = orderCommand;
+        this.requestedAmount = amount;
+        this.amount = amount;
+        this.price = price;
+        this.stopLossPrice = stopLossPrice;
+        this.takeProfitPrice = takeProfitPrice;
+        this.creationTime = creationTime;
+        this.state = IOrder.State.CREATED;
+        this.order = ApiProxy.wrap(IOrder.class, this);
+    }
+
+    IOrder asOrder() {
+        return order;
+    }
+
+    double getPrice() {
+        return price;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public Instrument getInstrument() {
+        return instrument;
+    }
+
+    public IEngine.OrderCommand getOrderCommand() {
+        return orderCommand;
+    }
+
+    public boolean isLong() {
+        return orderCommand.isLong();
+    }
+
+    public IOrder.State getState() {
+        return state;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public double getRequestedAmount() {
+        return requestedAmount;
+    }
+
+    public double getOpenPrice() {
+        return (state == IOrder.State.FILLED || state == IOrder.State.CLOSED) ? openPrice : price;
+    }
+
+    public double getClosePrice() {
+        return closePrice;
+    }
+
+    public double getStopLossPrice() {
+        return stopLossPrice;
+    }
+
+    public double getTakeProfitPrice() {
+        return takeProfitPrice;
+    }
+
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    public long getFillTime() {
+        return fillTime;
+    }
+
+    public long getCloseTime() {
+        return closeTime;
+    }
+
+    /*
+     * Time of the last accepted stop loss change, 0 if none.
+     */
+    public long getStopLossTime() {
+        return stopLossTime;
+    }
+
+    public double getCommission() {
+        return commission;
+    }
+
+    public double getProfitLossInAccountCurrency() {
+        return engine.getProfitLossInAccountCurrency(this);
+    }
+
+    public double getProfitLossInPips() {
+        return engine.getProfitLossInPips(this);
+    }
+
+    public void setStopLossPrice(double price) throws JFException {
+        engine.changeStopLoss(this, price);
+    }
+
+    public void setTakeProfitPrice(double price) throws JFException {
+        engine.changeTakeProfit(this, price);
+    }
+
+    public void setRequestedAmount(double amount) throws JFException {
+        engine.changeAmount(this, amount);
+    }
+
+    public void close() throws JFException {
+        engine.close(this);
+    }
+
+    @Override
+    public String toString() {
+        return "Order " + label + " " + orderCommand + " " + instrument + " " + state + " amount: " + amount;
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.ITick;
+import com.dukascopy.api.Instrument;
+
+/*
+ * Synthetic quotes of every instrument, derived from approximate USD values
+ * of the currencies, for runs that need a rate of each conversion pair but
+ * no recorded data.
+ */
+public final class SimQuotes {
+
+    private static final String[] CURRENCIES = {"USD", "EUR", "GBP", "JPY", "CHF", "AUD", "NZD", "CAD", "SEK", "NOK",
+        "SGD", "HKD", "PLN", "TRY", "ZAR", "MXN", "HUF", "CZK", "RUB", "DKK", "XAU", "XAG"};
+    private static final double[] USD_RATES = {1, 1.37, 1.66, 0.0098, 1.12, 0.9, 0.84, 0.91, 0.155, 0.165,
+        0.79, 0.129, 0.33, 0.46, 0.093, 0.076, 0.0045, 0.05, 0.028, 0.18, 1330, 21};
+
+    private SimQuotes() {
+    }
+
+    //approximate value of one unit in USD, 1 for unknown currencies
+    public static double getUsdRate(String currency) {
+        for (int i = 0; i < CURRENCIES.length; i++) {
+            if (CURRENCIES[i].equals(currency)) {
+                return USD_RATES[i];
+            }
+        }
+        return 1;
+    }
+
+    public static double getBid(Instrument instrument) {
+        return getUsdRate(instrument.getPrimaryCurrency().getCurrencyCode())
+                / getUsdRate(instrument.getSecondaryCurrency().getCurrencyCode());
+    }
+
+    //tick at the synthetic bid with a spread of 0.8 pips
+    public static ITick getTick(Instrument instrument, long time) {
+        double bid = getBid(instrument);
+        return SimTick.create(time, bid, bid + instrument.getPipValue() * 0.8, 1, 1);
+    }
+}
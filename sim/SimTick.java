@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.ITick;
+
+/*
+ * Immutable tick of the simulation, exposed to the tools as ITick.
+ */
+public final class SimTick {
+
+    private final long time;
+    private final double bid;
+    private final double ask;
+    private final double bidVolume;
+    private final double askVolume;
+
+    private SimTick(long time, double bid, double ask, double bidVolume, double askVolume) {
+        this.time = time;
+        this.bid = bid;
+        this.ask = ask;
+        this.bidVolume = bidVolume;
+        this.askVolume = askVolume;
+    }
+
+    public static ITick create(long time, double bid, double ask, double bidVolume, double askVolume) {
+        return ApiProxy.wrap(ITick.class, new SimTick(time, bid, ask, bidVolume, askVolume));
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public double getBid() {
+        return bid;
+    }
+
+    public double getAsk() {
+        return ask;
+    }
+
+    public double getBidVolume() {
+        return bidVolume;
+    }
+
+    public double getAskVolume() {
+        return askVolume;
+    }
+
+    public double getTotalBidVolume() {
+        return bidVolume;
+    }
+
+    public double getTotalAskVolume() {
+        return askVolume;
+    }
+
+    public double[] getBids() {
+        return new double[] {bid};
+    }
+
+    public double[] getAsks() {
+        return new double[] {ask};
+    }
+
+    public double[] getBidVolumes() {
+        return new double[] {bidVolume};
+    }
+
+    public double[] getAskVolumes() {
+        return new double[] {askVolume};
+    }
+
+    @Override
+    public String toString() {
+        return "Tick " + time + " bid: " + bid + " ask: " + ask;
+    }
+
+}
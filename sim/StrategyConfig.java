@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.Configurable;
+import com.dukascopy.api.IStrategy;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.Period;
+import java.lang.reflect.Field;
+
+/*
+ * Sets the @Configurable parameters of a strategy from strings, the way
+ * the parameter dialog of the platform does before the strategy starts.
+ */
+public final class StrategyConfig {
+
+    private StrategyConfig() {
+    }
+
+    public static IStrategy create(String className) throws ReflectiveOperationException {
+        String name = (className.indexOf('.') < 0) ? "tradingTools." + className : className;
+        return (IStrategy) Class.forName(name).getConstructor().newInstance();
+    }
+
+    /*
+     * Sets a parameter given as "name=value", name being the field name.
+     */
+    public static void set(IStrategy strategy, String assignment) throws ReflectiveOperationException {
+        int split = assignment.indexOf('=');
+        if (split < 0) {
+            throw new IllegalArgumentException("Expected name=value: " + assignment);
+        }
+        set(strategy, assignment.substring(0, split).trim(), assignment.substring(split + 1).trim());
+    }
+
+    public static void set(IStrategy strategy, String name, String value) throws ReflectiveOperationException {
+        Field field = strategy.getClass().getField(name);
+        if (field.getAnnotation(Configurable.class) == null) {
+            throw new IllegalArgumentException(name + " is not a configurable parameter");
+        }
+        Class<?> type = field.getType();
+        if (type == int.class) {
+            field.setInt(strategy, Integer.parseInt(value));
+        } else if (type == double.class) {
+            field.setDouble(strategy, Double.parseDouble(value));
+        } else if (type == boolean.class) {
+            field.setBoolean(strategy, Boolean.parseBoolean(value));
+        } else if (type == Instrument.class) {
+            field.set(strategy, parseInstrument(value));
+        } else if (type == Period.class) {
+            field.set(strategy, parsePeriod(value));
+        } else if (type == String.class) {
+            field.set(strategy, value);
+        } else {
+            throw new IllegalArgumentException("Unsupported parameter type of " + name + ": " + type);
+        }
+    }
+
+    /*
+     * Returns the value of a public field, or null if there is none.
+     */
+    public static Object get(IStrategy strategy, String name) {
+        try {
+            return strategy.getClass().getField(name).get(strategy);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    public static Instrument parseInstrument(String value) {
+        Instrument instrument = Instrument.fromString(value);
+        return (instrument != null) ? instrument : Instrument.valueOf(value);
+    }
+
+    public static Period parsePeriod(String value) throws ReflectiveOperationException {
+        return (Period) Period.class.getField(value).get(null);
+    }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+/*
+ * Outcome of one strategy run of a parameter sweep.
+ */
+public final class SweepResult {
+
+    private final String parameters;
+    ReplayStats stats;
+    int closedOrders;
+    double profitLoss;
+    double commission;
+    double netProfit;
+    double equity;
+    Throwable error;
+
+    SweepResult(String parameters) {
+        this.parameters = parameters;
+    }
+
+    public String getParameters() {
+        return parameters;
+    }
+
+    public ReplayStats getStats() {
+        return stats;
+    }
+
+    public int getClosedOrders() {
+        return closedOrders;
+    }
+
+    /*
+     * Realized profit/loss before commission, in account currency.
+     */
+    public double getProfitLoss() {
+        return profitLoss;
+    }
+
+    public double getCommission() {
+        return commission;
+    }
+
+    /*
+     * Change of the account equity, including open positions.
+     */
+    public double getNetProfit() {
+        return netProfit;
+    }
+
+    public double getEquity() {
+        return equity;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        if (error != null) {
+            return parameters + " failed: " + error;
+        }
+        return String.format("%s Orders: %d Profit: %.2f Commission: %.2f Net Profit: %.2f",
+                parameters, closedOrders, profitLoss, commission, netProfit);
+    }
+
+}
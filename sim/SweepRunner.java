@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.IStrategy;
+import com.dukascopy.api.Period;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Runs one tool over the same recorded ticks with every combination of a
+ * set of parameter values. Each run gets its own strategy instance and
+ * SimContext, the tick arrays are shared read-only, and the runs are
+ * spread over a fork-join pool.
+ */
+public final class SweepRunner {
+
+    private final String strategyClass;
+    private final TickArray[] ticks;
+    private final Map<String, String[]> parameters;
+    private String accountCurrency = "USD";
+    private double balance = 10000;
+    private Period[] periods;
+
+    public SweepRunner(String strategyClass, TickArray... ticks) {
+        this.strategyClass = strategyClass;
+        this.ticks = ticks.clone();
+        this.parameters = new LinkedHashMap<String, String[]>();
+    }
+
+    /*
+     * Adds a swept parameter, a single value sets it for all runs.
+     */
+    public void addParameter(String name, String... values) {
+        parameters.put(name, values.clone());
+    }
+
+    public void setAccount(String accountCurrency, double balance) {
+        this.accountCurrency = accountCurrency;
+        this.balance = balance;
+    }
+
+    /*
+     * Sets the bar periods built from the ticks, by default ONE_MIN and the
+     * period parameter of each run.
+     */
+    public void setPeriods(Period... periods) {
+        this.periods = periods.clone();
+    }
+
+    /*
+     * Returns all parameter combinations as name=value assignments.
+     */
+    public List<String[]> getCombinations() {
+        List<String[]> combinations = new ArrayList<String[]>();
+        combinations.add(new String[0]);
+        for (Map.Entry<String, String[]> parameter : parameters.entrySet()) {
+            List<String[]> extended = new ArrayList<String[]>();
+            for (String[] combination : combinations) {
+                for (String value : parameter.getValue()) {
+                    String[] assignments = new String[combination.length + 1];
+                    System.arraycopy(combination, 0, assignments, 0, combination.length);
+                    assignments[combination.length] = parameter.getKey() + "=" + value;
+                    extended.add(assignments);
+                }
+            }
+            combinations = extended;
+        }
+        return combinations;
+    }
+
+    public SweepResult[] run(ForkJoinPool pool) {
+        List<String[]> combinations = getCombinations();
+        SweepResult[] results = new SweepResult[combinations.size()];
+        pool.invoke(new RunTask(combinations, results, 0, results.length));
+        return results;
+    }
+
+    /*
+     * Runs one combination; failures are recorded in the result.
+     */
+    SweepResult runOne(String[] assignments) {
+        StringBuilder name = new StringBuilder();
+        for (String assignment : assignments) {
+            if (name.length() > 0) {
+                name.append(' ');
+            }
+            name.append(assignment);
+        }
+        SweepResult result = new SweepResult(name.toString());
+        try {
+            IStrategy strategy = StrategyConfig.create(strategyClass);
+            for (String assignment : assignments) {
+                StrategyConfig.set(strategy, assignment);
+            }
+            SimContext context = new SimContext(accountCurrency, balance, SimConsole.quiet());
+            ReplayDriver driver = new ReplayDriver(context, getPeriods(strategy));
+            TickSource[] sources = new TickSource[ticks.length];
+            for (int i = 0; i < ticks.length; i++) {
+                sources[i] = ticks[i].newSource();
+            }
+            result.stats = driver.run(strategy, sources);
+
+            SimEngine engine = context.getSimEngine();
+            result.closedOrders = engine.getClosedOrderCount();
+            result.profitLoss = engine.getRealizedProfitLoss();
+            result.commission = engine.getRealizedCommission();
+            result.equity = context.getSimAccount().getEquity();
+            result.netProfit = result.equity - balance;
+        } catch (Exception e) {
+            result.error = e;
+        }
+        return result;
+    }
+
+    private Period[] getPeriods(IStrategy strategy) {
+        if (periods != null) {
+            return periods;
+        }
+        Object period = StrategyConfig.get(strategy, "period");
+        if (period instanceof Period && period != Period.ONE_MIN) {
+            return new Period[] {Period.ONE_MIN, (Period) period};
+        }
+        return new Period[] {Period.ONE_MIN};
+    }
+
+    private final class RunTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<String[]> combinations;
+        private final SweepResult[] results;
+        private final int from;
+        private final int to;
+
+        RunTask(List<String[]> combinations, SweepResult[] results, int from, int to) {
+            this.combinations = combinations;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                results[from] = runOne(combinations.get(from));
+            } else if (to > from) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RunTask(combinations, results, from, middle),
+                        new RunTask(combinations, results, middle, to));
+            }
+        }
+
+    }
+
+    /*
+     * Usage: SweepRunner <strategy> <instrument> <ticks> [<instrument> <ticks>...]
+     *            [name=value1,value2,...] [--threads=N] [--account=USD] [--balance=N] [--periods=ONE_MIN,...]
+     * ticks is a CSV export or the root directory of a BinaryTickStore, and
+     * is loaded into memory once for all runs.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: SweepRunner <strategy> <instrument> <ticks> [<instrument> <ticks>...]"
+                    + " [name=value1,value2,...] [--threads=N] [--account=USD] [--balance=N] [--periods=ONE_MIN,...]");
+            System.exit(2);
+        }
+        List<TickArray> ticks = new ArrayList<TickArray>();
+        int i = 1;
+        long loadStart = System.nanoTime();
+        while (i + 1 < args.length && args[i].indexOf('=') < 0 && !args[i].startsWith("--")) {
+            TickSource source = ReplayDriver.openSource(args[i], args[i + 1]);
+            try {
+                ticks.add(TickArray.load(source));
+            } finally {
+                source.close();
+            }
+            i += 2;
+        }
+        long tickCount = 0;
+        for (TickArray array : ticks) {
+            tickCount += array.size();
+        }
+        System.out.printf("Loaded %d ticks in %.3f s%n", tickCount, (System.nanoTime() - loadStart) / 1e9);
+
+        SweepRunner runner = new SweepRunner(args[0], ticks.toArray(new TickArray[ticks.size()]));
+        int threads = Runtime.getRuntime().availableProcessors();
+        String account = "USD";
+        double balance = 10000;
+        for (; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring(10));
+            } else if (arg.startsWith("--account=")) {
+                account = arg.substring(10);
+            } else if (arg.startsWith("--balance=")) {
+                balance = Double.parseDouble(arg.substring(10));
+            } else if (arg.startsWith("--periods=")) {
+                String[] names = arg.substring(10).split(",");
+                Period[] periods = new Period[names.length];
+                for (int n = 0; n < names.length; n++) {
+                    periods[n] = StrategyConfig.parsePeriod(names[n].trim());
+                }
+                runner.setPeriods(periods);
+            } else {
+                int split = arg.indexOf('=');
+                if (split < 0) {
+                    throw new IllegalArgumentException("Expected name=value1,value2,...: " + arg);
+                }
+                runner.addParameter(arg.substring(0, split), arg.substring(split + 1).split(","));
+            }
+        }
+        runner.setAccount(account, balance);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        SweepResult[] results;
+        try {
+            results = runner.run(pool);
+        } finally {
+            pool.shutdown();
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        long replayedTicks = 0;
+        for (SweepResult result : results) {
+            System.out.println(result);
+            if (result.getStats() != null) {
+                replayedTicks += result.getStats().getTicks();
+            }
+        }
+        System.out.printf("%d runs on %d threads in %.3f s: %.0f ticks/s%n", results.length, threads,
+                wallNanos / 1e9, replayedTicks * 1e9 / wallNanos);
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools.sim;
+
+import com.dukascopy.api.Instrument;
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * Ticks of one instrument held in memory as primitive arrays.
+ * The arrays are never modified after loading, so any number of replays
+ * on any number of threads can read them through their own cursor.
+ */
+public final class TickArray {
+
+    private final Instrument instrument;
+    private final int size;
+    private final long[] times;
+    private final double[] bids;
+    private final double[] asks;
+    private final double[] bidVolumes;
+    private final double[] askVolumes;
+
+    private TickArray(Instrument instrument, int size, long[] times, double[] bids, double[] asks,
+            double[] bidVolumes, double[] askVolumes) {
+        this.instrument = instrument;
+        this.size = size;
+        this.times = times;
+        this.bids = bids;
+        this.asks = asks;
+        this.bidVolumes = bidVolumes;
+        this.askVolumes = askVolumes;
+    }
+
+    /*
+     * Reads all remaining ticks of the source, which is left open.
+     */
+    public static TickArray load(TickSource source) throws IOException {
+        int capacity = 1 << 16;
+        long[] times = new long[capacity];
+        double[] bids = new double[capacity];
+        double[] asks = new double[capacity];
+        double[] bidVolumes = new double[capacity];
+        double[] askVolumes = new double[capacity];
+        int size = 0;
+        while (source.next()) {
+            if (size == capacity) {
+                capacity *= 2;
+                times = Arrays.copyOf(times, capacity);
+                bids = Arrays.copyOf(bids, capacity);
+                asks = Arrays.copyOf(asks, capacity);
+                bidVolumes = Arrays.copyOf(bidVolumes, capacity);
+                askVolumes = Arrays.copyOf(askVolumes, capacity);
+            }
+            times[size] = source.getTime();
+            bids[size] = source.getBid();
+            asks[size] = source.getAsk();
+            bidVolumes[size] = source.getBidVolume();
+            askVolumes[size] = source.getAskVolume();
+            size++;
+        }
+        return new TickArray(source.getInstrument(), size, times, bids, asks, bidVolumes, askVolumes);
+    }
+
+    public Instrument getInstrument() {
+        return instrument;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /*
+     * Returns a new cursor reading the ticks from the start.
+     */
+    public TickSource newSource() {
+        return new Cursor();
+    }
+
+    private final class Cursor implements TickSource {
+
+        private int index = -1;
+
+        @Override
+        public Instrument getInstrument() {
+            return instrument;
+        }
+
+        @Override
+        public boolean next() {
+            if (index + 1 < size) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public long getTime() {
+            return times[index];
+        }
+
+        @Override
+        public double getBid() {
+            return bids[index];
+        }
+
+        @Override
+        public double getAsk() {
+            return asks[index];
+        }
+
+        @Override
+        public double getBidVolume() {
+            return bidVolumes[index];
+        }
+
+        @Override
+        public double getAskVolume() {
+            return askVolumes[index];
+        }
+
+        @Override
+        public void close() {
+            index = size;
+        }
+
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.dukascopy.api.IEngine.OrderCommand;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+
+/*
+ * Labels of OrderIds: parsing them back, telling the orders of instances
+ * apart and ignoring labels not created here.
+ */
+public class OrderIdsTest {
+
+    @Test
+    public void parsesOwnLabels() {
+        OrderIds orderIds = new OrderIds();
+        for (int n = 0; n < 1000; n++) {
+            long id = orderIds.next();
+            assertEquals(id, OrderIds.parse(orderIds.getLabel(OrderCommand.BUYLIMIT, id)));
+            assertTrue(orderIds.isOwn(id));
+            assertEquals(n + 1, OrderIds.getSequence(id));
+        }
+    }
+
+    @Test
+    public void instancesOfOneJvmAreDistinct() {
+        Set<Long> ids = new HashSet<Long>();
+        OrderIds first = new OrderIds();
+        for (int n = 0; n < 1000; n++) {
+            OrderIds orderIds = new OrderIds();
+            long id = orderIds.next();
+            assertTrue(ids.add(id));
+            assertFalse(first.isOwn(id));
+        }
+    }
+
+    @Test
+    public void ignoresForeignLabels() {
+        assertEquals(OrderIds.NONE, OrderIds.parse(null));
+        assertEquals(OrderIds.NONE, OrderIds.parse("manual order"));
+        assertEquals(OrderIds.NONE, OrderIds.parse("BUY_"));
+        assertEquals(OrderIds.NONE, OrderIds.parse("SELL_a-b"));
+        assertEquals(OrderIds.NONE, OrderIds.parse("BUY_zzzzzzzzzzzzzzzzzzzz"));
+        assertFalse(new OrderIds().isOwn(OrderIds.NONE));
+    }
+
+}
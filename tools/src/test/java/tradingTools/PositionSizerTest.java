@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.dukascopy.api.ITick;
+import com.dukascopy.api.Instrument;
+import com.dukascopy.api.JFException;
+import java.util.Random;
+import org.junit.Test;
+import tradingTools.sim.SimQuotes;
+import tradingTools.sim.SimTick;
+
+/*
+ * Differential test of PositionSizer.getPositionSize against the sizing
+ * formula the tools used before it (legacySize, kept verbatim apart from
+ * reading the ticks from an array instead of the history).
+ * Every instrument is sized long and short for a grid of account
+ * currencies, stop loss distances and risks, at the synthetic quotes and at
+ * randomly scaled quotes, and the lots must be equal to the last bit.
+ * Cases the old code could not size (no direct or inverted conversion
+ * pair) are skipped.
+ */
+public class PositionSizerTest {
+
+    private static final int ROUNDS = 20;
+    private static final String[] ACCOUNT_CURRENCIES = {"USD", "EUR", "GBP", "JPY", "CHF", "AUD", "CAD", "SEK", "PLN"};
+    private static final double[] STOP_LOSS_PIPS = {0.5, 5, 12.3, 20, 37.5, 50, 99.9, 150, 1000};
+    private static final int[] CURRENCY_RISKS = {1, 10, 75, 100, 1000};
+    private static final Instrument[] INSTRUMENTS = Instrument.values();
+
+    @Test
+    public void positionSizeEqualsLegacySize() throws JFException {
+        Random random = new Random(42);
+        ITick[] ticks = new ITick[INSTRUMENTS.length];
+        long compared = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            //first round at the synthetic quotes, then every rate scaled by up to +-5%
+            for (Instrument instrument : INSTRUMENTS) {
+                double bid = SimQuotes.getBid(instrument);
+                if (round > 0) {
+                    bid *= 0.95 + random.nextDouble() * 0.1;
+                }
+                double spread = instrument.getPipValue() * (0.1 + random.nextDouble() * 2);
+                ticks[instrument.ordinal()] = SimTick.create(0, bid, bid + spread, 1, 1);
+            }
+            QuoteCache quoteCache = new QuoteCache(null);
+            for (Instrument instrument : INSTRUMENTS) {
+                quoteCache.onTick(instrument, ticks[instrument.ordinal()]);
+            }
+
+            for (String accountCurrency : ACCOUNT_CURRENCIES) {
+                PositionSizer positionSizer = new PositionSizer(quoteCache, accountCurrency);
+                for (Instrument pair : INSTRUMENTS) {
+                    for (int side = 0; side < 2; side++) {
+                        boolean isLong = (side == 0);
+                        for (double stopLossPips : STOP_LOSS_PIPS) {
+                            for (int currencyRisk : CURRENCY_RISKS) {
+                                double expected = legacySize(ticks, accountCurrency, pair, isLong,
+                                        stopLossPips, currencyRisk);
+                                if (Double.isNaN(expected)) {
+                                    continue;
+                                }
+                                double actual = positionSizer.getPositionSize(pair, isLong, stopLossPips,
+                                        currencyRisk);
+                                assertEquals("Position size of " + pair + " account " + accountCurrency
+                                        + (isLong ? " long" : " short") + " stop loss " + stopLossPips
+                                        + " pips risk " + currencyRisk + " (legacy " + expected + ", now " + actual
+                                        + ")", Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+                                compared++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        assertTrue("No case compared", compared > 0);
+    }
+
+    /*
+     * getPositionSize of the tools before PositionSizer, without the
+     * safety check. Returns NaN where it failed for lack of a conversion pair.
+     */
+    private static double legacySize(ITick[] ticks, String accountCurrency, Instrument pair, boolean isLong,
+            double stopLossPips, int constantCurrencyRisk) throws JFException {
+        //init symbols
+        String primaryCurrency = pair.getPrimaryCurrency().getCurrencyCode();
+
+        //get exchange rate of traded pair in relation to account currency
+        double accountCurrencyExchangeRate;
+        String apCurrency = accountCurrency + "/" + primaryCurrency;
+        Instrument i;
+
+        if (primaryCurrency.equals(accountCurrency)) {
+            i = pair;
+        } else {
+            i = Instrument.fromString(apCurrency);
+        }
+
+        if (i == null) { //currency not found, try inverted pair
+            i = Instrument.fromInvertedString(apCurrency);
+            if (i == null) {
+                return Double.NaN;
+            }
+            if (isLong)
+                accountCurrencyExchangeRate = 1 / ticks[i.ordinal()].getAsk();
+            else
+                accountCurrencyExchangeRate = 1 / ticks[i.ordinal()].getBid();
+        } else {
+            if (isLong)
+                accountCurrencyExchangeRate = ticks[i.ordinal()].getAsk();
+            else
+                accountCurrencyExchangeRate = ticks[i.ordinal()].getBid();
+        }
+
+        //calc currency/pip value
+        double pairExchangeRate;
+        if (isLong)
+            pairExchangeRate = ticks[pair.ordinal()].getAsk();
+        else
+            pairExchangeRate = ticks[pair.ordinal()].getBid();
+        double accountCurrencyPerPip = pair.getPipValue() / pairExchangeRate *
+                                       100000;
+        if (!primaryCurrency.equals(accountCurrency))
+            accountCurrencyPerPip /= accountCurrencyExchangeRate; //convert to account pip value
+
+        //calc position size
+        double units = constantCurrencyRisk / stopLossPips * 100000 / accountCurrencyPerPip;
+
+        //convert to standard lots
+        return units / 1000000;
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.dukascopy.api.OfferSide;
+import org.junit.Test;
+
+/*
+ * Trigger bookkeeping of PriceTriggerIndex: replacing, removing and
+ * polling levels of several ids, on both sides and in both directions.
+ */
+public class PriceTriggerIndexTest {
+
+    @Test
+    public void pollsCrossedLevelsInOrder() {
+        PriceTriggerIndex index = new PriceTriggerIndex(2);
+        index.put(0, 1.3720, true, OfferSide.BID);
+        index.put(1, 1.3710, true, OfferSide.BID);
+        index.put(2, 1.3650, false, OfferSide.ASK);
+        assertEquals(PriceTriggerIndex.NONE, index.poll(1.3700, 1.3701));
+        assertEquals(1, index.poll(1.3720, 1.3721));
+        assertEquals(0, index.poll(1.3720, 1.3721));
+        assertEquals(PriceTriggerIndex.NONE, index.poll(1.3720, 1.3721));
+        assertEquals(2, index.poll(1.3640, 1.3641));
+        assertEquals(0, index.size());
+        assertFalse(index.contains(0));
+    }
+
+    @Test
+    public void putReplacesLevelOfSameId() {
+        PriceTriggerIndex index = new PriceTriggerIndex(2);
+        index.put(0, 1.3720, true, OfferSide.BID);
+        index.put(0, 1.3600, false, OfferSide.ASK);
+        assertEquals(1, index.size());
+        assertEquals(PriceTriggerIndex.NONE, index.poll(1.3730, 1.3731));
+        assertEquals(0, index.poll(1.3590, 1.3591));
+    }
+
+    @Test
+    public void removesAmongEqualLevels() {
+        PriceTriggerIndex index = new PriceTriggerIndex(2);
+        for (int id = 0; id < 5; id++) {
+            index.put(id, 1.3720, true, OfferSide.BID);
+        }
+        assertTrue(index.remove(2));
+        assertFalse(index.remove(2));
+        assertFalse(index.contains(2));
+        //equal levels fire in insertion order
+        int[] expected = {0, 1, 3, 4};
+        for (int id : expected) {
+            assertEquals(id, index.poll(1.3720, 1.3721));
+        }
+        assertEquals(PriceTriggerIndex.NONE, index.poll(1.3720, 1.3721));
+    }
+
+    @Test
+    public void growsForLargeIds() {
+        PriceTriggerIndex index = new PriceTriggerIndex(2);
+        index.put(40, 1.3720, true, OfferSide.ASK);
+        assertTrue(index.contains(40));
+        assertFalse(index.contains(41));
+        index.clear();
+        assertFalse(index.contains(40));
+        assertEquals(PriceTriggerIndex.NONE, index.poll(1.3800, 1.3801));
+    }
+
+    @Test
+    public void removesNaNLevel() {
+        PriceTriggerIndex index = new PriceTriggerIndex(2);
+        index.put(0, 1.3720, true, OfferSide.BID);
+        index.put(1, Double.NaN, true, OfferSide.BID);
+        assertTrue(index.remove(1));
+        assertEquals(0, index.poll(1.3720, 1.3721));
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2014 Giorgio Wicklein <giowckln@gmail.com>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ * 3. The name of the author may not be used to endorse or promote products
+ *    derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED.
+ * IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT
+ * NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+ * DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+ * THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package tradingTools;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/*
+ * Resize band of ResizeTrigger, including the sizes rejected by the safety
+ * check of the tools.
+ */
+public class ResizeTriggerTest {
+
+    private static final double LOT_STEP = PositionSizer.LOT_STEP;
+
+    @Test
+    public void unarmedTriggers() {
+        ResizeTrigger trigger = new ResizeTrigger();
+        assertTrue(trigger.isTriggered(1));
+    }
+
+    @Test
+    public void armedTriggersOnceSizeMovesOneLotStep() {
+        ResizeTrigger trigger = new ResizeTrigger();
+        //0.1 lots at factor 1, one lot step is 1% of the size
+        trigger.arm(0.1, 1, LOT_STEP, 0);
+        assertFalse(trigger.isTriggered(1));
+        assertFalse(trigger.isTriggered(1.009));
+        assertFalse(trigger.isTriggered(0.991));
+        assertTrue(trigger.isTriggered(1.011));
+        assertTrue(trigger.isTriggered(0.989));
+    }
+
+    @Test
+    public void toleranceWidensBand() {
+        ResizeTrigger trigger = new ResizeTrigger();
+        trigger.arm(0.1, 1, LOT_STEP, 0.05);
+        assertFalse(trigger.isTriggered(1.04));
+        assertTrue(trigger.isTriggered(1.06));
+    }
+
+    @Test
+    public void disarmedNeverTriggers() {
+        ResizeTrigger trigger = new ResizeTrigger();
+        trigger.disarm();
+        assertFalse(trigger.isTriggered(0.001));
+        assertFalse(trigger.isTriggered(1000));
+    }
+
+    @Test
+    public void rejectedSizeKeepsChecking() {
+        //a size rejected by the safety check must not stop the resizing, a later check can size again
+        ResizeTrigger trigger = new ResizeTrigger();
+        trigger.arm(0.1, 1, LOT_STEP, 0);
+        trigger.arm(0, 2, LOT_STEP, 0);
+        assertTrue(trigger.isTriggered(2));
+        assertTrue(trigger.isTriggered(0.5));
+        trigger.arm(0.05, 0.5, LOT_STEP, 0);
+        assertFalse(trigger.isTriggered(0.5));
+    }
+
+}